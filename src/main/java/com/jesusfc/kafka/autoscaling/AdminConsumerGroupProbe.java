@@ -0,0 +1,99 @@
+package com.jesusfc.kafka.autoscaling;
+
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ConsumerGroupDescription;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Consulta el grupo con un AdminClient que se mantiene abierto entre muestras. Cada muestra tiene un tiempo máximo
+(timeout) para todas sus peticiones. Las particiones sin offset confirmado cuentan desde el primer offset disponible,
+que es lo que leería el grupo con auto-offset-reset=earliest.
+ */
+class AdminConsumerGroupProbe implements ConsumerGroupProbe, AutoCloseable {
+
+    private final Map<String, Object> adminProperties;
+    private final String topic;
+    private final String groupId;
+    private final Duration timeout;
+    private AdminClient admin;
+
+    AdminConsumerGroupProbe(Map<String, Object> adminProperties, String topic, String groupId, Duration timeout) {
+        this.adminProperties = adminProperties;
+        this.topic = topic;
+        this.groupId = groupId;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public synchronized GroupSnapshot probe() throws Exception {
+        if (admin == null) {
+            admin = AdminClient.create(adminProperties);
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+
+        TopicDescription description = admin.describeTopics(List.of(topic)).allTopicNames()
+                .get(remaining(deadline), TimeUnit.NANOSECONDS).get(topic);
+        Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+        description.partitions().forEach(partition -> latest.put(new TopicPartition(topic, partition.partition()), OffsetSpec.latest()));
+
+        Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> endOffsets = admin.listOffsets(latest).all()
+                .get(remaining(deadline), TimeUnit.NANOSECONDS);
+        Map<TopicPartition, OffsetAndMetadata> committed = admin.listConsumerGroupOffsets(groupId).partitionsToOffsetAndMetadata()
+                .get(remaining(deadline), TimeUnit.NANOSECONDS);
+
+        Map<TopicPartition, OffsetSpec> uncommitted = new HashMap<>();
+        latest.keySet().forEach(partition -> {
+            if (committed.get(partition) == null) {
+                uncommitted.put(partition, OffsetSpec.earliest());
+            }
+        });
+        Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> startOffsets = uncommitted.isEmpty() ? Map.of()
+                : admin.listOffsets(uncommitted).all().get(remaining(deadline), TimeUnit.NANOSECONDS);
+
+        long endSum = 0;
+        long lag = 0;
+        for (Map.Entry<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> entry : endOffsets.entrySet()) {
+            long end = entry.getValue().offset();
+            OffsetAndMetadata offset = committed.get(entry.getKey());
+            long position = offset != null ? offset.offset() : startOffsets.get(entry.getKey()).offset();
+            endSum += end;
+            lag += Math.max(0, end - position);
+        }
+
+        ConsumerGroupDescription group = admin.describeConsumerGroups(List.of(groupId)).describedGroups().get(groupId)
+                .get(remaining(deadline), TimeUnit.NANOSECONDS);
+        // Con los carriles por prioridad el grupo tiene también los consumidores de los topics de carril.
+        int members = (int) group.members().stream()
+                .filter(member -> member.assignment().topicPartitions().stream().anyMatch(partition -> partition.topic().equals(topic)))
+                .count();
+
+        return new GroupSnapshot(description.partitions().size(), endSum, lag, members);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (admin != null) {
+            admin.close(Duration.ZERO);
+            admin = null;
+        }
+    }
+
+    private static long remaining(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+}
@@ -0,0 +1,280 @@
+package com.jesusfc.kafka.autoscaling;
+
+import com.jesusfc.kafka.service.DispatchService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Recomendación de instancias para el grupo de orderConsumerClient (spring.kafka.consumer.group-id). El servicio pasa
+casi todo el tiempo esperando al servicio de stock y al broker, así que la CPU no dice nada de la demanda real.
+Cada sample-interval se toma una foto del grupo (ConsumerGroupProbe) y se calcula:
+  llegada         crecimiento de los log-end offsets del topic de entrada por segundo.
+  servicio        tiempo medio por record en DispatchService (consulta de stock + envíos) en el intervalo; con el
+                  pipeline por etapas, el de la etapa más lenta, que es la que marca su ritmo.
+  necesario       llegada + lag / drain-target: mantener el ritmo y además vaciar el lag en el tiempo objetivo.
+  por instancia   consumidores que procesan / servicio * target-utilization (margen para picos).
+  recomendado     ceil(necesario / por instancia), entre min-instances y las instancias que pueden tener partición.
+Los consumidores por instancia (ConsumersPerInstance) salen de los contenedores activos en cada muestra, salvo que se
+fijen con dispatch.autoscaling.consumers-per-instance: así los carriles (express + bulk) o el reparto por artículo
+cuentan con los consumidores que de verdad procesan y no con los del topic de entrada.
+Llegada y servicio se suavizan (media exponencial) para no reaccionar a una muestra suelta. El tiempo de servicio es
+el que mide esta instancia; en un despliegue homogéneo vale para todas.
+Las entradas y la recomendación se exportan también como métricas dispatch.autoscaling.*, para que un autoscaler
+externo escale con ellas en vez de con la CPU.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "dispatch.autoscaling", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class AutoscalingAdvisor implements SmartLifecycle {
+
+    private static final double SMOOTHING = 0.3;
+
+    private final ConsumerGroupProbe probe;
+    private final DispatchService dispatchService;
+    private final Duration drainTarget;
+    private final Supplier<ConsumersPerInstance> consumersPerInstance;
+    private final double targetUtilization;
+    private final int minInstances;
+    private final Duration sampleInterval;
+
+    private boolean sampled;
+    private long lastSampleNanos;
+    private long lastEndOffsets;
+    private long lastProcessedRecords;
+    private long lastServiceTimeNanos;
+    private double arrivalRate = Double.NaN;
+    private double serviceTimeSeconds = Double.NaN;
+    private boolean probeFailing;
+    private volatile AutoscalingRecommendation recommendation;
+
+    private volatile boolean running;
+    private ScheduledExecutorService executor;
+
+    @Autowired
+    public AutoscalingAdvisor(ObjectProvider<KafkaAdmin> kafkaAdmin,
+                              DispatchService dispatchService,
+                              ObjectProvider<MeterRegistry> meterRegistry,
+                              ObjectProvider<KafkaListenerEndpointRegistry> listenerRegistry,
+                              @Value("${spring.kafka.topics.consumer}") String topic,
+                              @Value("${spring.kafka.consumer.group-id}") String groupId,
+                              @Value("${dispatch.autoscaling.drain-target:60s}") Duration drainTarget,
+                              @Value("${dispatch.autoscaling.consumers-per-instance:0}") int consumersPerInstance,
+                              @Value("${dispatch.autoscaling.target-utilization:0.8}") double targetUtilization,
+                              @Value("${dispatch.autoscaling.min-instances:1}") int minInstances,
+                              @Value("${dispatch.autoscaling.sample-interval:10s}") Duration sampleInterval,
+                              @Value("${dispatch.autoscaling.probe-timeout:5s}") Duration probeTimeout) {
+        this(probe(kafkaAdmin.getIfAvailable(), topic, groupId, probeTimeout), dispatchService,
+                meterRegistry.getIfAvailable(SimpleMeterRegistry::new), drainTarget,
+                consumersPerInstance(consumersPerInstance, listenerRegistry.getIfAvailable()), targetUtilization,
+                minInstances, sampleInterval);
+    }
+
+    AutoscalingAdvisor(ConsumerGroupProbe probe, DispatchService dispatchService, MeterRegistry meterRegistry,
+                       Duration drainTarget, Supplier<ConsumersPerInstance> consumersPerInstance, double targetUtilization,
+                       int minInstances, Duration sampleInterval) {
+        this.probe = probe;
+        this.dispatchService = dispatchService;
+        this.drainTarget = drainTarget;
+        this.consumersPerInstance = consumersPerInstance;
+        this.targetUtilization = targetUtilization > 0 && targetUtilization <= 1 ? targetUtilization : 1.0;
+        this.minInstances = Math.max(1, minInstances);
+        this.sampleInterval = sampleInterval;
+        gauge(meterRegistry, "dispatch.autoscaling.arrival.rate", "records/s", "Records per second arriving on the input topic",
+                AutoscalingRecommendation::arrivalRatePerSecond);
+        gauge(meterRegistry, "dispatch.autoscaling.service.time", "seconds", "Mean time DispatchService spends on one record",
+                r -> r.serviceTimeMillis() / 1000.0);
+        gauge(meterRegistry, "dispatch.autoscaling.lag", "records", "Records of the input topic not yet committed by the group",
+                r -> r.lag());
+        gauge(meterRegistry, "dispatch.autoscaling.drain.target", "seconds", "Time in which the lag should be drained",
+                r -> r.drainTargetSeconds());
+        gauge(meterRegistry, "dispatch.autoscaling.partitions", null, "Partitions of the input topic",
+                r -> r.partitions());
+        gauge(meterRegistry, "dispatch.autoscaling.consumers.per.instance", null, "Consumers processing orders in one instance",
+                r -> r.consumersPerInstance());
+        gauge(meterRegistry, "dispatch.autoscaling.current.instances", null, "Instances consuming the input topic",
+                r -> r.currentInstances());
+        gauge(meterRegistry, "dispatch.autoscaling.recommended.instances", null, "Instances needed to keep up and drain the lag in time",
+                r -> r.recommendedInstances());
+    }
+
+    /**
+     * Latest recommendation, empty until two samples have been taken.
+     */
+    public Optional<AutoscalingRecommendation> recommendation() {
+        return Optional.ofNullable(recommendation);
+    }
+
+    @Override
+    public void start() {
+        if (probe == null) {
+            log.warn("No Kafka admin configuration, the autoscaling advisor will not sample the consumer group");
+            running = true;
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "autoscaling-advisor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> sample(System.nanoTime()), 0, sampleInterval.toMillis(), TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (probe instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.debug("Could not close the consumer group probe: {}", e.toString());
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Takes a snapshot of the group and updates the smoothed rates and the recommendation.
+     */
+    synchronized void sample(long nowNanos) {
+        GroupSnapshot snapshot;
+        try {
+            snapshot = probe.probe();
+        } catch (Exception e) {
+            // Un aviso al empezar a fallar, no uno por muestra mientras el broker no responde.
+            if (!probeFailing) {
+                log.warn("Could not sample the consumer group for autoscaling: {}", e.toString());
+                probeFailing = true;
+            }
+            return;
+        }
+        probeFailing = false;
+        long processedRecords = dispatchService.processedRecords();
+        long serviceTimeNanos = dispatchService.serviceTimeNanos();
+
+        boolean first = !sampled;
+        if (!first) {
+            double seconds = (nowNanos - lastSampleNanos) / 1e9;
+            long arrived = snapshot.endOffsets() - lastEndOffsets;
+            // Un topic recreado hace retroceder los offsets: esa muestra no dice nada de la llegada.
+            if (seconds > 0 && arrived >= 0) {
+                arrivalRate = smooth(arrivalRate, arrived / seconds);
+            }
+            long processed = processedRecords - lastProcessedRecords;
+            if (processed > 0) {
+                serviceTimeSeconds = smooth(serviceTimeSeconds, (serviceTimeNanos - lastServiceTimeNanos) / 1e9 / processed);
+            }
+        }
+        sampled = true;
+        lastSampleNanos = nowNanos;
+        lastEndOffsets = snapshot.endOffsets();
+        lastProcessedRecords = processedRecords;
+        lastServiceTimeNanos = serviceTimeNanos;
+        if (!first) {
+            recommendation = recommend(snapshot, arrivalRate, serviceTimeSeconds, drainTarget, consumersPerInstance.get(),
+                    targetUtilization, minInstances);
+        }
+    }
+
+    /**
+     * Instances needed to keep up with the arrival rate and drain the lag within the target, capped at the
+     * instances that can own a partition.
+     */
+    static AutoscalingRecommendation recommend(GroupSnapshot snapshot, double arrivalRate, double serviceTimeSeconds,
+                                               Duration drainTarget, ConsumersPerInstance consumers, double targetUtilization,
+                                               int minInstances) {
+        int currentInstances = ceilDiv(snapshot.members(), consumers.input());
+        int maxInstances = Math.max(minInstances, ceilDiv(snapshot.partitions(), consumers.input()));
+        double drainSeconds = Math.max(1, drainTarget.toSeconds());
+        double arrival = Double.isNaN(arrivalRate) ? 0 : arrivalRate;
+        double requiredRate = arrival + snapshot.lag() / drainSeconds;
+
+        if (Double.isNaN(serviceTimeSeconds) || serviceTimeSeconds <= 0) {
+            int recommended = Math.min(maxInstances, Math.max(minInstances, currentInstances));
+            return new AutoscalingRecommendation(recommended, currentInstances, maxInstances, snapshot.partitions(),
+                    consumers.processing(), arrival, Double.NaN, snapshot.lag(), (long) drainSeconds, requiredRate, Double.NaN,
+                    "no-service-time");
+        }
+
+        double capacityPerInstance = consumers.processing() / serviceTimeSeconds * targetUtilization;
+        // Sin el épsilon, 2.0000000001 por redondeo pediría una instancia de más.
+        long needed = (long) Math.ceil(requiredRate / capacityPerInstance - 1e-9);
+        int recommended;
+        String limitedBy;
+        if (needed > maxInstances) {
+            recommended = maxInstances;
+            limitedBy = "partitions";
+        } else if (needed < minInstances) {
+            recommended = minInstances;
+            limitedBy = "min-instances";
+        } else {
+            recommended = (int) needed;
+            limitedBy = "demand";
+        }
+        return new AutoscalingRecommendation(recommended, currentInstances, maxInstances, snapshot.partitions(),
+                consumers.processing(), arrival, serviceTimeSeconds * 1000, snapshot.lag(), (long) drainSeconds, requiredRate,
+                capacityPerInstance, limitedBy);
+    }
+
+    private void gauge(MeterRegistry meterRegistry, String name, String baseUnit, String description,
+                       ToDoubleFunction<AutoscalingRecommendation> value) {
+        Gauge.builder(name, this, advisor -> {
+                    AutoscalingRecommendation current = advisor.recommendation;
+                    return current == null ? Double.NaN : value.applyAsDouble(current);
+                })
+                .description(description)
+                .baseUnit(baseUnit)
+                .register(meterRegistry);
+    }
+
+    private static double smooth(double previous, double sample) {
+        return Double.isNaN(previous) ? sample : previous + SMOOTHING * (sample - previous);
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    private static Supplier<ConsumersPerInstance> consumersPerInstance(int configured, KafkaListenerEndpointRegistry registry) {
+        if (configured > 0 || registry == null) {
+            ConsumersPerInstance fixed = ConsumersPerInstance.fixed(Math.max(1, configured));
+            return () -> fixed;
+        }
+        return () -> ConsumersPerInstance.of(registry);
+    }
+
+    private static ConsumerGroupProbe probe(KafkaAdmin kafkaAdmin, String topic, String groupId, Duration timeout) {
+        return kafkaAdmin == null ? null
+                : new AdminConsumerGroupProbe(kafkaAdmin.getConfigurationProperties(), topic, groupId, timeout);
+    }
+}
@@ -0,0 +1,32 @@
+package com.jesusfc.kafka.autoscaling;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Recomendación de escalado para el orquestador:
+  GET /autoscaling  -> instancias recomendadas para el grupo de orderConsumerClient y las entradas del cálculo;
+                       404 hasta que el advisor tiene dos muestras del grupo.
+ */
+@RestController
+@RequestMapping("/autoscaling")
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "dispatch.autoscaling", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class AutoscalingController {
+
+    private final AutoscalingAdvisor autoscalingAdvisor;
+
+    @GetMapping
+    public ResponseEntity<AutoscalingRecommendation> recommendation() {
+        return ResponseEntity.of(autoscalingAdvisor.recommendation());
+    }
+}
@@ -0,0 +1,29 @@
+package com.jesusfc.kafka.autoscaling;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Respuesta de GET /autoscaling: el número de instancias recomendado y las entradas con las que se ha calculado.
+  requiredRatePerSecond      llegada + lag / drainTargetSeconds: lo que hay que procesar para vaciar el lag a tiempo.
+  consumersPerInstance       consumidores que procesan pedidos en una instancia (ver ConsumersPerInstance).
+  capacityPerInstance        records/s que aguanta una instancia a la utilización objetivo.
+  maxInstances               instancias que pueden tener partición (más no consumirían nada).
+  limitedBy                  demand | partitions | min-instances | no-service-time (aún no se ha procesado ningún
+                             record: se recomienda mantener las instancias actuales).
+ */
+public record AutoscalingRecommendation(int recommendedInstances,
+                                        int currentInstances,
+                                        int maxInstances,
+                                        int partitions,
+                                        int consumersPerInstance,
+                                        double arrivalRatePerSecond,
+                                        double serviceTimeMillis,
+                                        long lag,
+                                        long drainTargetSeconds,
+                                        double requiredRatePerSecond,
+                                        double capacityPerInstance,
+                                        String limitedBy) {
+}
@@ -0,0 +1,15 @@
+package com.jesusfc.kafka.autoscaling;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+@FunctionalInterface
+interface ConsumerGroupProbe {
+
+    /**
+     * Current offsets, lag and members of the consumer group on the input topic.
+     */
+    GroupSnapshot probe() throws Exception;
+}
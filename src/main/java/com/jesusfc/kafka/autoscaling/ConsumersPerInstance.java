@@ -0,0 +1,70 @@
+package com.jesusfc.kafka.autoscaling;
+
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.util.List;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Consumidores de una instancia, en los dos papeles que usa el AutoscalingAdvisor:
+  input       miembros del grupo en el topic de entrada (orderConsumerClient): cuántas instancias hay y cuántas pueden
+              tener partición.
+  processing  consumidores que procesan pedidos en DispatchService: la capacidad de la instancia.
+En el camino directo y en el pipeline son el mismo contenedor. Con el reparto por artículo o con los carriles,
+orderConsumerClient solo re-publica y procesan orderByItemConsumerClient o los dos carriles, cada uno con su
+concurrencia (por defecto 3 + 4 en los carriles).
+Derivados de los contenedores activos: de cada uno cuentan los hilos con partición asignada (un hilo sin partición no
+procesa nada) o, mientras aún no hay asignación, su concurrencia.
+ */
+record ConsumersPerInstance(int input, int processing) {
+
+    static final String INPUT_LISTENER = "orderConsumerClient";
+    static final List<String> PROCESSING_LISTENERS = List.of("orderByItemConsumerClient", "expressLaneConsumerClient", "bulkLaneConsumerClient");
+
+    ConsumersPerInstance {
+        input = Math.max(1, input);
+        processing = Math.max(1, processing);
+    }
+
+    static ConsumersPerInstance fixed(int consumers) {
+        return new ConsumersPerInstance(consumers, consumers);
+    }
+
+    /**
+     * Consumers of the listener containers currently running in this instance.
+     */
+    static ConsumersPerInstance of(KafkaListenerEndpointRegistry registry) {
+        MessageListenerContainer input = registry.getListenerContainer(INPUT_LISTENER);
+        int processing = 0;
+        for (String id : PROCESSING_LISTENERS) {
+            processing += active(registry.getListenerContainer(id));
+        }
+        if (processing == 0) {
+            processing = active(input);
+        }
+        return new ConsumersPerInstance(active(input), processing);
+    }
+
+    private static int active(MessageListenerContainer container) {
+        if (container == null || !container.isRunning()) {
+            return 0;
+        }
+        if (!(container instanceof ConcurrentMessageListenerContainer<?, ?> concurrent)) {
+            return 1;
+        }
+        int assigned = 0;
+        for (MessageListenerContainer child : concurrent.getContainers()) {
+            var partitions = child.getAssignedPartitions();
+            if (partitions != null && !partitions.isEmpty()) {
+                assigned++;
+            }
+        }
+        return assigned > 0 ? assigned : concurrent.getConcurrency();
+    }
+}
@@ -0,0 +1,16 @@
+package com.jesusfc.kafka.autoscaling;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Foto del grupo de consumidores sobre el topic de entrada:
+  partitions   particiones del topic.
+  endOffsets   suma de los log-end offsets: su crecimiento entre dos fotos es la tasa de llegada.
+  lag          suma por partición de log-end offset - offset confirmado por el grupo.
+  members      consumidores del grupo con alguna partición del topic asignada.
+ */
+record GroupSnapshot(int partitions, long endOffsets, long lag, int members) {
+}
@@ -0,0 +1,120 @@
+package com.jesusfc.kafka.client;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Caché local de la respuesta del servicio de stock por artículo, con TTL corto.
+Con dispatch.stock.cache-ttl=0 (por defecto) está desactivada y StockServiceClient llama siempre al servicio.
+Su tasa de aciertos depende de cuántos artículos distintos ve cada instancia: con el reparto por artículo
+(dispatch.repartition.enabled) cada instancia ve solo su parte y la caché se mantiene caliente.
+ */
+@Component
+public class AvailabilityCache {
+
+    private final Map<String, CachedAvailability> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final long ttlMs;
+    private final int maxEntries;
+    private final Clock clock;
+
+    @Autowired
+    public AvailabilityCache(@Value("${dispatch.stock.cache-ttl:0s}") Duration ttl,
+                             @Value("${dispatch.stock.cache-max-entries:100000}") int maxEntries) {
+        this(ttl, maxEntries, Clock.systemUTC());
+    }
+
+    public AvailabilityCache(Duration ttl, int maxEntries, Clock clock) {
+        this.ttlMs = ttl.toMillis();
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    public static AvailabilityCache disabled() {
+        return new AvailabilityCache(Duration.ZERO, 0, Clock.systemUTC());
+    }
+
+    public boolean isEnabled() {
+        return ttlMs > 0;
+    }
+
+    /**
+     * Returns the cached availability of the item, or null if it is not cached or has expired.
+     */
+    public String get(String item) {
+        CachedAvailability entry = entries.get(item);
+        if (entry != null && entry.expiresAt() > clock.millis()) {
+            hits.increment();
+            return entry.availability();
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String item, String availability) {
+        store(new CachedAvailability(item, availability, clock.millis() + ttlMs));
+    }
+
+    /**
+     * Restores an entry saved in a snapshot, keeping its original expiry. Entries already expired are ignored.
+     *
+     * @return true if the entry was restored.
+     */
+    public boolean restore(CachedAvailability entry) {
+        return entry.expiresAt() > clock.millis() && store(entry);
+    }
+
+    /**
+     * Copy of the fresh entries, for the warm-restart snapshot.
+     */
+    public List<CachedAvailability> entries() {
+        long now = clock.millis();
+        return entries.values().stream().filter(entry -> entry.expiresAt() > now).toList();
+    }
+
+    private boolean store(CachedAvailability entry) {
+        if (entries.size() >= maxEntries && !entries.containsKey(entry.item())) {
+            long now = clock.millis();
+            entries.values().removeIf(cached -> cached.expiresAt() <= now);
+            if (entries.size() >= maxEntries) {
+                return false;
+            }
+        }
+        entries.put(entry.item(), entry);
+        return true;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public double hitRate() {
+        long total = hits() + misses();
+        return total == 0 ? 0.0 : (double) hits() / total;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public record CachedAvailability(String item, String availability, long expiresAt) {
+    }
+}
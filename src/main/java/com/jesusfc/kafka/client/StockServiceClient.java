@@ -1,14 +1,32 @@
 package com.jesusfc.kafka.client;
 
 import com.jesusfc.kafka.exception.RetryableException;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 /**
  * Author Jesús Fdez. Caraballo
@@ -16,6 +34,12 @@ import org.springframework.web.client.RestTemplate;
  * Created on oct - 2025
  *
  */
+/*
+Pedidos con varias líneas (checkAvailability(Collection)): los artículos que no están en la caché se consultan de una
+vez en el endpoint bulk del servicio de stock (dispatch.stock.bulk-endpoint, "?items=a,b,c" -> {"a": true, ...}) si
+está configurado, y si no, o si el servicio no lo tiene (404/405), en paralelo con una consulta por artículo en hilos
+virtuales, como mucho dispatch.stock.max-parallel-checks a la vez. Los hilos virtuales se cierran al parar el contexto.
+ */
 @Slf4j
 @Component
 public class StockServiceClient {
@@ -24,20 +48,61 @@ public class StockServiceClient {
 
     private final String stockServiceEndpoint;
 
-    public StockServiceClient(@Autowired RestTemplate restTemplate, @Value("${dispatch.stockServiceEndpoint}") String stockServiceEndpoint) {
+    private final AvailabilityCache availabilityCache;
+
+    private final String bulkEndpoint;
+
+    private final Semaphore parallelChecks;
+
+    private final ExecutorService fanOut = Executors.newVirtualThreadPerTaskExecutor();
+
+    private volatile boolean bulkSupported;
+
+    public StockServiceClient(RestTemplate restTemplate, String stockServiceEndpoint) {
+        this(restTemplate, stockServiceEndpoint, AvailabilityCache.disabled());
+    }
+
+    public StockServiceClient(RestTemplate restTemplate, String stockServiceEndpoint, AvailabilityCache availabilityCache) {
+        this(restTemplate, stockServiceEndpoint, availabilityCache, "", 8);
+    }
+
+    @Autowired
+    public StockServiceClient(RestTemplate restTemplate, @Value("${dispatch.stockServiceEndpoint}") String stockServiceEndpoint,
+                              AvailabilityCache availabilityCache,
+                              @Value("${dispatch.stock.bulk-endpoint:}") String bulkEndpoint,
+                              @Value("${dispatch.stock.max-parallel-checks:8}") int maxParallelChecks) {
         this.restTemplate = restTemplate;
         this.stockServiceEndpoint = stockServiceEndpoint;
+        this.availabilityCache = availabilityCache;
+        this.bulkEndpoint = bulkEndpoint;
+        this.bulkSupported = bulkEndpoint != null && !bulkEndpoint.isBlank();
+        this.parallelChecks = new Semaphore(Math.max(1, maxParallelChecks));
+    }
+
+    @PreDestroy
+    void close() {
+        fanOut.close();
     }
 
     /**
      * The stock service returns true if item is available, false otherwise.
+     * Answers are served from the AvailabilityCache while they are fresh, when the cache is enabled.
      */
     public String checkAvailability(String item) {
+        if (availabilityCache.isEnabled()) {
+            String cached = availabilityCache.get(item);
+            if (cached != null) {
+                return cached;
+            }
+        }
         try {
             ResponseEntity<String> response = restTemplate.getForEntity(stockServiceEndpoint + "?item=" + item, String.class);
             if (response.getStatusCodeValue() != 200) {
                 throw new RuntimeException("error " + response.getStatusCodeValue());
             }
+            if (availabilityCache.isEnabled() && response.getBody() != null) {
+                availabilityCache.put(item, response.getBody());
+            }
             return response.getBody();
         } catch (HttpServerErrorException | ResourceAccessException e) {
             log.warn("Failure calling external service", e);
@@ -47,4 +112,93 @@ public class StockServiceClient {
             throw e;
         }
     }
+
+    /**
+     * Availability of several items at once, for multi-line orders: cached answers first, then one bulk call
+     * or concurrent single-item calls for the rest. Fails with the first error of any item.
+     */
+    public Map<String, Boolean> checkAvailability(Collection<String> items) {
+        Map<String, Boolean> availability = new LinkedHashMap<>();
+        List<String> pending = new ArrayList<>();
+        for (String item : new LinkedHashSet<>(items)) {
+            String cached = availabilityCache.isEnabled() ? availabilityCache.get(item) : null;
+            if (cached != null) {
+                availability.put(item, Boolean.parseBoolean(cached));
+            } else {
+                pending.add(item);
+            }
+        }
+        if (pending.size() == 1) {
+            availability.put(pending.get(0), Boolean.parseBoolean(checkAvailability(pending.get(0))));
+        } else if (!pending.isEmpty()) {
+            Map<String, Boolean> checked = bulkSupported ? checkBulk(pending) : null;
+            availability.putAll(checked != null ? checked : checkConcurrently(pending));
+        }
+        return availability;
+    }
+
+    private Map<String, Boolean> checkBulk(List<String> items) {
+        try {
+            // Los nombres de artículo van codificados: un espacio, "&" o "#" no deben cortar ni cambiar la consulta.
+            URI uri = UriComponentsBuilder.fromUriString(bulkEndpoint)
+                    .queryParam("items", "{items}")
+                    .encode()
+                    .buildAndExpand(String.join(",", items))
+                    .toUri();
+            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(uri, HttpMethod.GET, null, new ParameterizedTypeReference<>() {
+            });
+            Map<String, Object> body = response.getBody();
+            if (response.getStatusCode().value() != 200 || body == null) {
+                throw new RuntimeException("error " + response.getStatusCode().value());
+            }
+            Map<String, Boolean> availability = new LinkedHashMap<>();
+            for (String item : items) {
+                String available = String.valueOf(body.get(item));
+                availability.put(item, Boolean.parseBoolean(available));
+                if (availabilityCache.isEnabled() && body.containsKey(item)) {
+                    availabilityCache.put(item, available);
+                }
+            }
+            return availability;
+        } catch (HttpClientErrorException.NotFound | HttpClientErrorException.MethodNotAllowed e) {
+            // El servicio de stock no tiene endpoint bulk: a partir de ahora, consultas en paralelo.
+            log.warn("Stock service has no bulk endpoint at {}, checking items concurrently from now on", bulkEndpoint);
+            bulkSupported = false;
+            return null;
+        } catch (HttpServerErrorException | ResourceAccessException e) {
+            log.warn("Failure calling external service", e);
+            throw new RetryableException(e);
+        }
+    }
+
+    private Map<String, Boolean> checkConcurrently(List<String> items) {
+        List<Future<String>> answers = new ArrayList<>(items.size());
+        for (String item : items) {
+            answers.add(fanOut.submit(() -> {
+                parallelChecks.acquire();
+                try {
+                    return checkAvailability(item);
+                } finally {
+                    parallelChecks.release();
+                }
+            }));
+        }
+        Map<String, Boolean> availability = new LinkedHashMap<>();
+        try {
+            for (int i = 0; i < items.size(); i++) {
+                availability.put(items.get(i), Boolean.parseBoolean(answers.get(i).get()));
+            }
+        } catch (ExecutionException e) {
+            answers.forEach(answer -> answer.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            answers.forEach(answer -> answer.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RetryableException(e);
+        }
+        return availability;
+    }
 }
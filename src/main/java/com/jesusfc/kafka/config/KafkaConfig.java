@@ -1,13 +1,23 @@
 package com.jesusfc.kafka.config;
 
 
+import com.jesusfc.kafka.deferred.DeferredOrderScheduler;
+import com.jesusfc.kafka.deferred.ParkedOrderReleasingRebalanceListener;
 import com.jesusfc.kafka.exception.NotRetryableException;
 import com.jesusfc.kafka.exception.RetryableException;
+import com.jesusfc.kafka.message.DeferredOrder;
 import com.jesusfc.kafka.message.OrderCreated;
+import com.jesusfc.kafka.pipeline.StagedDispatchPipeline;
+import com.jesusfc.kafka.rebalance.DrainingRebalanceListener;
+import com.jesusfc.kafka.rebalance.StaticMembershipCustomizer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.CooperativeStickyAssignor;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -20,6 +30,7 @@ import org.springframework.kafka.support.serializer.JsonSerializer;
 import org.springframework.util.backoff.FixedBackOff;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -32,9 +43,13 @@ import java.util.Map;
 public class KafkaConfig {
 
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory(ConsumerFactory<String, Object> consumerFactory) {
+    public ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory(ConsumerFactory<String, Object> consumerFactory,
+                                                                                                 DrainingRebalanceListener rebalanceListener,
+                                                                                                 StaticMembershipCustomizer staticMembership) {
         ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory);
+        factory.getContainerProperties().setConsumerRebalanceListener(rebalanceListener);
+        factory.setContainerCustomizer(staticMembership);
 
         // Configuración del manejador de errores con políticas de reintento y excepciones específicas
         DefaultErrorHandler errorHandler = new DefaultErrorHandler(new FixedBackOff(100L, 3L));
@@ -46,14 +61,69 @@ public class KafkaConfig {
     }
 
     @Bean
-    public ConsumerFactory<String, Object> consumerFactory(@Value("${spring.kafka.bootstrap-servers}") String bootstrapServers) {
+    public ConsumerFactory<String, Object> consumerFactory(@Value("${spring.kafka.bootstrap-servers}") String bootstrapServers,
+                                                           @Value("${dispatch.consumer.session-timeout:45s}") Duration sessionTimeout,
+                                                           @Value("${dispatch.consumer.heartbeat-interval:1s}") Duration heartbeatInterval) {
+        return new DefaultKafkaConsumerFactory<>(consumerProps(bootstrapServers, sessionTimeout, heartbeatInterval, OrderCreated.class));
+    }
+
+    /*
+     * Listener de rebalanceo común a todos los contenedores: vacía el trabajo en vuelo de las particiones revocadas
+     * antes de su commit. Sin actuator (p. ej. en tests que solo cargan esta configuración) las métricas van a un
+     * registro local.
+     */
+    @Bean
+    public DrainingRebalanceListener drainingRebalanceListener(ObjectProvider<StagedDispatchPipeline> pipeline,
+                                                               ObjectProvider<MeterRegistry> meterRegistry,
+                                                               @Value("${spring.kafka.topics.consumer}") String consumerTopic,
+                                                               @Value("${dispatch.rebalance.drain-budget:10s}") Duration drainBudget) {
+        return new DrainingRebalanceListener(pipeline, consumerTopic, drainBudget, meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    @Bean
+    public StaticMembershipCustomizer staticMembershipCustomizer(@Value("${dispatch.consumer.instance-id:}") String instanceId) {
+        return new StaticMembershipCustomizer(instanceId);
+    }
+
+    /*
+     * Factoría para el listener del topic "my.order.deferred.topic". Usa su propio ConsumerFactory (no expuesto
+     * como bean para no competir con el principal) porque el tipo por defecto del payload es DeferredOrder.
+     * Los pedidos aparcados los re-conduce el DeferredOrderScheduler, así que aquí no hay reintentos. Su offset se
+     * commitea al entrar en la rueda: al revocar o perder particiones el scheduler devuelve al topic los de esas particiones.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> deferredKafkaListenerContainerFactory(@Value("${spring.kafka.bootstrap-servers}") String bootstrapServers,
+                                                                                                         @Value("${dispatch.consumer.session-timeout:45s}") Duration sessionTimeout,
+                                                                                                         @Value("${dispatch.consumer.heartbeat-interval:1s}") Duration heartbeatInterval,
+                                                                                                         DrainingRebalanceListener rebalanceListener,
+                                                                                                         ObjectProvider<DeferredOrderScheduler> deferredOrderScheduler,
+                                                                                                         StaticMembershipCustomizer staticMembership) {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(consumerProps(bootstrapServers, sessionTimeout, heartbeatInterval, DeferredOrder.class)));
+        factory.getContainerProperties().setConsumerRebalanceListener(new ParkedOrderReleasingRebalanceListener(rebalanceListener, deferredOrderScheduler));
+        factory.setContainerCustomizer(staticMembership);
+        factory.setCommonErrorHandler(new DefaultErrorHandler(new FixedBackOff(100L, 0L)));
+        return factory;
+    }
+
+    private Map<String, Object> consumerProps(String bootstrapServers, Duration sessionTimeout, Duration heartbeatInterval, Class<?> valueType) {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        // Rebalanceo cooperativo (incremental): solo se revocan las particiones que cambian de dueño.
+        props.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, CooperativeStickyAssignor.class.getName());
+        // Con pertenencia estática (group.instance.id, ver StaticMembershipCustomizer) es el tiempo que el grupo
+        // espera a que una instancia reiniciada vuelva antes de repartir sus particiones.
+        props.put(ConsumerConfig.SESSION_TIMEOUT_MS_CONFIG, (int) sessionTimeout.toMillis());
+        // El rebalanceo cooperativo necesita una segunda ronda y los miembros se enteran en el siguiente heartbeat.
+        props.put(ConsumerConfig.HEARTBEAT_INTERVAL_MS_CONFIG, (int) heartbeatInterval.toMillis());
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
         props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class);
-        props.put(JsonDeserializer.VALUE_DEFAULT_TYPE, OrderCreated.class.getCanonicalName());
+        props.put(JsonDeserializer.VALUE_DEFAULT_TYPE, valueType.getCanonicalName());
+        // Los topics internos (diferidos, reparto por artículo) los escribe nuestro JsonSerializer, que añade la cabecera
+        // __TypeId__; la ignoramos y usamos siempre el tipo por defecto del listener.
+        props.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        return new DefaultKafkaConsumerFactory<>(props);
+        return props;
     }
 
     @Bean
@@ -62,9 +132,13 @@ public class KafkaConfig {
     }
 
     @Bean
-    public ProducerFactory<String, Object> producerFactory(@Value("${spring.kafka.bootstrap-servers}") String bootstrapServers) {
+    public ProducerFactory<String, Object> producerFactory(@Value("${spring.kafka.bootstrap-servers}") String bootstrapServers,
+                                                         @Value("${dispatch.producer.max-block:60s}") Duration maxBlock) {
         Map<String, Object> props = new HashMap<>();
         props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        // Tiempo máximo que send() puede bloquear esperando metadata o buffer. Con el outbox activo conviene bajarlo
+        // para que, con el broker caído, el evento acabe en el journal en vez de parar el consumo.
+        props.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, maxBlock.toMillis());
         props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         return new DefaultKafkaProducerFactory<>(props);
@@ -0,0 +1,84 @@
+package com.jesusfc.kafka.config;
+
+import com.jesusfc.kafka.exception.NotRetryableException;
+import com.jesusfc.kafka.exception.RetryableException;
+import com.jesusfc.kafka.lanes.LaneArbiter;
+import com.jesusfc.kafka.message.OrderPriority;
+import com.jesusfc.kafka.rebalance.DrainingRebalanceListener;
+import com.jesusfc.kafka.rebalance.StaticMembershipCustomizer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Carriles por prioridad (ver PriorityLaneHandler). Solo se crea con dispatch.lanes.enabled=true.
+Cada carril tiene su propio contenedor: concurrencia (hilos consumidores, como mucho las particiones de su topic)
+y política de reintentos. El express reintenta poco y rápido para no alargar su latencia; el bulk aguanta más
+reintentos con más espera. Los dos comparten los huecos de dispatch del LaneArbiter según sus pesos.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "dispatch.lanes", name = "enabled", havingValue = "true")
+public class LaneConfig {
+
+    @Bean
+    public LaneArbiter laneArbiter(@Value("${dispatch.lanes.slots:4}") int slots,
+                                   @Value("${dispatch.lanes.express.weight:3}") int expressWeight,
+                                   @Value("${dispatch.lanes.bulk.weight:1}") int bulkWeight,
+                                   ObjectProvider<MeterRegistry> meterRegistry) {
+        return new LaneArbiter(slots, Map.of(OrderPriority.EXPRESS, expressWeight, OrderPriority.BULK, bulkWeight),
+                meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> expressLaneKafkaListenerContainerFactory(ConsumerFactory<String, Object> consumerFactory,
+                                                                                                           DrainingRebalanceListener rebalanceListener,
+                                                                                                           StaticMembershipCustomizer staticMembership,
+                                                                                                           @Value("${dispatch.lanes.express.concurrency:3}") int concurrency,
+                                                                                                           @Value("${dispatch.lanes.express.retry-backoff:50ms}") Duration retryBackoff,
+                                                                                                           @Value("${dispatch.lanes.express.max-retries:2}") long maxRetries) {
+        return laneFactory(consumerFactory, rebalanceListener, staticMembership, concurrency, retryBackoff, maxRetries);
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> bulkLaneKafkaListenerContainerFactory(ConsumerFactory<String, Object> consumerFactory,
+                                                                                                         DrainingRebalanceListener rebalanceListener,
+                                                                                                         StaticMembershipCustomizer staticMembership,
+                                                                                                         @Value("${dispatch.lanes.bulk.concurrency:4}") int concurrency,
+                                                                                                         @Value("${dispatch.lanes.bulk.retry-backoff:1s}") Duration retryBackoff,
+                                                                                                         @Value("${dispatch.lanes.bulk.max-retries:5}") long maxRetries) {
+        return laneFactory(consumerFactory, rebalanceListener, staticMembership, concurrency, retryBackoff, maxRetries);
+    }
+
+    private static ConcurrentKafkaListenerContainerFactory<String, Object> laneFactory(ConsumerFactory<String, Object> consumerFactory,
+                                                                                       DrainingRebalanceListener rebalanceListener,
+                                                                                       StaticMembershipCustomizer staticMembership,
+                                                                                       int concurrency, Duration retryBackoff, long maxRetries) {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setConcurrency(concurrency);
+        factory.getContainerProperties().setConsumerRebalanceListener(rebalanceListener);
+        factory.setContainerCustomizer(staticMembership);
+
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(new FixedBackOff(retryBackoff.toMillis(), maxRetries));
+        errorHandler.addNotRetryableExceptions(NotRetryableException.class);
+        errorHandler.addRetryableExceptions(RetryableException.class);
+        factory.setCommonErrorHandler(errorHandler);
+        return factory;
+    }
+}
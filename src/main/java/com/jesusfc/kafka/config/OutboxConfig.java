@@ -0,0 +1,51 @@
+package com.jesusfc.kafka.config;
+
+import com.jesusfc.kafka.outbox.OutboxDrainer;
+import com.jesusfc.kafka.outbox.OutboxJournal;
+import com.jesusfc.kafka.ratelimit.OutputRateLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.JacksonUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Outbox local en disco para cuando el productor no puede entregar (ver DispatchEventSender).
+Solo se crea con dispatch.outbox.enabled=true; sin él, DispatchEventSender envía directamente como siempre.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "dispatch.outbox", name = "enabled", havingValue = "true")
+public class OutboxConfig {
+
+    @Bean(destroyMethod = "close")
+    public OutboxJournal outboxJournal(@Value("${dispatch.outbox.directory:./outbox}") Path directory,
+                                       @Value("${dispatch.outbox.segment-size:64MB}") DataSize segmentSize,
+                                       @Value("${dispatch.outbox.max-size:1GB}") DataSize maxSize,
+                                       @Value("${dispatch.outbox.fsync:interval}") String fsync) throws IOException {
+        return new OutboxJournal(directory, Math.toIntExact(segmentSize.toBytes()), maxSize.toBytes(),
+                OutboxJournal.FsyncPolicy.valueOf(fsync.toUpperCase()));
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public OutboxDrainer outboxDrainer(OutboxJournal outboxJournal,
+                                       KafkaTemplate<String, Object> kafkaTemplate,
+                                       OutputRateLimiter rateLimiter,
+                                       @Value("${dispatch.outbox.drain-batch-size:500}") int batchSize,
+                                       @Value("${dispatch.outbox.drain-send-timeout:10s}") Duration sendTimeout,
+                                       @Value("${dispatch.outbox.drain-idle-wait:50ms}") Duration idleWait,
+                                       @Value("${dispatch.outbox.fsync-interval:1s}") Duration fsyncInterval) {
+        return new OutboxDrainer(outboxJournal, kafkaTemplate, JacksonUtils.enhancedObjectMapper(), rateLimiter, batchSize,
+                sendTimeout, idleWait, fsyncInterval);
+    }
+}
@@ -0,0 +1,64 @@
+package com.jesusfc.kafka.config;
+
+import com.jesusfc.kafka.logging.DispatchEventLog;
+import com.jesusfc.kafka.pipeline.StagedDispatchPipeline;
+import com.jesusfc.kafka.pipeline.WaitStrategy;
+import com.jesusfc.kafka.rebalance.DrainingRebalanceListener;
+import com.jesusfc.kafka.rebalance.StaticMembershipCustomizer;
+import com.jesusfc.kafka.service.DispatchService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.time.Duration;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Pipeline por etapas para los pedidos creados (ver StagedDispatchPipeline). Solo se crea con dispatch.pipeline.enabled=true.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "dispatch.pipeline", name = "enabled", havingValue = "true")
+public class PipelineConfig {
+
+    @Bean
+    public StagedDispatchPipeline stagedDispatchPipeline(DispatchService dispatchService,
+                                                         DispatchEventLog eventLog,
+                                                         @Value("${dispatch.pipeline.ring-size:1024}") int ringSize,
+                                                         @Value("${dispatch.pipeline.wait-strategy:sleeping}") String waitStrategy,
+                                                         @Value("${dispatch.pipeline.max-attempts:4}") int maxAttempts,
+                                                         @Value("${dispatch.pipeline.retry-backoff:100ms}") Duration retryBackoff,
+                                                         @Value("${dispatch.pipeline.drain-timeout:10s}") Duration drainTimeout) {
+        return new StagedDispatchPipeline(dispatchService, eventLog, ringSize, WaitStrategy.of(waitStrategy), maxAttempts, retryBackoff, drainTimeout);
+    }
+
+    /*
+     * El listener es el único productor del primer ring buffer (SPSC), así que el contenedor tiene un solo hilo.
+     * Los offsets se confirman a mano (AckMode.MANUAL) cuando la última etapa termina cada record; Spring Kafka
+     * encola esas confirmaciones hechas desde otro hilo y las commitea desde el hilo del consumidor.
+     * Los errores del procesamiento los gestiona el propio pipeline; aquí solo llegan los de deserialización.
+     * En un rebalanceo el DrainingRebalanceListener espera a los pedidos en vuelo de las particiones revocadas.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> pipelineKafkaListenerContainerFactory(ConsumerFactory<String, Object> consumerFactory,
+                                                                                                         DrainingRebalanceListener rebalanceListener,
+                                                                                                         StaticMembershipCustomizer staticMembership) {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setConcurrency(1);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setConsumerRebalanceListener(rebalanceListener);
+        factory.setContainerCustomizer(staticMembership);
+        factory.setCommonErrorHandler(new DefaultErrorHandler(new FixedBackOff(100L, 0L)));
+        return factory;
+    }
+}
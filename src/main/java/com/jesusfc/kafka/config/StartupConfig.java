@@ -0,0 +1,38 @@
+package com.jesusfc.kafka.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.kafka.annotation.KafkaListener;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Con spring.main.lazy-initialization=true (perfil "fast-startup") un bean lazy con @KafkaListener nunca llegaría a
+registrar su contenedor, porque nadie lo pide. Los handlers se siguen creando al arrancar, y con ellos todo lo que
+necesitan para procesar el primer record (DispatchService, cliente de stock, productor...); lo demás queda lazy.
+ */
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    public static LazyInitializationExcludeFilter kafkaListenerLazyInitializationExcludeFilter() {
+        return (beanName, beanDefinition, beanType) -> hasKafkaListeners(beanType);
+    }
+
+    static boolean hasKafkaListeners(Class<?> beanType) {
+        if (beanType == null) {
+            return false;
+        }
+        if (AnnotatedElementUtils.hasAnnotation(beanType, KafkaListener.class)) {
+            return true;
+        }
+        return !MethodIntrospector.selectMethods(beanType,
+                (MethodIntrospector.MetadataLookup<KafkaListener>) method -> AnnotatedElementUtils.findMergedAnnotation(method, KafkaListener.class)).isEmpty();
+    }
+}
@@ -0,0 +1,244 @@
+package com.jesusfc.kafka.deferred;
+
+import com.jesusfc.kafka.client.StockServiceClient;
+import com.jesusfc.kafka.message.DeferredOrder;
+import com.jesusfc.kafka.message.OrderCreated;
+import com.jesusfc.kafka.service.DispatchService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Re-conduce los pedidos aparcados en "my.order.deferred.topic" cuando el artículo no tenía stock.
+En lugar de reintentar bloqueando la partición, cada pedido se programa en una rueda de temporizadores
+en memoria con un backoff por intento. Cuando la rueda dispara, todos los pedidos vencidos se agrupan por
+artículo y se hace una única consulta de stock por artículo: si hay stock se despachan, si no se vuelven a
+aparcar con el intento siguiente, y si superan la edad máxima se descartan.
+En los pedidos con varias líneas cuenta cada artículo de sus líneas: se despachan si están todos (o, con envío
+parcial, las líneas que tengan stock) y lo que falte se vuelve a aparcar.
+El offset del topic de diferidos se commitea en cuanto el pedido entra en la rueda, así que la rueda no puede ser el
+único sitio donde vive: al parar la instancia y cuando se revocan o pierden particiones del topic, los pedidos aparcados
+de esas particiones se vuelven a publicar en "my.order.deferred.topic" con su intento y su firstDeferredAt, y el nuevo
+dueño (o esta misma instancia al arrancar) los vuelve a programar. Al re-aparcar también se publica siempre; solo si
+la publicación falla se queda en la rueda, cubierto igualmente por la publicación al parar o al revocar.
+Si la instancia muere sin parar ordenadamente se pierden los pedidos que estuvieran en la rueda.
+ */
+@Slf4j
+@Component
+public class DeferredOrderScheduler {
+
+    private static final int WHEEL_LEVELS = 4;
+    private static final long STOP_TIMEOUT_MS = 5_000L;
+
+    private final DispatchService dispatchService;
+    private final StockServiceClient stockServiceClient;
+    private final List<Duration> backoff;
+    private final Duration maxAge;
+    private final long tickMs;
+    private final Clock clock;
+    private final HierarchicalTimerWheel<ParkedOrder> wheel;
+
+    private ScheduledExecutorService ticker;
+
+    @Autowired
+    public DeferredOrderScheduler(DispatchService dispatchService,
+                                  StockServiceClient stockServiceClient,
+                                  @Value("${dispatch.deferred.backoff:1s,5s,30s,2m,10m}") List<Duration> backoff,
+                                  @Value("${dispatch.deferred.max-age:1h}") Duration maxAge,
+                                  @Value("${dispatch.deferred.tick:100ms}") Duration tick,
+                                  @Value("${dispatch.deferred.wheel-size:64}") int wheelSize) {
+        this(dispatchService, stockServiceClient, backoff, maxAge, tick, wheelSize, Clock.systemUTC());
+    }
+
+    DeferredOrderScheduler(DispatchService dispatchService,
+                           StockServiceClient stockServiceClient,
+                           List<Duration> backoff,
+                           Duration maxAge,
+                           Duration tick,
+                           int wheelSize,
+                           Clock clock) {
+        if (backoff.isEmpty()) {
+            throw new IllegalArgumentException("dispatch.deferred.backoff must contain at least one delay");
+        }
+        this.dispatchService = dispatchService;
+        this.stockServiceClient = stockServiceClient;
+        this.backoff = List.copyOf(backoff);
+        this.maxAge = maxAge;
+        this.tickMs = tick.toMillis();
+        this.clock = clock;
+        this.wheel = new HierarchicalTimerWheel<>(tickMs, wheelSize, WHEEL_LEVELS, clock.millis());
+    }
+
+    @PostConstruct
+    void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "deferred-order-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            // Dejamos terminar el re-envío en curso: lo que re-aparque también tiene que publicarse antes de soltar la rueda.
+            ticker.awaitTermination(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+        republish(wheel.removeIf(parked -> true));
+    }
+
+    /**
+     * Parks the order read from the given partition of the deferred topic with the backoff of its current attempt,
+     * or drops it once it is older than the max age.
+     */
+    public void schedule(String key, int sourcePartition, DeferredOrder deferredOrder) {
+        long now = clock.millis();
+        if (isExpired(deferredOrder, now)) {
+            log.warn("Deferred order {} expired after {} attempts, dropping it.", deferredOrder.getOrder().getOrderId(), deferredOrder.getAttempt());
+            return;
+        }
+        wheel.schedule(new ParkedOrder(key, sourcePartition, deferredOrder), backoffFor(deferredOrder.getAttempt()).toMillis(), now);
+    }
+
+    /**
+     * Takes the orders parked from the given partitions of the deferred topic out of the wheel and publishes them
+     * back to the topic unchanged, so whoever owns those partitions next schedules them again.
+     */
+    public void release(Collection<Integer> sourcePartitions) {
+        republish(wheel.removeIf(parked -> sourcePartitions.contains(parked.sourcePartition())));
+    }
+
+    public int parkedOrders() {
+        return wheel.size();
+    }
+
+    void tick() {
+        try {
+            List<ParkedOrder> due = wheel.advance(clock.millis());
+            if (!due.isEmpty()) {
+                redrive(due);
+            }
+        } catch (Exception e) {
+            // Nunca dejamos que una excepción mate el hilo del ticker.
+            log.error("Error re-driving deferred orders", e);
+        }
+    }
+
+    /**
+     * Re-checks stock once per distinct item of the due orders, then dispatches or re-parks each order.
+     */
+    void redrive(List<ParkedOrder> due) {
+        Set<String> items = new LinkedHashSet<>();
+        due.forEach(parked -> items.addAll(parked.deferredOrder().getOrder().items()));
+
+        Map<String, Boolean> availability = new HashMap<>();
+        for (String item : items) {
+            availability.put(item, isAvailable(item));
+        }
+        log.info("Re-driving {} deferred orders with {} stock checks", due.size(), items.size());
+
+        long now = clock.millis();
+        for (ParkedOrder parked : due) {
+            DeferredOrder deferredOrder = parked.deferredOrder();
+            try {
+                if (deferredOrder.getOrder().hasLines()) {
+                    OrderCreated pending = dispatchService.dispatchAvailable(deferredOrder.getPartition(), parked.key(), deferredOrder.getOrder(), availability);
+                    if (pending != null) {
+                        repark(new ParkedOrder(parked.key(), parked.sourcePartition(), new DeferredOrder(pending,
+                                deferredOrder.getPartition(), deferredOrder.getAttempt(), deferredOrder.getFirstDeferredAt())), now);
+                    }
+                } else if (availability.get(deferredOrder.getOrder().getItem())) {
+                    dispatchService.dispatch(deferredOrder.getPartition(), parked.key(), deferredOrder.getOrder());
+                } else {
+                    repark(parked, now);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to re-drive deferred order {}, parking it again", deferredOrder.getOrder().getOrderId(), e);
+                repark(parked, now);
+            }
+        }
+    }
+
+    private void repark(ParkedOrder parked, long now) {
+        DeferredOrder next = DeferredOrder.builder()
+                .order(parked.deferredOrder().getOrder())
+                .partition(parked.deferredOrder().getPartition())
+                .attempt(parked.deferredOrder().getAttempt() + 1)
+                .firstDeferredAt(parked.deferredOrder().getFirstDeferredAt())
+                .build();
+        if (isExpired(next, now)) {
+            log.warn("Deferred order {} expired after {} attempts, dropping it.", next.getOrder().getOrderId(), next.getAttempt());
+            return;
+        }
+        try {
+            dispatchService.defer(parked.key(), next);
+        } catch (Exception e) {
+            log.error("Could not park deferred order {} again, keeping it in the wheel until it is due or released",
+                    next.getOrder().getOrderId(), e);
+            wheel.schedule(new ParkedOrder(parked.key(), parked.sourcePartition(), next), backoffFor(next.getAttempt()).toMillis(), now);
+        }
+    }
+
+    private void republish(List<ParkedOrder> released) {
+        if (released.isEmpty()) {
+            return;
+        }
+        int failed = 0;
+        for (ParkedOrder parked : released) {
+            try {
+                dispatchService.defer(parked.key(), parked.deferredOrder());
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                log.error("Could not publish parked order {} back to the deferred topic", parked.deferredOrder().getOrder().getOrderId(), e);
+                failed++;
+            }
+        }
+        log.info("Published {} parked orders back to the deferred topic, {} failed", released.size() - failed, failed);
+    }
+
+    private boolean isAvailable(String item) {
+        try {
+            return Boolean.parseBoolean(stockServiceClient.checkAvailability(item));
+        } catch (Exception e) {
+            log.warn("Stock check failed for deferred item {}, treating it as unavailable", item);
+            return false;
+        }
+    }
+
+    private boolean isExpired(DeferredOrder deferredOrder, long now) {
+        return now - deferredOrder.getFirstDeferredAt() > maxAge.toMillis();
+    }
+
+    private Duration backoffFor(int attempt) {
+        // El intento 1 usa el primer backoff; a partir del último se repite el último valor.
+        int index = Math.min(Math.max(attempt - 1, 0), backoff.size() - 1);
+        return backoff.get(index);
+    }
+
+    record ParkedOrder(String key, int sourcePartition, DeferredOrder deferredOrder) {
+    }
+}
@@ -0,0 +1,161 @@
+package com.jesusfc.kafka.deferred;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Rueda de temporizadores jerárquica (hashed hierarchical timing wheel).
+El nivel 0 tiene "wheelSize" huecos de "tickMs" cada uno; cada nivel superior cubre wheelSize veces
+el rango del anterior. Programar y expirar una tarea es O(1), y al completar una vuelta de un nivel
+se "cascadean" las tareas del hueco correspondiente del nivel superior hacia los niveles inferiores.
+Las tareas cuyo plazo supera el rango total se colocan en el último nivel y se vuelven a recolocar
+cada vez que se cascadean, sin expirar nunca antes de tiempo.
+La rueda no tiene reloj propio: quien la usa le pasa el instante actual en schedule() y advance().
+ */
+public class HierarchicalTimerWheel<T> {
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final long startMs;
+    private final List<Entry<T>>[][] levels;
+
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public HierarchicalTimerWheel(long tickMs, int wheelSize, int numLevels, long startMs) {
+        if (tickMs <= 0 || wheelSize < 2 || numLevels < 1) {
+            throw new IllegalArgumentException("tickMs must be > 0, wheelSize >= 2 and numLevels >= 1");
+        }
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.startMs = startMs;
+        this.levels = new List[numLevels][wheelSize];
+    }
+
+    /**
+     * Schedules the task to expire delayMs after nowMs, rounded up to the next tick.
+     */
+    public synchronized void schedule(T task, long delayMs, long nowMs) {
+        long deadlineMs = nowMs + Math.max(0L, delayMs);
+        long deadlineTick = Math.floorDiv(deadlineMs - startMs + tickMs - 1, tickMs);
+        size++;
+        place(new Entry<>(task, deadlineTick), null);
+    }
+
+    /**
+     * Moves the wheel forward up to nowMs and returns the tasks that have expired, in deadline order per tick.
+     */
+    public synchronized List<T> advance(long nowMs) {
+        List<T> expired = new ArrayList<>();
+        long targetTick = Math.floorDiv(nowMs - startMs, tickMs);
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade(expired);
+            List<Entry<T>> bucket = takeBucket(0, (int) (currentTick % wheelSize));
+            if (bucket != null) {
+                for (Entry<T> entry : bucket) {
+                    place(entry, expired);
+                }
+            }
+        }
+        size -= expired.size();
+        return expired;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Removes and returns every pending task that matches the filter, whatever its deadline.
+     */
+    public synchronized List<T> removeIf(Predicate<? super T> filter) {
+        List<T> removed = new ArrayList<>();
+        for (List<Entry<T>>[] level : levels) {
+            for (List<Entry<T>> bucket : level) {
+                if (bucket == null) {
+                    continue;
+                }
+                bucket.removeIf(entry -> {
+                    if (filter.test(entry.task)) {
+                        removed.add(entry.task);
+                        return true;
+                    }
+                    return false;
+                });
+            }
+        }
+        size -= removed.size();
+        return removed;
+    }
+
+    private void cascade(List<T> expired) {
+        // Los niveles superiores primero, para que sus tareas bajen en cascada hasta el nivel 0 en la misma vuelta.
+        for (int level = levels.length - 1; level > 0; level--) {
+            long span = span(level);
+            if (span > 0 && currentTick % span == 0) {
+                List<Entry<T>> bucket = takeBucket(level, (int) ((currentTick / span) % wheelSize));
+                if (bucket != null) {
+                    for (Entry<T> entry : bucket) {
+                        place(entry, expired);
+                    }
+                }
+            }
+        }
+    }
+
+    private void place(Entry<T> entry, List<T> expired) {
+        long remaining = entry.deadlineTick - currentTick;
+        if (remaining <= 0) {
+            if (expired != null) {
+                expired.add(entry.task);
+            } else {
+                // Ya vencida al programarla: se entrega en el siguiente tick.
+                addToBucket(0, (int) ((currentTick + 1) % wheelSize), new Entry<>(entry.task, currentTick + 1));
+            }
+            return;
+        }
+        for (int level = 0; level < levels.length; level++) {
+            long span = span(level);
+            long range = span * wheelSize;
+            if (remaining < range || level == levels.length - 1 || range <= 0) {
+                long deadline = Math.min(entry.deadlineTick, currentTick + range - 1);
+                addToBucket(level, (int) ((deadline / span) % wheelSize), entry);
+                return;
+            }
+        }
+    }
+
+    private long span(int level) {
+        long span = 1;
+        for (int i = 0; i < level; i++) {
+            span *= wheelSize;
+        }
+        return span;
+    }
+
+    private void addToBucket(int level, int slot, Entry<T> entry) {
+        List<Entry<T>> bucket = levels[level][slot];
+        if (bucket == null) {
+            bucket = new ArrayList<>();
+            levels[level][slot] = bucket;
+        }
+        bucket.add(entry);
+    }
+
+    private List<Entry<T>> takeBucket(int level, int slot) {
+        List<Entry<T>> bucket = levels[level][slot];
+        levels[level][slot] = null;
+        return bucket;
+    }
+
+    private record Entry<T>(T task, long deadlineTick) {
+    }
+}
@@ -0,0 +1,68 @@
+package com.jesusfc.kafka.deferred;
+
+import com.jesusfc.kafka.service.DispatchService;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Listener de rebalanceo del contenedor de "my.order.deferred.topic". Delega en el listener común y, antes del commit de
+las particiones revocadas, devuelve al topic los pedidos que el DeferredOrderScheduler tenía aparcados de ellas: su
+offset ya está commiteado y el nuevo dueño no los volvería a leer.
+Con las particiones perdidas se hace lo mismo; el nuevo dueño tampoco los tiene.
+ */
+public class ParkedOrderReleasingRebalanceListener implements ConsumerAwareRebalanceListener {
+
+    private final ConsumerAwareRebalanceListener delegate;
+    private final ObjectProvider<DeferredOrderScheduler> scheduler;
+
+    public ParkedOrderReleasingRebalanceListener(ConsumerAwareRebalanceListener delegate, ObjectProvider<DeferredOrderScheduler> scheduler) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        delegate.onPartitionsRevokedBeforeCommit(consumer, partitions);
+        release(partitions);
+    }
+
+    @Override
+    public void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        delegate.onPartitionsRevokedAfterCommit(consumer, partitions);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        delegate.onPartitionsAssigned(consumer, partitions);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        delegate.onPartitionsLost(consumer, partitions);
+        release(partitions);
+    }
+
+    private void release(Collection<TopicPartition> partitions) {
+        DeferredOrderScheduler deferredOrderScheduler = scheduler.getIfAvailable();
+        if (deferredOrderScheduler == null) {
+            return;
+        }
+        List<Integer> deferredPartitions = partitions.stream()
+                .filter(partition -> partition.topic().equals(DispatchService.DEFERRED_ORDER_TOPIC))
+                .map(TopicPartition::partition)
+                .toList();
+        if (!deferredPartitions.isEmpty()) {
+            deferredOrderScheduler.release(deferredPartitions);
+        }
+    }
+}
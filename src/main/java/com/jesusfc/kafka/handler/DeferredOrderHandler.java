@@ -0,0 +1,45 @@
+package com.jesusfc.kafka.handler;
+
+import com.jesusfc.kafka.deferred.DeferredOrderScheduler;
+import com.jesusfc.kafka.message.DeferredOrder;
+import com.jesusfc.kafka.service.DispatchService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Component;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class DeferredOrderHandler {
+
+    private final DeferredOrderScheduler deferredOrderScheduler;
+
+    /*
+     * Escucha el topic "my.order.deferred.topic" donde DispatchService aparca los pedidos sin stock.
+     * No bloquea la partición esperando al backoff: solo programa el pedido en la rueda de temporizadores
+     * del DeferredOrderScheduler, que será quien lo vuelva a comprobar cuando venza. La partición de origen le sirve
+     * para devolver al topic los pedidos aparcados cuando esa partición se revoca.
+     */
+    @KafkaListener(
+            id = "deferredOrderConsumerClient",
+            topics = DispatchService.DEFERRED_ORDER_TOPIC,
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "deferredKafkaListenerContainerFactory"
+    )
+    public void listen(@Header(KafkaHeaders.RECEIVED_PARTITION) Integer partition,
+                       @Header(KafkaHeaders.RECEIVED_KEY) String key,
+                       @Payload DeferredOrder payload) {
+
+        log.debug("Scheduling deferred order, partition: {}, key: {}, payload: {}", partition, key, payload);
+        deferredOrderScheduler.schedule(key, partition, payload);
+    }
+}
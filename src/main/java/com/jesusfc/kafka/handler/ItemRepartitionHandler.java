@@ -0,0 +1,132 @@
+package com.jesusfc.kafka.handler;
+
+import com.jesusfc.kafka.exception.NotRetryableException;
+import com.jesusfc.kafka.exception.RetryableException;
+import com.jesusfc.kafka.logging.DispatchEventLog;
+import com.jesusfc.kafka.message.OrderCreated;
+import com.jesusfc.kafka.service.DispatchService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+
+import static com.jesusfc.kafka.logging.DispatchEventType.FAILURE;
+import static com.jesusfc.kafka.logging.DispatchEventType.ORDER_RECEIVED;
+import static com.jesusfc.kafka.logging.DispatchEventType.RETRYABLE_FAILURE;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Reparto por artículo (dispatch.repartition.enabled=true). Sustituye a OrderCreatedHandler:
+1. "orderConsumerClient" lee "my.order.created.topic" y re-publica cada pedido en el topic interno
+   "my.order.created.by-item.topic" con el artículo como key, guardando la key y la partición originales en cabeceras.
+   Un pedido con varias líneas va por el artículo de su primera línea: siempre la misma partición para el mismo
+   pedido, y al menos esa consulta de stock cae en la caché caliente. Sin artículo, por la key original o el orderId.
+2. "orderByItemConsumerClient" lee el topic interno y procesa el pedido con DispatchService.
+Así cada instancia es dueña de un subconjunto estable y disjunto de artículos, y su AvailabilityCache se mantiene
+caliente en vez de estar duplicada y fría en todas las instancias.
+Contrapartida: el orden ya no se garantiza por key original sino por artículo. Dos pedidos con la misma key y
+distinto artículo pueden procesarse en cualquier orden (ver ItemAffinityLoadHarnessTest).
+Con los carriles activos (dispatch.lanes.enabled) no se crea: PriorityLaneHandler registra su propio "orderConsumerClient".
+ */
+@Component
+@ConditionalOnProperty(prefix = "dispatch.repartition", name = "enabled", havingValue = "true")
+@ConditionalOnProperty(prefix = "dispatch.lanes", name = "enabled", havingValue = "false", matchIfMissing = true)
+public class ItemRepartitionHandler {
+
+    public static final String ORIGINAL_KEY_HEADER = "x-original-key";
+    public static final String ORIGINAL_PARTITION_HEADER = "x-original-partition";
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final DispatchService dispatchService;
+    private final DispatchEventLog eventLog;
+    private final String byItemTopic;
+
+    public ItemRepartitionHandler(KafkaTemplate<String, Object> kafkaTemplate,
+                                  DispatchService dispatchService,
+                                  DispatchEventLog eventLog,
+                                  @Value("${spring.kafka.topics.by-item}") String byItemTopic) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.dispatchService = dispatchService;
+        this.eventLog = eventLog;
+        this.byItemTopic = byItemTopic;
+    }
+
+    @KafkaListener(
+            id = "orderConsumerClient",
+            topics = "${spring.kafka.topics.consumer}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "kafkaListenerContainerFactory"
+    )
+    public void repartition(@Header(KafkaHeaders.RECEIVED_PARTITION) Integer partition,
+                            @Header(value = KafkaHeaders.RECEIVED_KEY, required = false) String key,
+                            @Payload OrderCreated payload) throws ExecutionException, InterruptedException {
+
+        ProducerRecord<String, Object> record = new ProducerRecord<>(byItemTopic, repartitionKey(key, payload), payload);
+        if (key != null) {
+            record.headers().add(ORIGINAL_KEY_HEADER, key.getBytes(StandardCharsets.UTF_8));
+        }
+        record.headers().add(ORIGINAL_PARTITION_HEADER, String.valueOf(partition).getBytes(StandardCharsets.UTF_8));
+        // Esperamos la confirmación antes de dejar que se haga commit del offset original.
+        kafkaTemplate.send(record).get();
+    }
+
+    /**
+     * Key of the order in the by-item topic: its item, the item of its first line for multi-line orders, or the original
+     * key (or order id) when it has no item at all. Never null, so the producer never spreads the orders at random.
+     */
+    static String repartitionKey(String key, OrderCreated payload) {
+        String item = payload.items().get(0);
+        if (item != null) {
+            return item;
+        }
+        if (key != null) {
+            return key;
+        }
+        return String.valueOf(payload.getOrderId());
+    }
+
+    @KafkaListener(
+            id = "orderByItemConsumerClient",
+            topics = "${spring.kafka.topics.by-item}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "kafkaListenerContainerFactory"
+    )
+    public void listen(ConsumerRecord<String, OrderCreated> record) {
+        String key = header(record, ORIGINAL_KEY_HEADER);
+        String originalPartition = header(record, ORIGINAL_PARTITION_HEADER);
+        Integer partition = originalPartition != null ? Integer.valueOf(originalPartition) : record.partition();
+        OrderCreated payload = record.value();
+
+        try {
+
+            eventLog.log(ORDER_RECEIVED, "partition", partition, "key", key, "orderId", payload.getOrderId(), "item", payload.getItem());
+            dispatchService.process(partition, key, payload);
+
+        } catch (RetryableException re) {
+            eventLog.failure(RETRYABLE_FAILURE, re, "orderId", payload.getOrderId(), "item", payload.getItem());
+            throw re;
+
+        } catch (Exception e) {
+            eventLog.failure(FAILURE, e, "orderId", payload.getOrderId(), "item", payload.getItem());
+            throw new NotRetryableException(e);
+        }
+    }
+
+    private static String header(ConsumerRecord<String, OrderCreated> record, String name) {
+        org.apache.kafka.common.header.Header header = record.headers().lastHeader(name);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+}
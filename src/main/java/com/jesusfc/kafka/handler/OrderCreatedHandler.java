@@ -2,27 +2,37 @@ package com.jesusfc.kafka.handler;
 
 import com.jesusfc.kafka.exception.NotRetryableException;
 import com.jesusfc.kafka.exception.RetryableException;
+import com.jesusfc.kafka.logging.DispatchEventLog;
 import com.jesusfc.kafka.message.OrderCreated;
 import com.jesusfc.kafka.service.DispatchService;
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
 
+import static com.jesusfc.kafka.logging.DispatchEventType.FAILURE;
+import static com.jesusfc.kafka.logging.DispatchEventType.ORDER_RECEIVED;
+import static com.jesusfc.kafka.logging.DispatchEventType.RETRYABLE_FAILURE;
+
 /**
  * Author Jesús Fdez. Caraballo
  * jesus.fdez.caraballo@gmail.com
  * Created on jun - 2025
  */
-@Slf4j
 @RequiredArgsConstructor
 @Component
+// Con el reparto por artículo activo, ItemRepartitionHandler ocupa el lugar de este listener,
+// con el pipeline por etapas, PipelinedOrderCreatedHandler, y con los carriles por prioridad, PriorityLaneHandler.
+@ConditionalOnProperty(prefix = "dispatch.repartition", name = "enabled", havingValue = "false", matchIfMissing = true)
+@ConditionalOnProperty(prefix = "dispatch.pipeline", name = "enabled", havingValue = "false", matchIfMissing = true)
+@ConditionalOnProperty(prefix = "dispatch.lanes", name = "enabled", havingValue = "false", matchIfMissing = true)
 public class OrderCreatedHandler {
 
     private final DispatchService dispatchService;
+    private final DispatchEventLog eventLog;
 
     /*
      * This method listens to the "my.order.created.topic" Kafka topic for messages of type OrderCreated.
@@ -51,16 +61,16 @@ public class OrderCreatedHandler {
 
         try {
 
-            log.info("Processing order created event, partition: {}, key: {}, payload: {}", partition, key, payload);
+            eventLog.log(ORDER_RECEIVED, "partition", partition, "key", key, "orderId", payload.getOrderId(), "item", payload.getItem());
             dispatchService.process(partition, key, payload);
 
         } catch (RetryableException re) {
             // Si es un error recuperable, lanzamos la excepción para que Kafka reintente el procesamiento.
-            log.warn("Retryable error processing order created event, will retry: {}, payload: {}", re.getMessage(), payload);
+            eventLog.failure(RETRYABLE_FAILURE, re, "orderId", payload.getOrderId(), "item", payload.getItem());
             throw re;
 
         } catch (Exception e) {
-            log.error("Error processing order created event: {}", payload, e);
+            eventLog.failure(FAILURE, e, "orderId", payload.getOrderId(), "item", payload.getItem());
             // Si es un error no recuperable, lo registramos y descartamos el mensaje.
             throw new NotRetryableException(e);
         }
@@ -0,0 +1,45 @@
+package com.jesusfc.kafka.handler;
+
+import com.jesusfc.kafka.message.OrderCreated;
+import com.jesusfc.kafka.pipeline.StagedDispatchPipeline;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Component;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Primera etapa del pipeline por etapas (dispatch.pipeline.enabled): ocupa el lugar de OrderCreatedHandler y solo
+entrega el pedido ya deserializado al StagedDispatchPipeline. El offset se confirma cuando la última etapa termina.
+Con el reparto por artículo o los carriles activos no se crea: esos modos registran su propio "orderConsumerClient".
+ */
+@RequiredArgsConstructor
+@Component
+@ConditionalOnProperty(prefix = "dispatch.pipeline", name = "enabled", havingValue = "true")
+@ConditionalOnProperty(prefix = "dispatch.repartition", name = "enabled", havingValue = "false", matchIfMissing = true)
+@ConditionalOnProperty(prefix = "dispatch.lanes", name = "enabled", havingValue = "false", matchIfMissing = true)
+public class PipelinedOrderCreatedHandler {
+
+    private final StagedDispatchPipeline pipeline;
+
+    @KafkaListener(
+            id = "orderConsumerClient",
+            topics = "${spring.kafka.topics.consumer}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "pipelineKafkaListenerContainerFactory"
+    )
+    public void listen(@Header(KafkaHeaders.RECEIVED_PARTITION) Integer partition,
+                       @Header(KafkaHeaders.RECEIVED_KEY) String key,
+                       @Payload OrderCreated payload,
+                       Acknowledgment acknowledgment) throws InterruptedException {
+        pipeline.submit(partition, key, payload, acknowledgment::acknowledge);
+    }
+}
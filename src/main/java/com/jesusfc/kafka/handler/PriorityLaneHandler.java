@@ -0,0 +1,173 @@
+package com.jesusfc.kafka.handler;
+
+import com.jesusfc.kafka.exception.NotRetryableException;
+import com.jesusfc.kafka.exception.RetryableException;
+import com.jesusfc.kafka.lanes.LaneArbiter;
+import com.jesusfc.kafka.logging.DispatchEventLog;
+import com.jesusfc.kafka.message.OrderCreated;
+import com.jesusfc.kafka.message.OrderPriority;
+import com.jesusfc.kafka.service.DispatchService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.jesusfc.kafka.logging.DispatchEventType.FAILURE;
+import static com.jesusfc.kafka.logging.DispatchEventType.ORDER_RECEIVED;
+import static com.jesusfc.kafka.logging.DispatchEventType.RETRYABLE_FAILURE;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Carriles por prioridad (dispatch.lanes.enabled=true). Sustituye a OrderCreatedHandler:
+1. "orderConsumerClient" lee "my.order.created.topic" y re-publica cada pedido en el topic de su carril
+   ("my.order.created.express.topic" o "my.order.created.bulk.topic") con la misma key, la partición original en
+   cabecera y el timestamp original, para medir la latencia desde que se creó el pedido. Enrutar solo es un envío,
+   así que un atasco de pedidos bulk apenas retrasa a los express en este paso; un productor que ya conoce la
+   prioridad puede escribir directamente en el topic del carril y saltárselo.
+2. Cada carril tiene su listener y su contenedor (LaneConfig), con su concurrencia y su política de reintentos, y
+   pide hueco al LaneArbiter antes de despachar: bajo contención el express se queda con la mayor parte.
+Latencia por carril (creación del pedido -> despachado) en dispatch.lane.latency, con percentiles.
+Los tres modos (carriles, dispatch.repartition.enabled y dispatch.pipeline.enabled) sustituyen al mismo listener
+"orderConsumerClient". Si se activan varios manda el de carriles, y el pipeline y el reparto por artículo no se crean.
+ */
+@Component
+@ConditionalOnProperty(prefix = "dispatch.lanes", name = "enabled", havingValue = "true")
+public class PriorityLaneHandler {
+
+    public static final String PRIORITY_HEADER = "x-order-priority";
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final DispatchService dispatchService;
+    private final DispatchEventLog eventLog;
+    private final LaneArbiter arbiter;
+    private final Map<OrderPriority, String> laneTopics = new EnumMap<>(OrderPriority.class);
+    private final Map<OrderPriority, Timer> latencies = new EnumMap<>(OrderPriority.class);
+    private final OrderPriority defaultLane;
+
+    public PriorityLaneHandler(KafkaTemplate<String, Object> kafkaTemplate,
+                               DispatchService dispatchService,
+                               DispatchEventLog eventLog,
+                               LaneArbiter arbiter,
+                               ObjectProvider<MeterRegistry> meterRegistry,
+                               @Value("${spring.kafka.topics.express}") String expressTopic,
+                               @Value("${spring.kafka.topics.bulk}") String bulkTopic,
+                               @Value("${dispatch.lanes.default-lane:bulk}") String defaultLane) {
+        this(kafkaTemplate, dispatchService, eventLog, arbiter, meterRegistry.getIfAvailable(SimpleMeterRegistry::new),
+                expressTopic, bulkTopic, OrderPriority.of(defaultLane));
+    }
+
+    PriorityLaneHandler(KafkaTemplate<String, Object> kafkaTemplate, DispatchService dispatchService, DispatchEventLog eventLog,
+                        LaneArbiter arbiter, MeterRegistry meterRegistry, String expressTopic, String bulkTopic, OrderPriority defaultLane) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.dispatchService = dispatchService;
+        this.eventLog = eventLog;
+        this.arbiter = arbiter;
+        this.defaultLane = defaultLane;
+        laneTopics.put(OrderPriority.EXPRESS, expressTopic);
+        laneTopics.put(OrderPriority.BULK, bulkTopic);
+        for (OrderPriority lane : OrderPriority.values()) {
+            latencies.put(lane, Timer.builder("dispatch.lane.latency")
+                    .description("Time from order creation to dispatch, per lane")
+                    .tag("lane", lane.key())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+        }
+    }
+
+    @KafkaListener(
+            id = "orderConsumerClient",
+            topics = "${spring.kafka.topics.consumer}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "kafkaListenerContainerFactory"
+    )
+    public void route(ConsumerRecord<String, OrderCreated> record) throws ExecutionException, InterruptedException {
+        OrderPriority lane = laneOf(record);
+        ProducerRecord<String, Object> routed = new ProducerRecord<>(laneTopics.get(lane), null, record.timestamp(), record.key(), record.value());
+        routed.headers().add(ItemRepartitionHandler.ORIGINAL_PARTITION_HEADER, String.valueOf(record.partition()).getBytes(StandardCharsets.UTF_8));
+        routed.headers().add(PRIORITY_HEADER, lane.key().getBytes(StandardCharsets.UTF_8));
+        // Esperamos la confirmación antes de dejar que se haga commit del offset original.
+        kafkaTemplate.send(routed).get();
+    }
+
+    @KafkaListener(
+            id = "expressLaneConsumerClient",
+            topics = "${spring.kafka.topics.express}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "expressLaneKafkaListenerContainerFactory"
+    )
+    public void listenExpress(ConsumerRecord<String, OrderCreated> record) {
+        dispatch(OrderPriority.EXPRESS, record);
+    }
+
+    @KafkaListener(
+            id = "bulkLaneConsumerClient",
+            topics = "${spring.kafka.topics.bulk}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "bulkLaneKafkaListenerContainerFactory"
+    )
+    public void listenBulk(ConsumerRecord<String, OrderCreated> record) {
+        dispatch(OrderPriority.BULK, record);
+    }
+
+    /**
+     * Lane of an incoming order: the priority header, else the payload field, else the default lane.
+     * An unknown header value is ignored rather than blocking the partition.
+     */
+    OrderPriority laneOf(ConsumerRecord<String, OrderCreated> record) {
+        org.apache.kafka.common.header.Header header = record.headers().lastHeader(PRIORITY_HEADER);
+        if (header != null) {
+            try {
+                return OrderPriority.of(new String(header.value(), StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                // Seguimos con el campo del payload o el carril por defecto.
+            }
+        }
+        OrderCreated payload = record.value();
+        return payload != null && payload.getPriority() != null ? payload.getPriority() : defaultLane;
+    }
+
+    private void dispatch(OrderPriority lane, ConsumerRecord<String, OrderCreated> record) {
+        org.apache.kafka.common.header.Header originalPartition = record.headers().lastHeader(ItemRepartitionHandler.ORIGINAL_PARTITION_HEADER);
+        Integer partition = originalPartition != null
+                ? Integer.valueOf(new String(originalPartition.value(), StandardCharsets.UTF_8))
+                : record.partition();
+        OrderCreated payload = record.value();
+
+        try {
+
+            eventLog.log(ORDER_RECEIVED, "lane", lane.key(), "partition", partition, "orderId", payload.getOrderId(), "item", payload.getItem());
+            arbiter.acquire(lane);
+            try {
+                dispatchService.process(partition, record.key(), payload);
+            } finally {
+                arbiter.release(lane);
+            }
+            latencies.get(lane).record(Math.max(0, System.currentTimeMillis() - record.timestamp()), TimeUnit.MILLISECONDS);
+
+        } catch (RetryableException re) {
+            eventLog.failure(RETRYABLE_FAILURE, re, "orderId", payload.getOrderId(), "item", payload.getItem());
+            throw re;
+
+        } catch (Exception e) {
+            eventLog.failure(FAILURE, e, "orderId", payload.getOrderId(), "item", payload.getItem());
+            throw new NotRetryableException(e);
+        }
+    }
+}
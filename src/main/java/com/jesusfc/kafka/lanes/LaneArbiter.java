@@ -0,0 +1,141 @@
+package com.jesusfc.kafka.lanes;
+
+import com.jesusfc.kafka.message.OrderPriority;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Reparto ponderado de los huecos de dispatch (llamadas al servicio de stock y envíos en curso) entre carriles.
+Cada listener de carril pide un hueco antes de procesar un pedido y lo devuelve al terminar:
+  - Si solo un carril tiene trabajo, puede usar todos los huecos (no se desperdicia capacidad).
+  - Si varios compiten, cada uno tiene garantizada su parte: slots * peso / suma de pesos de los carriles con
+    trabajo (como mínimo un hueco, así bulk nunca se queda sin avanzar). Un carril por encima de su parte no
+    vuelve a entrar mientras otro con parte libre está esperando.
+Un pedido en curso no se interrumpe: el express "adelanta" al bulk en cuanto se libera el siguiente hueco.
+Métricas: dispatch.lane.wait (tiempo esperando hueco) y dispatch.lane.active (huecos en uso), por carril.
+ */
+public class LaneArbiter {
+
+    private static final OrderPriority[] LANES = OrderPriority.values();
+
+    private final int slots;
+    private final int[] weights = new int[LANES.length];
+    private final int[] active = new int[LANES.length];
+    private final int[] waiting = new int[LANES.length];
+    private final Timer[] waitTimers = new Timer[LANES.length];
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private int totalActive;
+
+    public LaneArbiter(int slots, Map<OrderPriority, Integer> weights, MeterRegistry meterRegistry) {
+        this.slots = Math.max(1, slots);
+        for (OrderPriority lane : LANES) {
+            int index = lane.ordinal();
+            this.weights[index] = Math.max(1, weights.getOrDefault(lane, 1));
+            waitTimers[index] = Timer.builder("dispatch.lane.wait")
+                    .description("Time a lane waited for a dispatch slot")
+                    .tag("lane", lane.key())
+                    .register(meterRegistry);
+            Gauge.builder("dispatch.lane.active", this, arbiter -> arbiter.active(lane))
+                    .description("Dispatch slots in use by the lane")
+                    .tag("lane", lane.key())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Blocks until the lane may take a dispatch slot under the weighted share.
+     */
+    public void acquire(OrderPriority lane) throws InterruptedException {
+        int index = lane.ordinal();
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            waiting[index]++;
+            try {
+                while (!mayEnter(index)) {
+                    released.await();
+                }
+            } finally {
+                waiting[index]--;
+            }
+            active[index]++;
+            totalActive++;
+        } finally {
+            lock.unlock();
+        }
+        waitTimers[index].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the slot taken by {@link #acquire(OrderPriority)}.
+     */
+    public void release(OrderPriority lane) {
+        lock.lock();
+        try {
+            active[lane.ordinal()]--;
+            totalActive--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int active(OrderPriority lane) {
+        lock.lock();
+        try {
+            return active[lane.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Slots guaranteed to the lane while the lanes that currently have work compete for them.
+     */
+    int share(OrderPriority lane) {
+        lock.lock();
+        try {
+            return share(lane.ordinal());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean mayEnter(int lane) {
+        if (totalActive >= slots) {
+            return false;
+        }
+        if (active[lane] < share(lane)) {
+            return true;
+        }
+        // Por encima de su parte solo entra si ningún otro carril con parte libre está esperando.
+        for (int other = 0; other < LANES.length; other++) {
+            if (other != lane && waiting[other] > 0 && active[other] < share(other)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int share(int lane) {
+        int demandingWeight = 0;
+        for (int other = 0; other < LANES.length; other++) {
+            if (other == lane || active[other] > 0 || waiting[other] > 0) {
+                demandingWeight += weights[other];
+            }
+        }
+        return Math.max(1, slots * weights[lane] / demandingWeight);
+    }
+}
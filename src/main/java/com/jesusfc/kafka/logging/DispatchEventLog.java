@@ -0,0 +1,259 @@
+package com.jesusfc.kafka.logging;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+import org.slf4j.spi.LoggingEventBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.core.env.PropertySourcesPropertyResolver;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Log de eventos del camino de dispatch (logger "dispatch.events"), pensado para no frenar el procesamiento por record:
+  - Muestreo y límite de eventos por segundo por tipo de evento (DispatchEventType). Un evento descartado no crea
+    ningún objeto: los métodos tienen aridad fija (sin varargs) y la decisión se toma antes de construir nada.
+  - Los eventos aceptados van a una cola sin locks (ConcurrentLinkedQueue, acotada) y los escribe un único hilo
+    "dispatch-event-log"; el hilo del listener nunca espera al appender. Si la cola está llena, el evento se descarta
+    y se cuenta en dropped().
+  - Los errores (nivel ERROR) se escriben siempre y en el momento, desde el propio hilo, sin muestreo ni cola.
+  - La primera vez que aparece un tipo de fallo (clase de la excepción) se escribe siempre, aunque el muestreo lo descarte.
+  - Los campos se emiten como pares clave/valor (SLF4J addKeyValue), no interpolados en el mensaje; el mensaje es
+    solo el tipo de evento. Salen por los appenders CONSOLE y FILE de Spring Boot: logback-spring.xml añade %kvp a sus
+    patrones, y con el perfil "json-logs" salen como JSON (ECS, o el de logging.structured.format.*). Como el evento
+    lo escribe el hilo "dispatch-event-log" (es el que sale en [%t]), el hilo que lo originó va en la clave "thread".
+ */
+@Component
+public class DispatchEventLog {
+
+    static final String LOGGER_NAME = "dispatch.events";
+    private static final Logger EVENTS = LoggerFactory.getLogger(LOGGER_NAME);
+    private static final String THREAD_KEY = "thread";
+    private static final int MAX_FAILURE_TYPES = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Map<DispatchEventType, Policy> policies = new EnumMap<>(DispatchEventType.class);
+    private final Queue<Event> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final int capacity;
+    private final Set<String> seenFailureTypes = ConcurrentHashMap.newKeySet();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public DispatchEventLog(PropertyResolver properties,
+                            @Value("${dispatch.logging.queue-capacity:65536}") int capacity) {
+        this.capacity = capacity;
+        for (DispatchEventType type : DispatchEventType.values()) {
+            String prefix = "dispatch.logging.events." + type.key();
+            policies.put(type, new Policy(
+                    properties.getProperty(prefix + ".sample-rate", Double.class, type.defaultSampleRate()),
+                    properties.getProperty(prefix + ".rate-limit", Integer.class, type.defaultRateLimit())));
+        }
+    }
+
+    /**
+     * Event log with the default policy of every event type, for code created outside Spring (tests, benchmarks).
+     */
+    public static DispatchEventLog withDefaults() {
+        return new DispatchEventLog(new PropertySourcesPropertyResolver(new MutablePropertySources()), 65536);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::run, "dispatch-event-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops the writer thread once it has written the events already queued.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    public void log(DispatchEventType type, String k1, Object v1) {
+        if (accept(type)) {
+            submit(type, null, new Object[]{k1, v1});
+        }
+    }
+
+    public void log(DispatchEventType type, String k1, Object v1, String k2, Object v2) {
+        if (accept(type)) {
+            submit(type, null, new Object[]{k1, v1, k2, v2});
+        }
+    }
+
+    public void log(DispatchEventType type, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        if (accept(type)) {
+            submit(type, null, new Object[]{k1, v1, k2, v2, k3, v3});
+        }
+    }
+
+    public void log(DispatchEventType type, String k1, Object v1, String k2, Object v2, String k3, Object v3, String k4, Object v4) {
+        if (accept(type)) {
+            submit(type, null, new Object[]{k1, v1, k2, v2, k3, v3, k4, v4});
+        }
+    }
+
+    /**
+     * Logs a failure. Always written for ERROR types and for the first occurrence of each exception class;
+     * otherwise subject to the sampling and rate limit of the event type.
+     */
+    public void failure(DispatchEventType type, Throwable error, String k1, Object v1, String k2, Object v2) {
+        if (!EVENTS.isEnabledForLevel(type.level())) {
+            return;
+        }
+        boolean newFailureType = seenFailureTypes.size() < MAX_FAILURE_TYPES && seenFailureTypes.add(error.getClass().getName());
+        if (newFailureType || type.level() == Level.ERROR || policies.get(type).tryAcquire()) {
+            submit(type, error, new Object[]{k1, v1, k2, v2, "errorType", error.getClass().getName(), "errorMessage", error.getMessage()});
+        } else {
+            suppressed.increment();
+        }
+    }
+
+    /**
+     * Events discarded because the queue was full.
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Events discarded by sampling or rate limiting.
+     */
+    public long suppressed() {
+        return suppressed.sum();
+    }
+
+    private boolean accept(DispatchEventType type) {
+        if (!EVENTS.isEnabledForLevel(type.level())) {
+            return false;
+        }
+        if (type.level() == Level.ERROR || policies.get(type).tryAcquire()) {
+            return true;
+        }
+        suppressed.increment();
+        return false;
+    }
+
+    private void submit(DispatchEventType type, Throwable error, Object[] fields) {
+        Event event = new Event(type, error, fields, Thread.currentThread().getName());
+        if (type.level() == Level.ERROR) {
+            write(event);
+            return;
+        }
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        queue.offer(event);
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            Event event = queue.poll();
+            if (event == null) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            queued.decrementAndGet();
+            try {
+                write(event);
+            } catch (RuntimeException e) {
+                // Un appender roto no debe parar el hilo de escritura.
+                dropped.increment();
+            }
+        }
+    }
+
+    private static void write(Event event) {
+        LoggingEventBuilder builder = EVENTS.atLevel(event.type().level()).setMessage(event.type().key());
+        Object[] fields = event.fields();
+        for (int i = 0; i < fields.length; i += 2) {
+            builder = builder.addKeyValue((String) fields[i], fields[i + 1]);
+        }
+        builder = builder.addKeyValue(THREAD_KEY, event.thread());
+        if (event.error() != null) {
+            builder = builder.setCause(event.error());
+        }
+        builder.log();
+    }
+
+    private record Event(DispatchEventType type, Throwable error, Object[] fields, String thread) {
+    }
+
+    /*
+     * Muestreo determinista (1 de cada N) y límite por segundo sin locks: el segundo actual y el número de eventos
+     * escritos en él van empaquetados en un único AtomicLong que se actualiza con CAS.
+     */
+    private static final class Policy {
+
+        private static final int COUNT_BITS = 24;
+        private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+        private final long sampleEvery;
+        private final long ratePerSecond;
+        private final AtomicLong seen = new AtomicLong();
+        private final AtomicLong window = new AtomicLong();
+
+        Policy(double sampleRate, int ratePerSecond) {
+            this.sampleEvery = sampleRate <= 0 ? 0 : Math.max(1, Math.round(1 / Math.min(sampleRate, 1.0)));
+            this.ratePerSecond = Math.min(ratePerSecond, COUNT_MASK);
+        }
+
+        boolean tryAcquire() {
+            if (sampleEvery == 0 || (sampleEvery > 1 && seen.getAndIncrement() % sampleEvery != 0)) {
+                return false;
+            }
+            if (ratePerSecond <= 0) {
+                return true;
+            }
+            long second = System.currentTimeMillis() / 1000;
+            while (true) {
+                long current = window.get();
+                long next;
+                if (current >>> COUNT_BITS != second) {
+                    next = (second << COUNT_BITS) | 1;
+                } else if ((current & COUNT_MASK) >= ratePerSecond) {
+                    return false;
+                } else {
+                    next = current + 1;
+                }
+                if (window.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
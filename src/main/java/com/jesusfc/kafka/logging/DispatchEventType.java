@@ -0,0 +1,51 @@
+package com.jesusfc.kafka.logging;
+
+import org.slf4j.event.Level;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Tipos de evento del camino de dispatch que escribe DispatchEventLog, con su nivel y su política por defecto.
+Se pueden cambiar por tipo con dispatch.logging.events.<key>.sample-rate (fracción de eventos que se escriben,
+de 0 a 1) y dispatch.logging.events.<key>.rate-limit (máximo de eventos por segundo, 0 = sin límite).
+Los de nivel ERROR no se muestrean ni se limitan nunca.
+ */
+public enum DispatchEventType {
+
+    ORDER_RECEIVED("order-received", Level.INFO, 0.01, 100),
+    ORDER_DISPATCHED("order-dispatched", Level.INFO, 0.01, 100),
+    ORDER_DEFERRED("order-deferred", Level.INFO, 1.0, 100),
+    RETRYABLE_FAILURE("retryable-failure", Level.WARN, 1.0, 20),
+    FAILURE("failure", Level.ERROR, 1.0, 0);
+
+    private final String key;
+    private final Level level;
+    private final double defaultSampleRate;
+    private final int defaultRateLimit;
+
+    DispatchEventType(String key, Level level, double defaultSampleRate, int defaultRateLimit) {
+        this.key = key;
+        this.level = level;
+        this.defaultSampleRate = defaultSampleRate;
+        this.defaultRateLimit = defaultRateLimit;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public Level level() {
+        return level;
+    }
+
+    double defaultSampleRate() {
+        return defaultSampleRate;
+    }
+
+    int defaultRateLimit() {
+        return defaultRateLimit;
+    }
+}
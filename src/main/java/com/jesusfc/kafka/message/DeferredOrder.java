@@ -0,0 +1,35 @@
+package com.jesusfc.kafka.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/* Example of DeferredOrder message:
+{
+        "order": { "orderId": "b8e3d0c3-9241-4eeb-8a5b-7c412c3a8a24", "item": "Red" },
+        "partition": 2,
+        "attempt": 1,
+        "firstDeferredAt": 1760860800000
+        }
+*/
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeferredOrder {
+
+    // Pedido original tal y como llegó al topic "my.order.created.topic".
+    OrderCreated order;
+    // Partición de origen, para que el OrderDispatched final siga yendo a la misma partición.
+    Integer partition;
+    // Número de comprobaciones de stock fallidas hasta ahora.
+    int attempt;
+    // Epoch millis de la primera vez que se aparcó el pedido, para aplicar la edad máxima.
+    long firstDeferredAt;
+}
@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -12,6 +14,13 @@ import java.util.UUID;
  * jesus.fdez.caraballo@gmail.com
  * Created on jun - 2025
  */
+/* Example of a multi-line OrderCreated message (el formato de un solo "item" sigue siendo válido):
+{
+        "orderId": "b8e3d0c3-9241-4eeb-8a5b-7c412c3a8a24",
+        "lines": [ { "item": "Red", "quantity": 2 }, { "item": "Blue", "quantity": 1 } ],
+        "partialDispatch": true
+        }
+*/
 @Data
 @Builder
 @NoArgsConstructor
@@ -19,5 +28,26 @@ import java.util.UUID;
 public class OrderCreated {
 
     UUID orderId;
+    // Pedido de un solo artículo (formato original). Se ignora si el pedido trae "lines".
     String item;
+    // Opcional: sin prioridad el pedido va al carril por defecto (dispatch.lanes.default-lane).
+    OrderPriority priority;
+    // Líneas de un pedido con varios artículos.
+    List<OrderLine> lines;
+    // Opcional: si se pueden despachar ya las líneas con stock y aparcar el resto (por defecto dispatch.orders.partial-dispatch).
+    Boolean partialDispatch;
+
+    /**
+     * Whether the order uses the multi-line format.
+     */
+    public boolean hasLines() {
+        return lines != null && !lines.isEmpty();
+    }
+
+    /**
+     * Items of the order: one per line, or the single item of the original format.
+     */
+    public List<String> items() {
+        return hasLines() ? lines.stream().map(OrderLine::getItem).toList() : Collections.singletonList(item);
+    }
 }
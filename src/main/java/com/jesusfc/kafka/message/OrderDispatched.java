@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -17,6 +18,7 @@ import java.util.UUID;
         "orderId": "b8e3d0c3-9241-4eeb-8a5b-7c412c3a8a24",
         "item": "Red"
         }
+Los pedidos con varias líneas se despachan en un único OrderDispatched con "lines" (y sin "item").
 */
 @Data
 @Builder
@@ -28,5 +30,6 @@ public class OrderDispatched {
     String item;
     String notes;
     UUID processedBy;
+    List<OrderLine> lines;
 }
 
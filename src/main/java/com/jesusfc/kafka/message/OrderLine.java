@@ -0,0 +1,28 @@
+package com.jesusfc.kafka.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/* Example of OrderLine (dentro de "lines" de OrderCreated y OrderDispatched):
+{
+        "item": "Red",
+        "quantity": 2
+        }
+*/
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderLine {
+
+    String item;
+    @Builder.Default
+    int quantity = 1;
+}
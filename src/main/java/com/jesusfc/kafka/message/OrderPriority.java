@@ -0,0 +1,37 @@
+package com.jesusfc.kafka.message;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Prioridad de un pedido, que decide su carril con dispatch.lanes.enabled (ver PriorityLaneHandler):
+  - EXPRESS: carril rápido, con más peso en el LaneArbiter y reintentos cortos.
+  - BULK:    carril de volumen; cede los huecos de dispatch al express cuando compiten.
+Llega en el campo "priority" de OrderCreated o en la cabecera "x-order-priority" (la cabecera manda).
+ */
+public enum OrderPriority {
+
+    EXPRESS,
+    BULK;
+
+    private final String key = name().toLowerCase();
+
+    /**
+     * Parses a payload or header value: express or bulk, case-insensitive.
+     */
+    @JsonCreator
+    public static OrderPriority of(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+
+    /**
+     * Lower-case name used in configuration keys and metric tags.
+     */
+    public String key() {
+        return key;
+    }
+}
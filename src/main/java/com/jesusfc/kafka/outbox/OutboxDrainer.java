@@ -0,0 +1,161 @@
+package com.jesusfc.kafka.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jesusfc.kafka.ratelimit.OutputRateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import org.springframework.kafka.support.SendResult;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Hilo en segundo plano que re-envía a Kafka, en orden, los registros del OutboxJournal.
+Lee lotes de hasta dispatch.outbox.drain-batch-size registros y los envía todos sin esperar, para tener muchos
+envíos en vuelo como en el camino directo; luego recorre los acks en orden y avanza el cursor del journal
+registro a registro. Si un envío falla se confirma solo hasta el anterior y, tras un backoff exponencial, el lote
+se vuelve a leer desde el fallido: los posteriores que sí llegaron se re-envían (al-menos-una-vez), pero el cursor
+nunca deja atrás un evento sin entregar.
+Cada envío pasa antes por el OutputRateLimiter del topic (reserve + sleep): al volver el broker el atasco sale al
+ritmo configurado en dispatch.rate-limit y no de golpe.
+También aplica la política de fsync "interval".
+ */
+@Slf4j
+public class OutboxDrainer {
+
+    private static final long MAX_BACKOFF_MS = 30_000L;
+
+    private final OutboxJournal journal;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final OutputRateLimiter rateLimiter;
+    private final int batchSize;
+    private final Duration sendTimeout;
+    private final Duration idleWait;
+    private final Duration fsyncInterval;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    public OutboxDrainer(OutboxJournal journal, KafkaTemplate<String, Object> kafkaTemplate, ObjectMapper objectMapper,
+                         OutputRateLimiter rateLimiter, int batchSize, Duration sendTimeout, Duration idleWait,
+                         Duration fsyncInterval) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("dispatch.outbox.drain-batch-size must be at least 1");
+        }
+        this.journal = journal;
+        this.batchSize = batchSize;
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.rateLimiter = rateLimiter;
+        this.sendTimeout = sendTimeout;
+        this.idleWait = idleWait;
+        this.fsyncInterval = fsyncInterval;
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "outbox-drainer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread.join(sendTimeout.toMillis());
+        }
+    }
+
+    private void run() {
+        long backoffMs = 100L;
+        long nextFsync = System.nanoTime() + fsyncInterval.toNanos();
+        while (running) {
+            try {
+                if (System.nanoTime() >= nextFsync) {
+                    journal.flush();
+                    nextFsync = System.nanoTime() + fsyncInterval.toNanos();
+                }
+                if (drainBatch() > 0) {
+                    backoffMs = 100L;
+                } else {
+                    Thread.sleep(idleWait.toMillis());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("Outbox drain failed, {} records pending, retrying in {} ms", journal.pendingRecords(), backoffMs, e);
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    /**
+     * Sends the next batch of pending records, paced only by the output rate limit, then commits them in order as their
+     * acknowledgements arrive. Returns the number of records delivered, 0 when the journal is empty.
+     *
+     * @throws Exception from the first send that failed or timed out, after committing every record before it.
+     */
+    int drainBatch() throws Exception {
+        List<OutboxRecord> records = journal.peek(batchSize);
+        if (records.isEmpty()) {
+            return 0;
+        }
+        List<CompletableFuture<SendResult<String, Object>>> acks = new ArrayList<>(records.size());
+        try {
+            for (OutboxRecord record : records) {
+                Object value = objectMapper.readValue(record.value(), Class.forName(record.valueType()));
+                pace(record.topic());
+                acks.add(kafkaTemplate.send(record.topic(), record.partition(), record.key(), value));
+            }
+        } catch (Exception e) {
+            // Los anteriores ya están en vuelo: se confirman los que lleguen antes de propagar el error.
+            try {
+                awaitInOrder(acks);
+            } catch (Exception ackFailure) {
+                e.addSuppressed(ackFailure);
+            }
+            throw e;
+        }
+        awaitInOrder(acks);
+        if (journal.isEmpty()) {
+            log.info("Outbox journal drained, producer back to direct sends");
+        }
+        return records.size();
+    }
+
+    private void pace(String topic) throws InterruptedException {
+        long waitNanos = rateLimiter.reserve(topic);
+        if (waitNanos > 0) {
+            Thread.sleep(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+        }
+    }
+
+    private void awaitInOrder(List<CompletableFuture<SendResult<String, Object>>> acks)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        for (CompletableFuture<SendResult<String, Object>> ack : acks) {
+            ack.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            journal.commit(1);
+        }
+    }
+}
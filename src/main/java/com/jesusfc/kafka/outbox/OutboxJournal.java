@@ -0,0 +1,382 @@
+package com.jesusfc.kafka.outbox;
+
+import com.jesusfc.kafka.exception.RetryableException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Journal local de solo-añadir (write-ahead outbox) para los eventos que no se han podido entregar a Kafka.
+Se guarda en segmentos de tamaño fijo mapeados en memoria ("<id>.seg"). Cada registro es:
+    [int longitud][int crc32c del payload][payload]
+La longitud se escribe la última, de forma que un registro a medias (caída del proceso o de la máquina)
+se detecta al recuperar porque su longitud es 0 o su CRC no cuadra; la recuperación corta ahí.
+El cursor de lectura del drainer se guarda en "drain.checkpoint" ([long segmento][int posición][int crc]).
+El drainer lee por lotes (peek(n)) y confirma en orden (commit(n)) a medida que llegan los acks; el cursor solo avanza
+hasta el último registro confirmado, los leídos y aún sin confirmar se vuelven a leer tras una caída.
+Si el checkpoint está corrupto se vuelve a empezar por el segmento más antiguo: al-menos-una-vez.
+ */
+@Slf4j
+public class OutboxJournal implements Closeable {
+
+    public enum FsyncPolicy { ALWAYS, INTERVAL, NEVER }
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "drain.checkpoint";
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int CHECKPOINT_BYTES = 16;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long maxBytes;
+    private final FsyncPolicy fsyncPolicy;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final FileChannel checkpointChannel;
+    private final MappedByteBuffer checkpoint;
+
+    private Segment writeSegment;
+    private long readSegmentId;
+    private int readPosition;
+    private final Deque<Cursor> peeked = new ArrayDeque<>();
+    private long pendingRecords;
+    private boolean dirty;
+
+    public OutboxJournal(Path directory, int segmentBytes, long maxBytes, FsyncPolicy fsyncPolicy) throws IOException {
+        if (segmentBytes <= RECORD_HEADER_BYTES || maxBytes < segmentBytes) {
+            throw new IllegalArgumentException("Outbox max size must hold at least one segment");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        this.fsyncPolicy = fsyncPolicy;
+        Files.createDirectories(directory);
+        this.checkpointChannel = FileChannel.open(directory.resolve(CHECKPOINT_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.checkpoint = checkpointChannel.map(FileChannel.MapMode.READ_WRITE, 0, CHECKPOINT_BYTES);
+        recover();
+    }
+
+    /**
+     * Appends the record at the tail of the journal.
+     *
+     * @throws RetryableException if the journal has reached its maximum size.
+     */
+    public synchronized void append(OutboxRecord record) {
+        doAppend(record);
+    }
+
+    /**
+     * Appends the record only if the journal still has undelivered records, in the same step as the check, so a
+     * sender that finds the journal empty can go to Kafka directly without overtaking a record being journaled.
+     *
+     * @return true if the record was appended.
+     * @throws RetryableException if the journal has reached its maximum size.
+     */
+    public synchronized boolean appendIfPending(Supplier<OutboxRecord> record) {
+        if (pendingRecords == 0) {
+            return false;
+        }
+        doAppend(record.get());
+        return true;
+    }
+
+    private void doAppend(OutboxRecord record) {
+        byte[] payload = record.encode();
+        int recordBytes = RECORD_HEADER_BYTES + payload.length;
+        if (recordBytes > segmentBytes) {
+            throw new IllegalArgumentException("Outbox record of " + recordBytes + " bytes does not fit in a segment of " + segmentBytes + " bytes");
+        }
+        if (writeSegment.writePosition + recordBytes > segmentBytes) {
+            roll();
+        }
+        MappedByteBuffer buffer = writeSegment.buffer;
+        int position = writeSegment.writePosition;
+        buffer.put(position + RECORD_HEADER_BYTES, payload);
+        buffer.putInt(position + 4, crc(payload));
+        buffer.putInt(position, payload.length);
+        writeSegment.writePosition += recordBytes;
+        pendingRecords++;
+        dirty = true;
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            flush();
+        }
+    }
+
+    /**
+     * Returns the oldest undrained record without consuming it, or null when the journal is empty.
+     */
+    public synchronized OutboxRecord peek() {
+        List<OutboxRecord> records = peek(1);
+        return records.isEmpty() ? null : records.get(0);
+    }
+
+    /**
+     * Returns up to maxRecords of the oldest undrained records, in order, without consuming them.
+     * Every call starts again from the last committed record.
+     */
+    public synchronized List<OutboxRecord> peek(int maxRecords) {
+        skipDrainedSegments();
+        peeked.clear();
+        List<OutboxRecord> records = new ArrayList<>(Math.min(maxRecords, (int) Math.min(pendingRecords, Integer.MAX_VALUE)));
+        Map.Entry<Long, Segment> entry = segments.ceilingEntry(readSegmentId);
+        int position = readPosition;
+        while (entry != null && records.size() < maxRecords) {
+            Segment segment = entry.getValue();
+            if (position < segment.writePosition) {
+                ByteBuffer buffer = segment.buffer.duplicate();
+                int length = buffer.getInt(position);
+                buffer.position(position + RECORD_HEADER_BYTES).limit(position + RECORD_HEADER_BYTES + length);
+                records.add(OutboxRecord.decode(buffer));
+                position += RECORD_HEADER_BYTES + length;
+                peeked.addLast(new Cursor(segment.id, position));
+            } else {
+                entry = segments.higherEntry(segment.id);
+                position = 0;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Marks the record returned by the last {@link #peek()} as delivered.
+     */
+    public synchronized void commit() {
+        commit(1);
+    }
+
+    /**
+     * Marks the next count records of the last {@link #peek(int)} as delivered, in order.
+     */
+    public synchronized void commit(int count) {
+        if (count > peeked.size()) {
+            throw new IllegalStateException("commit(" + count + ") called with only " + peeked.size() + " peeked records");
+        }
+        if (count <= 0) {
+            return;
+        }
+        Cursor cursor = null;
+        for (int i = 0; i < count; i++) {
+            cursor = peeked.pollFirst();
+        }
+        readSegmentId = cursor.segmentId();
+        readPosition = cursor.position();
+        pendingRecords -= count;
+        // Los segmentos que el cursor ya ha dejado atrás se entregaron por completo.
+        while (segments.firstKey() < readSegmentId) {
+            segments.pollFirstEntry().getValue().delete();
+        }
+        writeCheckpoint();
+    }
+
+    public synchronized boolean isEmpty() {
+        return pendingRecords == 0;
+    }
+
+    public synchronized long pendingRecords() {
+        return pendingRecords;
+    }
+
+    public synchronized long sizeBytes() {
+        return (long) segments.size() * segmentBytes;
+    }
+
+    /**
+     * Forces the written records and the drain checkpoint to disk.
+     */
+    public synchronized void flush() {
+        if (dirty) {
+            writeSegment.buffer.force();
+            checkpoint.force();
+            dirty = false;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            flush();
+        }
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+        checkpointChannel.close();
+    }
+
+    private void skipDrainedSegments() {
+        Segment segment = segments.get(readSegmentId);
+        while (segment != writeSegment && readPosition >= segment.writePosition) {
+            // Segmento drenado por completo: pasamos al siguiente y lo borramos.
+            Map.Entry<Long, Segment> next = segments.higherEntry(readSegmentId);
+            readSegmentId = next.getKey();
+            readPosition = 0;
+            writeCheckpoint();
+            segments.remove(segment.id);
+            segment.delete();
+            segment = next.getValue();
+        }
+    }
+
+    private void roll() {
+        if (sizeBytes() + segmentBytes > maxBytes) {
+            throw new RetryableException("Outbox journal is full (" + sizeBytes() + " bytes)");
+        }
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            flush();
+        }
+        try {
+            writeSegment = openSegment(writeSegment.id + 1);
+            segments.put(writeSegment.id, writeSegment);
+        } catch (IOException e) {
+            throw new RetryableException(e);
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Long> ids;
+        try (Stream<Path> files = Files.list(directory)) {
+            ids = files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+        for (Long id : ids) {
+            Segment segment = openSegment(id);
+            segment.writePosition = scan(segment);
+            segments.put(id, segment);
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, openSegment(0L));
+        }
+        writeSegment = segments.lastEntry().getValue();
+
+        long checkpointSegment = checkpoint.getLong(0);
+        int checkpointPosition = checkpoint.getInt(8);
+        boolean validCheckpoint = checkpoint.getInt(12) == checkpointCrc(checkpointSegment, checkpointPosition)
+                && segments.containsKey(checkpointSegment)
+                && checkpointPosition <= segments.get(checkpointSegment).writePosition;
+        if (validCheckpoint) {
+            readSegmentId = checkpointSegment;
+            readPosition = checkpointPosition;
+        } else {
+            readSegmentId = segments.firstKey();
+            readPosition = 0;
+        }
+        // Los segmentos anteriores al cursor ya se entregaron.
+        while (segments.firstKey() < readSegmentId) {
+            segments.pollFirstEntry().getValue().delete();
+        }
+        pendingRecords = countRecords();
+        log.info("Outbox journal recovered from {}: {} segments, {} pending records", directory, segments.size(), pendingRecords);
+    }
+
+    /*
+     * Devuelve la posición del final del último registro válido del segmento.
+     */
+    private int scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int position = 0;
+        while (position + RECORD_HEADER_BYTES <= segmentBytes) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_BYTES + length > segmentBytes) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(position + RECORD_HEADER_BYTES, payload);
+            if (crc(payload) != buffer.getInt(position + 4)) {
+                log.warn("Outbox segment {} has a torn or corrupt record at position {}, truncating it there", segment.id, position);
+                break;
+            }
+            position += RECORD_HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    private long countRecords() {
+        long count = 0;
+        for (Segment segment : segments.tailMap(readSegmentId, true).values()) {
+            int position = segment.id == readSegmentId ? readPosition : 0;
+            while (position < segment.writePosition) {
+                position += RECORD_HEADER_BYTES + segment.buffer.getInt(position);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void writeCheckpoint() {
+        checkpoint.putLong(0, readSegmentId);
+        checkpoint.putInt(8, readPosition);
+        checkpoint.putInt(12, checkpointCrc(readSegmentId, readPosition));
+        dirty = true;
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            checkpoint.force();
+        }
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", id, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(id, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static int checkpointCrc(long segmentId, int position) {
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(12).putLong(segmentId).putInt(position).flip());
+        return (int) crc.getValue();
+    }
+
+    private record Cursor(long segmentId, int position) {
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+
+        private Segment(long id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private void delete() {
+            try {
+                channel.close();
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Could not delete drained outbox segment {}", path, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.jesusfc.kafka.outbox;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Un envío pendiente guardado en el journal: topic, partición (null = la decide el productor), key,
+clase del evento y el evento ya serializado a JSON.
+ */
+public record OutboxRecord(String topic, Integer partition, String key, String valueType, byte[] value) {
+
+    byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + value.length);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(topic);
+            out.writeInt(partition != null ? partition : -1);
+            out.writeBoolean(key != null);
+            if (key != null) {
+                out.writeUTF(key);
+            }
+            out.writeUTF(valueType);
+            out.writeInt(value.length);
+            out.write(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static OutboxRecord decode(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            String topic = in.readUTF();
+            int partition = in.readInt();
+            String key = in.readBoolean() ? in.readUTF() : null;
+            String valueType = in.readUTF();
+            byte[] value = new byte[in.readInt()];
+            in.readFully(value);
+            return new OutboxRecord(topic, partition >= 0 ? partition : null, key, valueType, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
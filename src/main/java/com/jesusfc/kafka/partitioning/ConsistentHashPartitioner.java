@@ -0,0 +1,115 @@
+package com.jesusfc.kafka.partitioning;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Hash consistente con carga acotada ("consistent hashing with bounded loads"). Cada partición tiene virtualNodes
+puntos en un anillo de hashes de 32 bits; una clave va a la primera partición del anillo a partir de su hash,
+salvo que esa partición ya lleve más de balanceFactor veces la carga media de la ventana actual: entonces se
+sigue por el anillo hasta una que no. Con claves repartidas cada clave va siempre a la misma partición; con una
+clave muy caliente, lo que excede el límite se desborda a las particiones siguientes en vez de saturar una.
+La carga se cuenta en una ventana de window records que se va reduciendo a la mitad, para que refleje el
+tráfico reciente. Las cuentas se actualizan sin bloqueos; el límite es aproximado bajo concurrencia.
+ */
+final class ConsistentHashPartitioner implements OutputPartitioner {
+
+    private final int partitions;
+    private final double balanceFactor;
+    private final long window;
+    private final int[] ringHashes;
+    private final int[] ringPartitions;
+    private final AtomicLongArray loads;
+    private final AtomicLong total = new AtomicLong();
+
+    ConsistentHashPartitioner(int partitions, int virtualNodes, double balanceFactor, long window) {
+        this.partitions = partitions;
+        this.balanceFactor = Math.max(1.0, balanceFactor);
+        this.window = Math.max(partitions, window);
+        this.loads = new AtomicLongArray(partitions);
+
+        long[] nodes = new long[partitions * virtualNodes];
+        for (int partition = 0; partition < partitions; partition++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                int hash = mix(partition * 0x9E3779B9 + node * 0x85EBCA6B + 1);
+                // Ordenamos por hash sin signo y guardamos la partición en la parte baja.
+                nodes[partition * virtualNodes + node] = ((hash & 0xFFFFFFFFL) << 20) | partition;
+            }
+        }
+        Arrays.sort(nodes);
+        ringHashes = new int[nodes.length];
+        ringPartitions = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            ringHashes[i] = (int) (nodes[i] >>> 20);
+            ringPartitions[i] = (int) (nodes[i] & 0xFFFFF);
+        }
+    }
+
+    @Override
+    public Integer partition(Integer inputPartition, String key) {
+        if (key == null) {
+            return null;
+        }
+        int index = ringIndex(mix(key.hashCode()));
+        long capacity = (long) Math.ceil(balanceFactor * (total.get() + 1) / partitions);
+        int partition = ringPartitions[index];
+        for (int step = 0; step < ringPartitions.length && loads.get(partition) >= capacity; step++) {
+            partition = ringPartitions[(index + step + 1) % ringPartitions.length];
+        }
+        loads.incrementAndGet(partition);
+        if (total.incrementAndGet() >= window) {
+            decay();
+        }
+        return partition;
+    }
+
+    /**
+     * Partition the key maps to on the ring, ignoring the load bound.
+     */
+    int home(String key) {
+        return ringPartitions[ringIndex(mix(key.hashCode()))];
+    }
+
+    private int ringIndex(int hash) {
+        long unsigned = hash & 0xFFFFFFFFL;
+        int low = 0;
+        int high = ringHashes.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if ((ringHashes[mid] & 0xFFFFFFFFL) < unsigned) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low == ringHashes.length ? 0 : low;
+    }
+
+    private void decay() {
+        // Solo un hilo reduce la ventana; los demás siguen contando mientras tanto.
+        long current = total.get();
+        if (current < window || !total.compareAndSet(current, current / 2)) {
+            return;
+        }
+        for (int partition = 0; partition < partitions; partition++) {
+            long load = loads.get(partition);
+            loads.addAndGet(partition, -(load - load / 2));
+        }
+    }
+
+    // Finalizador de MurmurHash3: reparte bien incluso hashes de String parecidos.
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
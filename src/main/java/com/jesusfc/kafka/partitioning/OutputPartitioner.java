@@ -0,0 +1,15 @@
+package com.jesusfc.kafka.partitioning;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+@FunctionalInterface
+interface OutputPartitioner {
+
+    /**
+     * Returns the output partition, or null to let the producer partitioner hash the key.
+     */
+    Integer partition(Integer inputPartition, String key);
+}
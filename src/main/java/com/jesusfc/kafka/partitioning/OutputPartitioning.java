@@ -0,0 +1,382 @@
+package com.jesusfc.kafka.partitioning;
+
+import com.jesusfc.kafka.service.DispatchService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.core.env.PropertySourcesPropertyResolver;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Estrategia de particionado por topic de salida (ver PartitioningStrategy). DispatchEventSender le pregunta la
+partición de cada evento y le avisa de la partición en la que acabó, para las métricas de reparto.
+Configuración (dispatch.partitioning):
+  topics[<topic>].strategy   estrategia del topic; por defecto mirror-input para "my.order.dispatched.topic"
+                             (lo que se hacía hasta ahora) y key-hash para el resto.
+  sticky-batch-records       records seguidos a la misma partición con sticky.
+  virtual-nodes, balance-factor, load-window   parámetros del anillo de consistent-hash.
+Al arrancar, antes que los listeners, se consultan las particiones de los topics de salida (con un tiempo máximo,
+para no retrasar el arranque si el broker no responde) y se valida que encajan con la estrategia: mirror-input con
+menos particiones que el topic de entrada no arranca. Si no se pudieron consultar, se resuelven en el primer envío;
+si ahí tampoco se consiguen (la consulta bloquea como mucho max.block.ms), ese envío y los siguientes van por key-hash
+y se vuelve a intentar pasado dispatch.partitioning.resolve-backoff, sin quedarse con key-hash para siempre.
+La resolución tardía valida mirror-input igual que el arranque: si el topic de salida tiene menos particiones que el de
+entrada (o llega una partición de entrada fuera de rango) no se pliega con módulo, que rompería el espejo sin avisar;
+se registra un error y el topic pasa explícitamente a key-hash.
+Métricas por topic: dispatch.partitioning.records (por partición) y dispatch.partitioning.skew, la carga de la
+partición más cargada entre la media (1.0 = reparto perfecto).
+ */
+@Slf4j
+@Component
+public class OutputPartitioning implements SmartLifecycle {
+
+    private static final OutputPartitioner KEY_HASH = (input, key) -> null;
+
+    private final PropertyResolver properties;
+    private final KafkaAdmin kafkaAdmin;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
+    private final String inputTopic;
+    private final List<String> outputTopics;
+    private final Duration validationTimeout;
+    private final long resolveBackoffNanos;
+    private final Map<String, TopicPartitioning> topics = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+
+    @Autowired
+    public OutputPartitioning(PropertyResolver properties,
+                              ObjectProvider<KafkaAdmin> kafkaAdmin,
+                              ObjectProvider<KafkaTemplate<String, Object>> kafkaTemplate,
+                              ObjectProvider<MeterRegistry> meterRegistry,
+                              @Value("${spring.kafka.topics.consumer}") String inputTopic,
+                              @Value("${dispatch.partitioning.output-topics:my.order.dispatched.topic,dispatch.tracking,my.order.deferred.topic}") List<String> outputTopics,
+                              @Value("${dispatch.partitioning.validation-timeout:5s}") Duration validationTimeout,
+                              @Value("${dispatch.partitioning.resolve-backoff:30s}") Duration resolveBackoff) {
+        this(properties, kafkaAdmin.getIfAvailable(), kafkaTemplate.getIfAvailable(), meterRegistry.getIfAvailable(SimpleMeterRegistry::new),
+                inputTopic, outputTopics, validationTimeout, resolveBackoff);
+    }
+
+    OutputPartitioning(PropertyResolver properties, KafkaAdmin kafkaAdmin, KafkaTemplate<String, Object> kafkaTemplate,
+                       MeterRegistry meterRegistry, String inputTopic, List<String> outputTopics, Duration validationTimeout,
+                       Duration resolveBackoff) {
+        this.properties = properties;
+        this.kafkaAdmin = kafkaAdmin;
+        this.kafkaTemplate = kafkaTemplate;
+        this.meterRegistry = meterRegistry;
+        this.inputTopic = inputTopic;
+        this.outputTopics = outputTopics;
+        this.validationTimeout = validationTimeout;
+        this.resolveBackoffNanos = resolveBackoff.toNanos();
+    }
+
+    /**
+     * Default strategies (mirror-input for the dispatched topic, key-hash elsewhere), no validation and local metrics.
+     */
+    public static OutputPartitioning withDefaults() {
+        return new OutputPartitioning(new PropertySourcesPropertyResolver(new MutablePropertySources()), null, null,
+                new SimpleMeterRegistry(), null, List.of(), Duration.ZERO, Duration.ofSeconds(30));
+    }
+
+    /**
+     * Chooses the output partition of an event, or null to let the producer partitioner hash the key.
+     */
+    public Integer partition(String topic, Integer inputPartition, String key) {
+        TopicPartitioning partitioning = topic(topic);
+        OutputPartitioner partitioner = partitioning.partitioner;
+        if (partitioner == null) {
+            partitioner = partitioning.resolveLazily();
+        }
+        return partitioner.partition(inputPartition, key);
+    }
+
+    /**
+     * Records where an acknowledged event ended up: the chosen partition, or the one the producer picked.
+     */
+    public void recordSent(String topic, Integer partition, SendResult<?, ?> result) {
+        int sent = partition != null ? partition
+                : result != null && result.getRecordMetadata() != null ? result.getRecordMetadata().partition() : -1;
+        if (sent >= 0) {
+            topic(topic).record(sent);
+        }
+    }
+
+    public PartitioningStrategy strategy(String topic) {
+        return topic(topic).strategy;
+    }
+
+    /**
+     * Max over mean of the records sent per partition (1.0 is a perfect balance), or NaN while unknown.
+     */
+    public double skew(String topic) {
+        return topic(topic).skew();
+    }
+
+    @Override
+    public void start() {
+        if (kafkaAdmin != null && !outputTopics.isEmpty()) {
+            validate(describePartitionCounts());
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Antes que los listeners: una configuración imposible no debe llegar a consumir.
+        return AbstractMessageListenerContainer.DEFAULT_PHASE - 100;
+    }
+
+    /**
+     * Checks the output partition counts against each strategy and prepares the partitioners.
+     * Topics missing from the map are resolved on their first send.
+     */
+    void validate(Map<String, Integer> partitionCounts) {
+        Integer inputPartitions = inputTopic == null ? null : partitionCounts.get(inputTopic);
+        List<String> problems = new ArrayList<>();
+        for (String topic : outputTopics) {
+            TopicPartitioning partitioning = topic(topic);
+            Integer count = partitionCounts.get(topic);
+            if (count == null) {
+                log.warn("Partition count of output topic {} unknown at startup, {} partitioning will resolve it on the first send", topic, partitioning.strategy);
+                continue;
+            }
+            if (partitioning.strategy == PartitioningStrategy.MIRROR_INPUT && inputPartitions != null) {
+                if (count < inputPartitions) {
+                    problems.add(topic + " has " + count + " partitions but mirror-input needs at least the " + inputPartitions + " of " + inputTopic);
+                } else if (count > inputPartitions) {
+                    log.warn("Output topic {} has {} partitions but mirror-input only writes to the first {}", topic, count, inputPartitions);
+                }
+            }
+            partitioning.resolve(count);
+            log.info("Output topic {}: {} partitions, {} partitioning", topic, count, partitioning.strategy);
+        }
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Invalid output partitioning: " + String.join("; ", problems));
+        }
+    }
+
+    private Map<String, Integer> describePartitionCounts() {
+        List<String> names = new ArrayList<>(outputTopics);
+        if (inputTopic != null) {
+            names.add(inputTopic);
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        long deadline = System.nanoTime() + validationTimeout.toNanos();
+        AdminClient admin = null;
+        try {
+            admin = AdminClient.create(kafkaAdmin.getConfigurationProperties());
+            // Por topic: uno que aún no existe (se creará al primer envío) no invalida a los demás.
+            admin.describeTopics(names).topicNameValues().forEach((topic, future) -> {
+                try {
+                    TopicDescription description = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    counts.put(topic, description.partitions().size());
+                } catch (Exception e) {
+                    log.debug("Could not describe topic {}: {}", topic, e.toString());
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not describe the output topics, partitioning will resolve them on the first send: {}", e.toString());
+        } finally {
+            if (admin != null) {
+                // Sin esperar a las peticiones pendientes si el broker no respondió a tiempo.
+                admin.close(Duration.ZERO);
+            }
+        }
+        return counts;
+    }
+
+    private TopicPartitioning topic(String topic) {
+        TopicPartitioning partitioning = topics.get(topic);
+        return partitioning != null ? partitioning : topics.computeIfAbsent(topic, TopicPartitioning::new);
+    }
+
+    private final class TopicPartitioning {
+
+        private final String topic;
+        private final PartitioningStrategy strategy;
+        private volatile OutputPartitioner partitioner;
+        private volatile AtomicLongArray sent;
+        private volatile Counter[] counters;
+        private volatile long nextResolveAttempt;
+
+        TopicPartitioning(String topic) {
+            this.topic = topic;
+            this.nextResolveAttempt = System.nanoTime();
+            String configured = properties.getProperty("dispatch.partitioning.topics[" + topic + "].strategy");
+            this.strategy = configured != null ? PartitioningStrategy.of(configured)
+                    : DispatchService.ORDER_DISPATCHED_TOPIC.equals(topic) ? PartitioningStrategy.MIRROR_INPUT : PartitioningStrategy.KEY_HASH;
+            if (!strategy.needsPartitionCount()) {
+                // mirror-input y key-hash no necesitan el número de particiones para decidir.
+                this.partitioner = strategy == PartitioningStrategy.MIRROR_INPUT ? (input, key) -> input : KEY_HASH;
+            }
+            Gauge.builder("dispatch.partitioning.skew", this, TopicPartitioning::skew)
+                    .description("Records of the busiest partition over the mean")
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+        }
+
+        synchronized void resolve(int partitionCount) {
+            if (sent != null || partitionCount <= 0) {
+                return;
+            }
+            partitioner = switch (strategy) {
+                case MIRROR_INPUT -> (input, key) -> input == null || input < partitionCount ? input : mirrorOutOfRange(input, partitionCount);
+                case KEY_HASH -> KEY_HASH;
+                case STICKY -> new StickyPartitioner(partitionCount, properties.getProperty("dispatch.partitioning.sticky-batch-records", Integer.class, 64));
+                case CONSISTENT_HASH -> new ConsistentHashPartitioner(partitionCount,
+                        properties.getProperty("dispatch.partitioning.virtual-nodes", Integer.class, 64),
+                        properties.getProperty("dispatch.partitioning.balance-factor", Double.class, 1.25),
+                        properties.getProperty("dispatch.partitioning.load-window", Long.class, 10_000L));
+            };
+            Counter[] partitionCounters = new Counter[partitionCount];
+            for (int partition = 0; partition < partitionCount; partition++) {
+                partitionCounters[partition] = Counter.builder("dispatch.partitioning.records")
+                        .tag("topic", topic)
+                        .tag("partition", Integer.toString(partition))
+                        .register(meterRegistry);
+            }
+            counters = partitionCounters;
+            sent = new AtomicLongArray(partitionCount);
+        }
+
+        /**
+         * Resolution after startup: the same mirror-input check validate() does, but falling back to key-hash
+         * instead of failing, since the listeners are already consuming.
+         */
+        synchronized void resolveChecked(int partitionCount) {
+            if (sent != null || partitionCount <= 0) {
+                return;
+            }
+            resolve(partitionCount);
+            if (strategy == PartitioningStrategy.MIRROR_INPUT && inputTopic != null) {
+                int inputPartitions = producerPartitionCount(inputTopic);
+                if (inputPartitions > partitionCount) {
+                    fallBackToKeyHash(partitionCount + " partitions but mirror-input needs at least the " + inputPartitions + " of " + inputTopic);
+                }
+            }
+        }
+
+        private Integer mirrorOutOfRange(int input, int partitionCount) {
+            fallBackToKeyHash(partitionCount + " partitions but received input partition " + input + " to mirror");
+            return null;
+        }
+
+        private synchronized void fallBackToKeyHash(String problem) {
+            if (partitioner != KEY_HASH) {
+                partitioner = KEY_HASH;
+                log.error("Output topic {} has {}; falling back to key-hash partitioning", topic, problem);
+            }
+        }
+
+        OutputPartitioner resolveLazily() {
+            // Mientras no toque reintentar, key-hash sin bloquear el hilo del listener.
+            long now = System.nanoTime();
+            if (now - nextResolveAttempt < 0) {
+                return KEY_HASH;
+            }
+            synchronized (this) {
+                if (partitioner == null && now - nextResolveAttempt >= 0) {
+                    int count = producerPartitionCount(topic);
+                    if (count > 0) {
+                        resolveChecked(count);
+                    } else {
+                        nextResolveAttempt = now + resolveBackoffNanos;
+                        log.warn("Partition count of {} unknown, using key-hash partitioning until it is retried in {} ms",
+                                topic, TimeUnit.NANOSECONDS.toMillis(resolveBackoffNanos));
+                    }
+                }
+                return partitioner != null ? partitioner : KEY_HASH;
+            }
+        }
+
+        void record(int partition) {
+            AtomicLongArray counts = sent;
+            if (counts == null) {
+                // key-hash y mirror-input no lo necesitan para decidir: se consulta al primer envío confirmado,
+                // y si no se consigue se vuelve a intentar pasado un rato en vez de en cada record.
+                long now = System.nanoTime();
+                if (now - nextResolveAttempt < 0) {
+                    return;
+                }
+                synchronized (this) {
+                    if (sent == null) {
+                        resolveChecked(producerPartitionCount(topic));
+                        nextResolveAttempt = now + resolveBackoffNanos;
+                    }
+                }
+                counts = sent;
+            }
+            if (counts != null && partition < counts.length()) {
+                counts.incrementAndGet(partition);
+                counters[partition].increment();
+            }
+        }
+
+        double skew() {
+            AtomicLongArray counts = sent;
+            if (counts == null) {
+                return Double.NaN;
+            }
+            long max = 0;
+            long total = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                long count = counts.get(i);
+                max = Math.max(max, count);
+                total += count;
+            }
+            return total == 0 ? Double.NaN : max / ((double) total / counts.length());
+        }
+
+        private int producerPartitionCount(String topic) {
+            if (kafkaTemplate == null) {
+                return 0;
+            }
+            try {
+                // Tras un envío la metadata ya está en el productor; antes, bloquea como lo haría el propio send().
+                var partitions = kafkaTemplate.partitionsFor(topic);
+                return partitions == null ? 0 : partitions.size();
+            } catch (RuntimeException e) {
+                log.warn("Could not get the partitions of {}: {}", topic, e.toString());
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.jesusfc.kafka.partitioning;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Cómo se elige la partición de salida de un topic (dispatch.partitioning.topics[<topic>].strategy):
+  - MIRROR_INPUT:    la misma partición de la que se consumió el pedido (el comportamiento de siempre para
+                     "my.order.dispatched.topic"). Exige que el topic de salida tenga las mismas particiones que el de entrada.
+  - KEY_HASH:        la decide el partitioner del productor con el hash de la clave (murmur2), como los eventos de tracking.
+  - STICKY:          lotes de sticky-batch-records records seguidos a la misma partición y luego a la siguiente. Llena
+                     los batches del productor, pero no mantiene el orden por clave.
+  - CONSISTENT_HASH: anillo de hash consistente con carga acotada: cada clave va a su partición del anillo salvo que esa
+                     partición supere balance-factor veces la carga media; entonces pasa a la siguiente del anillo.
+ */
+public enum PartitioningStrategy {
+
+    MIRROR_INPUT,
+    KEY_HASH,
+    STICKY,
+    CONSISTENT_HASH;
+
+    /**
+     * Whether the strategy needs the partition count of the output topic to choose a partition.
+     */
+    boolean needsPartitionCount() {
+        return this == STICKY || this == CONSISTENT_HASH;
+    }
+
+    /**
+     * Parses the configuration value: mirror-input, key-hash, sticky or consistent-hash.
+     */
+    public static PartitioningStrategy of(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,30 @@
+package com.jesusfc.kafka.partitioning;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Reparte por lotes: batchRecords records seguidos van a la misma partición y el siguiente lote a la siguiente
+partición (round-robin). Así cada batch del productor se llena con records de una sola partición y, a la larga,
+todas las particiones reciben lo mismo. Sin bloqueos: un único contador compartido.
+ */
+final class StickyPartitioner implements OutputPartitioner {
+
+    private final int partitions;
+    private final int batchRecords;
+    private final AtomicLong sequence = new AtomicLong();
+
+    StickyPartitioner(int partitions, int batchRecords) {
+        this.partitions = partitions;
+        this.batchRecords = Math.max(1, batchRecords);
+    }
+
+    @Override
+    public Integer partition(Integer inputPartition, String key) {
+        return (int) ((sequence.getAndIncrement() / batchRecords) % partitions);
+    }
+}
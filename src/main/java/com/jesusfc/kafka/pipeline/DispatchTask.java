@@ -0,0 +1,46 @@
+package com.jesusfc.kafka.pipeline;
+
+import com.jesusfc.kafka.message.OrderCreated;
+
+import java.util.Map;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Entrada preasignada de los ring buffers del pipeline. Es mutable y se reutiliza: cada etapa copia lo que
+necesita a la entrada del anillo siguiente y la limpia antes de devolverla.
+ */
+final class DispatchTask {
+
+    Integer partition;
+    String key;
+    OrderCreated order;
+    Runnable completion;
+    boolean available;
+    // Solo en pedidos con varias líneas: disponibilidad por artículo.
+    Map<String, Boolean> lineAvailability;
+    Exception failure;
+
+    void copyFrom(DispatchTask other) {
+        partition = other.partition;
+        key = other.key;
+        order = other.order;
+        completion = other.completion;
+        available = other.available;
+        lineAvailability = other.lineAvailability;
+        failure = other.failure;
+    }
+
+    void clear() {
+        partition = null;
+        key = null;
+        order = null;
+        completion = null;
+        available = false;
+        lineAvailability = null;
+        failure = null;
+    }
+}
@@ -0,0 +1,109 @@
+package com.jesusfc.kafka.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Ring buffer de un único productor y un único consumidor con las entradas preasignadas al crearlo.
+No hay locks ni se crean objetos por mensaje: el productor pide la siguiente entrada libre (claim), la rellena
+y la publica (publish); el consumidor la lee (poll) y la devuelve al anillo (release).
+Cada lado guarda en un campo propio la última posición que vio del otro, así que solo lee la secuencia
+compartida (volatile) cuando cree que el anillo está lleno o vacío.
+Solo es correcto con UN hilo productor y UN hilo consumidor.
+ */
+public final class SpscRingBuffer<E> {
+
+    private final E[] entries;
+    private final int mask;
+
+    // Siguiente posición a consumir; la escribe solo el consumidor.
+    private final Sequence head = new Sequence();
+    // Siguiente posición a publicar; la escribe solo el productor.
+    private final Sequence tail = new Sequence();
+
+    // Estado local del productor.
+    private long produced;
+    private long cachedHead;
+    // Estado local del consumidor.
+    private long consumed;
+    private long cachedTail;
+
+    @SuppressWarnings("unchecked")
+    public SpscRingBuffer(int capacity, Supplier<E> factory) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring buffer capacity must be a power of two: " + capacity);
+        }
+        this.entries = (E[]) new Object[capacity];
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = factory.get();
+        }
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Producer side: returns the next free entry, waiting with the given strategy while the ring is full.
+     * The entry becomes visible to the consumer on {@link #publish()}.
+     */
+    public E claim(WaitStrategy waitStrategy) throws InterruptedException {
+        int attempt = 0;
+        while (produced - cachedHead >= entries.length) {
+            cachedHead = head.get();
+            if (produced - cachedHead < entries.length) {
+                break;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException("Interrupted while waiting for a free ring buffer entry");
+            }
+            waitStrategy.idle(attempt++);
+        }
+        return entries[(int) (produced & mask)];
+    }
+
+    public void publish() {
+        tail.lazySet(++produced);
+    }
+
+    /**
+     * Consumer side: returns the oldest published entry, or null if the ring is empty.
+     * The entry must be handed back with {@link #release()} once it has been processed.
+     */
+    public E poll() {
+        if (consumed == cachedTail) {
+            cachedTail = tail.get();
+            if (consumed == cachedTail) {
+                return null;
+            }
+        }
+        return entries[(int) (consumed & mask)];
+    }
+
+    public void release() {
+        head.lazySet(++consumed);
+    }
+
+    public int capacity() {
+        return entries.length;
+    }
+
+    /**
+     * Approximate number of published entries not yet released; safe to call from any thread.
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // Relleno para que head y tail no compartan línea de caché (false sharing) entre productor y consumidor.
+    @SuppressWarnings("unused")
+    private static final class Sequence extends AtomicLong {
+        private long p1, p2, p3, p4, p5, p6, p7;
+    }
+}
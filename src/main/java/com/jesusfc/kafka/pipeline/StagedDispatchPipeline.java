@@ -0,0 +1,288 @@
+package com.jesusfc.kafka.pipeline;
+
+import com.jesusfc.kafka.exception.RetryableException;
+import com.jesusfc.kafka.logging.DispatchEventLog;
+import com.jesusfc.kafka.message.OrderCreated;
+import com.jesusfc.kafka.service.DispatchService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.jesusfc.kafka.logging.DispatchEventType.FAILURE;
+import static com.jesusfc.kafka.logging.DispatchEventType.RETRYABLE_FAILURE;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Pipeline por etapas para "my.order.created.topic" (dispatch.pipeline.enabled=true). En lugar de que el hilo del
+listener haga todo en secuencia, cada etapa tiene su propio hilo y se comunican por ring buffers SPSC preasignados:
+
+  listener (poll + deserialización) --ring--> disponibilidad (servicio de stock) --ring--> envío (eventos a Kafka)
+
+Mientras la etapa de envío espera las confirmaciones de un pedido, la de disponibilidad ya consulta el stock del
+siguiente y el listener ya está leyendo los siguientes. Cada etapa es un único hilo, así que el orden de los
+pedidos se mantiene igual que en el camino directo.
+El offset de un record solo se confirma cuando la última etapa lo ha terminado (completion -> Acknowledgment).
+Si un anillo se llena el listener espera (back-pressure) con la WaitStrategy configurada.
+Los errores reintentables se reintentan dentro de la etapa (dispatch.pipeline.max-attempts, retry-backoff); si se
+agotan, o el error no es reintentable, se registra y se confirma el record, igual que hace el DefaultErrorHandler.
+Como las etapas trabajan a la vez, el ritmo del pipeline lo marca la etapa más lenta: el tiempo de servicio que se
+le pasa a DispatchService (y con el que el AutoscalingAdvisor calcula la capacidad) es el de esa etapa, no la suma.
+Se lleva la cuenta de pedidos en vuelo por partición para que, en un rebalanceo, se pueda esperar solo a los de las
+particiones revocadas (ver DrainingRebalanceListener).
+ */
+@Slf4j
+public class StagedDispatchPipeline implements SmartLifecycle {
+
+    private final DispatchService dispatchService;
+    private final DispatchEventLog eventLog;
+    private final SpscRingBuffer<DispatchTask> toAvailability;
+    private final SpscRingBuffer<DispatchTask> toSend;
+    private final WaitStrategy waitStrategy;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+    private final Duration drainTimeout;
+    private final LongAdder completed = new LongAdder();
+    private final Map<Integer, AtomicInteger> inFlightByPartition = new ConcurrentHashMap<>();
+    // Tiempo ocupado acumulado de cada etapa. Cada uno lo escribe solo el hilo de su etapa.
+    private volatile long availabilityBusyNanos;
+    private long sendBusyNanos;
+    private long reportedServiceNanos;
+
+    private volatile boolean running;
+    private volatile boolean stopping;
+    private Thread availabilityStage;
+    private Thread sendStage;
+
+    public StagedDispatchPipeline(DispatchService dispatchService, DispatchEventLog eventLog, int ringSize, WaitStrategy waitStrategy,
+                                  int maxAttempts, Duration retryBackoff, Duration drainTimeout) {
+        this.dispatchService = dispatchService;
+        this.eventLog = eventLog;
+        this.toAvailability = new SpscRingBuffer<>(ringSize, DispatchTask::new);
+        this.toSend = new SpscRingBuffer<>(ringSize, DispatchTask::new);
+        this.waitStrategy = waitStrategy;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMs = retryBackoff.toMillis();
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * First stage, called from the single listener thread: hands the record to the pipeline.
+     * The completion runs on the last stage once the order has been dispatched or deferred.
+     */
+    public void submit(Integer partition, String key, OrderCreated order, Runnable completion) throws InterruptedException {
+        DispatchTask task = toAvailability.claim(waitStrategy);
+        inFlightCounter(partition).incrementAndGet();
+        task.partition = partition;
+        task.key = key;
+        task.order = order;
+        task.completion = completion;
+        toAvailability.publish();
+    }
+
+    @Override
+    public void start() {
+        stopping = false;
+        availabilityStage = new Thread(this::runAvailabilityStage, "pipeline-availability");
+        sendStage = new Thread(this::runSendStage, "pipeline-send");
+        availabilityStage.setDaemon(true);
+        sendStage.setDaemon(true);
+        availabilityStage.start();
+        sendStage.start();
+        running = true;
+    }
+
+    /**
+     * Lets both stages drain what the listener already handed over, up to the drain timeout.
+     * Offsets acknowledged after the listener container stopped are not committed and those records are redelivered.
+     */
+    @Override
+    public void stop() {
+        stopping = true;
+        try {
+            long deadline = System.nanoTime() + drainTimeout.toNanos();
+            join(availabilityStage, deadline);
+            join(sendStage, deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (sendStage != null && sendStage.isAlive()) {
+            log.warn("Pipeline not drained within {}, {} orders left in flight", drainTimeout, inFlight());
+            availabilityStage.interrupt();
+            sendStage.interrupt();
+        }
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Las etapas arrancan antes que el listener y paran después de él, para poder vaciarse.
+        return AbstractMessageListenerContainer.DEFAULT_PHASE - 100;
+    }
+
+    public int inFlight() {
+        return toAvailability.size() + toSend.size();
+    }
+
+    public long completed() {
+        return completed.sum();
+    }
+
+    public int inFlight(int partition) {
+        AtomicInteger counter = inFlightByPartition.get(partition);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * Waits until every order already handed over for the given partitions has been acknowledged, or the deadline passes.
+     * Returns whether those partitions were fully drained.
+     */
+    public boolean awaitDrained(Collection<Integer> partitions, long deadlineNanos) {
+        while (true) {
+            boolean drained = true;
+            for (Integer partition : partitions) {
+                if (inFlight(partition) > 0) {
+                    drained = false;
+                    break;
+                }
+            }
+            if (drained) {
+                return true;
+            }
+            if (System.nanoTime() - deadlineNanos >= 0 || Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    private void runAvailabilityStage() {
+        int idle = 0;
+        while (true) {
+            DispatchTask task = toAvailability.poll();
+            if (task == null) {
+                if (stopping) {
+                    return;
+                }
+                waitStrategy.idle(idle++);
+                continue;
+            }
+            idle = 0;
+            long start = System.nanoTime();
+            try {
+                if (task.order.hasLines()) {
+                    task.lineAvailability = withRetries(task, () -> dispatchService.lineAvailability(task.order));
+                } else {
+                    task.available = withRetries(task, () -> dispatchService.isAvailable(task.order));
+                }
+            } catch (Exception e) {
+                task.failure = e;
+            }
+            availabilityBusyNanos += System.nanoTime() - start;
+            try {
+                DispatchTask next = toSend.claim(waitStrategy);
+                next.copyFrom(task);
+                toSend.publish();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            task.clear();
+            toAvailability.release();
+        }
+    }
+
+    private void runSendStage() {
+        int idle = 0;
+        while (true) {
+            DispatchTask task = toSend.poll();
+            if (task == null) {
+                if (stopping && !availabilityStage.isAlive()) {
+                    return;
+                }
+                waitStrategy.idle(idle++);
+                continue;
+            }
+            idle = 0;
+            long start = System.nanoTime();
+            if (task.failure == null) {
+                try {
+                    withRetries(task, () -> {
+                        if (task.lineAvailability != null) {
+                            dispatchService.dispatchOrDefer(task.partition, task.key, task.order, task.lineAvailability);
+                        } else {
+                            dispatchService.dispatchOrDefer(task.partition, task.key, task.order, task.available);
+                        }
+                        return null;
+                    });
+                } catch (Exception e) {
+                    task.failure = e;
+                }
+            }
+            sendBusyNanos += System.nanoTime() - start;
+            // Lo que avanza la etapa más ocupada desde el record anterior: sumado, el tiempo de la etapa cuello de botella.
+            long bottleneckNanos = Math.max(availabilityBusyNanos, sendBusyNanos);
+            dispatchService.recordServiceTime(Math.max(0L, bottleneckNanos - reportedServiceNanos));
+            reportedServiceNanos = Math.max(reportedServiceNanos, bottleneckNanos);
+            if (task.failure != null) {
+                eventLog.failure(FAILURE, task.failure, "orderId", task.order.getOrderId(), "item", task.order.getItem());
+            }
+            try {
+                task.completion.run();
+            } catch (RuntimeException e) {
+                log.warn("Could not acknowledge order {}", task.order.getOrderId(), e);
+            }
+            completed.increment();
+            // Después de la confirmación: quien espera a la partición ya encuentra el ack encolado.
+            inFlightCounter(task.partition).decrementAndGet();
+            task.clear();
+            toSend.release();
+        }
+    }
+
+    private <T> T withRetries(DispatchTask task, StageCall<T> call) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.run();
+            } catch (RetryableException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                eventLog.failure(RETRYABLE_FAILURE, e, "orderId", task.order.getOrderId(), "item", task.order.getItem());
+                Thread.sleep(retryBackoffMs);
+            }
+        }
+    }
+
+    private AtomicInteger inFlightCounter(Integer partition) {
+        return inFlightByPartition.computeIfAbsent(partition, p -> new AtomicInteger());
+    }
+
+    private static void join(Thread thread, long deadlineNanos) throws InterruptedException {
+        if (thread != null) {
+            thread.join(Math.max(1L, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime())));
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageCall<T> {
+        T run() throws Exception;
+    }
+}
@@ -0,0 +1,61 @@
+package com.jesusfc.kafka.pipeline;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Qué hace una etapa del pipeline mientras espera a su ring buffer (vacío para el consumidor, lleno para el productor).
+  - busy-spin: menor latencia, pero cada etapa ocupa un core al 100% aunque no haya tráfico.
+  - yielding:  gira un poco y luego cede el core a otros hilos.
+  - sleeping:  gira, cede y acaba durmiendo ~100µs; casi no consume CPU en reposo (por defecto).
+ */
+public enum WaitStrategy {
+
+    BUSY_SPIN {
+        @Override
+        public void idle(int attempt) {
+            Thread.onSpinWait();
+        }
+    },
+    YIELDING {
+        @Override
+        public void idle(int attempt) {
+            if (attempt < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    },
+    SLEEPING {
+        @Override
+        public void idle(int attempt) {
+            if (attempt < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (attempt < 2 * SPIN_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    };
+
+    private static final int SPIN_TRIES = 100;
+    private static final long PARK_NANOS = 100_000L;
+
+    /**
+     * Waits once; attempt is the number of consecutive empty (or full) checks so far.
+     */
+    public abstract void idle(int attempt);
+
+    /**
+     * Parses the configuration value: busy-spin, yielding or sleeping.
+     */
+    public static WaitStrategy of(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
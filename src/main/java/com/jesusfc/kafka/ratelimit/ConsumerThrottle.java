@@ -0,0 +1,16 @@
+package com.jesusfc.kafka.ratelimit;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+@FunctionalInterface
+public interface ConsumerThrottle {
+
+    /**
+     * An output topic went past its rate: stop consuming until {@link OutputRateLimiter#throttledNanos()} runs out.
+     * Called from the sending threads, so it must not block.
+     */
+    void throttle();
+}
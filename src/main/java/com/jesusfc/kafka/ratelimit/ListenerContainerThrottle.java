@@ -0,0 +1,185 @@
+package com.jesusfc.kafka.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Lleva el límite de salida hasta el consumo: cuando un topic de salida se pasa de su ritmo se pausan los contenedores
+de dispatch.rate-limit.listeners y se reanudan en cuanto el OutputRateLimiter vuelve a estar dentro del ritmo.
+Ningún hilo espera: el contenedor sigue haciendo poll (sin traer records) y el grupo no rebalancea.
+Antes de que arranquen los contenedores se configuran con:
+  - pauseImmediate: la pausa tiene efecto tras el record en curso, no tras todo el lote del último poll; los que
+    quedan se guardan y se entregan al reanudar.
+  - pollTimeout y pollTimeoutWhilePaused = min-pause: la reanudación se nota en ese tiempo como mucho. Al reanudar,
+    el contenedor entrega los records guardados tras un poll que, sin datos nuevos, esperaría el pollTimeout entero
+    (5 s por defecto); con él corto, un poll vacío solo cuesta min-pause.
+Tiempo en pausa en dispatch.ratelimit.paused.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "dispatch.rate-limit", name = "enabled", havingValue = "true")
+public class ListenerContainerThrottle implements ConsumerThrottle, SmartLifecycle {
+
+    private final OutputRateLimiter rateLimiter;
+    private final Function<String, MessageListenerContainer> containerLookup;
+    private final List<String> listenerIds;
+    private final Duration pollTimeout;
+    private final Timer pausedTimer;
+
+    private volatile List<MessageListenerContainer> containers = List.of();
+    private volatile boolean paused;
+    private long pausedAt;
+    private volatile boolean running;
+    private ScheduledExecutorService executor;
+
+    @Autowired
+    public ListenerContainerThrottle(OutputRateLimiter rateLimiter,
+                                     KafkaListenerEndpointRegistry registry,
+                                     ObjectProvider<MeterRegistry> meterRegistry,
+                                     @Value("${dispatch.rate-limit.listeners:orderConsumerClient,orderByItemConsumerClient,expressLaneConsumerClient,bulkLaneConsumerClient}") List<String> listenerIds,
+                                     @Value("${dispatch.rate-limit.min-pause:10ms}") Duration minPause) {
+        this(rateLimiter, registry::getListenerContainer, meterRegistry.getIfAvailable(SimpleMeterRegistry::new), listenerIds, minPause);
+    }
+
+    ListenerContainerThrottle(OutputRateLimiter rateLimiter, Function<String, MessageListenerContainer> containerLookup,
+                              MeterRegistry meterRegistry, List<String> listenerIds, Duration minPause) {
+        this.rateLimiter = rateLimiter;
+        this.containerLookup = containerLookup;
+        this.listenerIds = listenerIds;
+        this.pollTimeout = minPause.compareTo(Duration.ofMillis(1)) < 0 ? Duration.ofMillis(1) : minPause;
+        this.pausedTimer = Timer.builder("dispatch.ratelimit.paused")
+                .description("Time the listeners were paused because an output topic was past its rate")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        // Los que no existen con esta configuración (carriles, reparto por artículo...) simplemente no están.
+        containers = listenerIds.stream().map(containerLookup).filter(Objects::nonNull).toList();
+        for (MessageListenerContainer container : containers) {
+            container.getContainerProperties().setPauseImmediate(true);
+            container.getContainerProperties().setPollTimeoutWhilePaused(pollTimeout);
+            container.getContainerProperties().setPollTimeout(pollTimeout.toMillis());
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "output-rate-limit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rateLimiter.onThrottle(this);
+        running = true;
+        log.info("Output rate limit throttles listeners {}", containers.stream().map(MessageListenerContainer::getListenerId).toList());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        rateLimiter.onThrottle(null);
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Antes que los contenedores: pauseImmediate tiene que estar puesto cuando arranca su consumidor.
+        return AbstractMessageListenerContainer.DEFAULT_PHASE - 100;
+    }
+
+    @Override
+    public void throttle() {
+        if (!running) {
+            return;
+        }
+        // Se mira el contenedor y no solo el estado propio: resume() quita la pausa del contenedor antes de volver
+        // (despierta al consumidor, y eso puede tardar), y mientras tanto ya llegan records que hay que frenar.
+        synchronized (this) {
+            if (paused && allPauseRequested()) {
+                return;
+            }
+            if (!paused) {
+                paused = true;
+                pausedAt = System.nanoTime();
+                try {
+                    executor.schedule(this::resumeWithinRate, rateLimiter.throttledNanos(), TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    // Parando: los contenedores se paran igualmente.
+                    paused = false;
+                    return;
+                }
+            }
+        }
+        for (MessageListenerContainer container : containers) {
+            if (!container.isPauseRequested()) {
+                container.pause();
+            }
+        }
+    }
+
+    boolean isPaused() {
+        return paused;
+    }
+
+    private boolean allPauseRequested() {
+        for (MessageListenerContainer container : containers) {
+            if (!container.isPauseRequested()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void resumeWithinRate() {
+        long pausedNanos;
+        synchronized (this) {
+            // Mientras estaba en pausa han podido terminar envíos que alargan la pausa.
+            long remaining = rateLimiter.throttledNanos();
+            if (remaining > 0 && running) {
+                executor.schedule(this::resumeWithinRate, remaining, TimeUnit.NANOSECONDS);
+                return;
+            }
+            paused = false;
+            pausedNanos = System.nanoTime() - pausedAt;
+        }
+        pausedTimer.record(pausedNanos, TimeUnit.NANOSECONDS);
+        // Fuera del lock: si un record vuelve a pasarse del ritmo durante el resume, throttle() pausa de nuevo sin
+        // esperar a que termine.
+        containers.forEach(MessageListenerContainer::resume);
+        synchronized (this) {
+            // Una pausa nueva mientras se reanudaba: que no la deshaga este resume.
+            if (paused) {
+                containers.forEach(MessageListenerContainer::pause);
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.jesusfc.kafka.ratelimit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Límite de ritmo de salida por topic (dispatch.rate-limit). Al recuperarse de una caída el listener vacía el atasco
+tan rápido como puede, y la ráfaga de OrderDispatched y dispatch.tracking inunda a los consumidores de aguas abajo
+y al broker. DispatchEventSender pide un permiso al TokenBucket del topic antes de cada envío:
+  - Dentro del ritmo (o de la ráfaga permitida, burst) el envío sale sin más.
+  - Por encima, el envío sale igualmente (nunca se bloquea el hilo) y se avisa al ConsumerThrottle para que pause
+    los listeners hasta que el bucket vuelva a estar dentro del ritmo. Así la presión llega hasta el consumo de
+    "my.order.created.topic" en vez de acumularse en hilos dormidos.
+El OutboxDrainer, en cambio, re-envía desde su propio hilo: toma los permisos del mismo bucket con reserve() y
+duerme lo que se pase del ritmo, como ReplayService. Así lo que sale del outbox también cuenta para el límite del
+topic y el atasco no se vacía de golpe al volver el broker.
+Lo mismo el replay: sus pedidos pasan por DispatchService y DispatchEventSender como los del listener, pero su hilo se
+marca con paced() y en él acquire() duerme en vez de pausar los listeners. El replay nunca detiene al
+"orderConsumerClient" en vivo; si va por encima del presupuesto del topic, el que espera es el replay.
+Los excesos menores que min-pause no pausan: pausar y reanudar un contenedor tiene un coste, y el bucket los
+compensa en la siguiente pausa.
+Configuración por topic: topics[<topic>].rate-per-second y topics[<topic>].burst; un topic sin rate-per-second
+no tiene límite.
+Métricas por topic: dispatch.ratelimit.permits, dispatch.ratelimit.rate (ritmo conseguido en el último segundo) y
+dispatch.ratelimit.throttled (tiempo por encima del ritmo que el topic ha pedido de pausa).
+ */
+@Slf4j
+@Component
+public class OutputRateLimiter {
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final ThreadLocal<Boolean> PACED_THREAD = new ThreadLocal<>();
+
+    private final boolean enabled;
+    private final long minPauseNanos;
+    private final Map<String, TopicLimit> limits = new HashMap<>();
+    private final AtomicLong throttledUntil = new AtomicLong(System.nanoTime());
+    private volatile ConsumerThrottle throttle;
+
+    @Autowired
+    public OutputRateLimiter(PropertyResolver properties,
+                             ObjectProvider<MeterRegistry> meterRegistry,
+                             @Value("${dispatch.rate-limit.enabled:false}") boolean enabled,
+                             @Value("${dispatch.rate-limit.output-topics:my.order.dispatched.topic,dispatch.tracking}") List<String> outputTopics,
+                             @Value("${dispatch.rate-limit.min-pause:10ms}") Duration minPause) {
+        this(properties, meterRegistry.getIfAvailable(SimpleMeterRegistry::new), enabled, outputTopics, minPause);
+    }
+
+    OutputRateLimiter(PropertyResolver properties, MeterRegistry meterRegistry, boolean enabled, List<String> outputTopics, Duration minPause) {
+        this.enabled = enabled;
+        this.minPauseNanos = minPause.toNanos();
+        if (!enabled) {
+            return;
+        }
+        for (String topic : outputTopics) {
+            Double rate = properties.getProperty("dispatch.rate-limit.topics[" + topic + "].rate-per-second", Double.class);
+            if (rate == null || rate <= 0) {
+                continue;
+            }
+            int burst = properties.getProperty("dispatch.rate-limit.topics[" + topic + "].burst", Integer.class, (int) Math.ceil(rate));
+            limits.put(topic, new TopicLimit(topic, new TokenBucket(rate, burst), meterRegistry));
+            log.info("Output topic {} limited to {} records/s with bursts of {}", topic, rate, burst);
+        }
+    }
+
+    /**
+     * No limits: every permit is granted at once.
+     */
+    public static OutputRateLimiter disabled() {
+        return new OutputRateLimiter(null, new SimpleMeterRegistry(), false, List.of(), Duration.ZERO);
+    }
+
+    /**
+     * Wraps a background task so that acquire() on its thread sleeps past the rate instead of throttling the consumers.
+     */
+    public static Runnable paced(Runnable task) {
+        return () -> {
+            PACED_THREAD.set(Boolean.TRUE);
+            try {
+                task.run();
+            } finally {
+                PACED_THREAD.remove();
+            }
+        };
+    }
+
+    /**
+     * Takes a permit for one record to the topic. Never blocks a listener: past the rate, the consumers are throttled
+     * instead. On a {@link #paced(Runnable)} thread it sleeps until the permit is within the rate.
+     */
+    public void acquire(String topic) {
+        if (!enabled) {
+            return;
+        }
+        TopicLimit limit = limits.get(topic);
+        if (limit == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (PACED_THREAD.get() != null) {
+            sleep(limit.acquire(now, false));
+            return;
+        }
+        long over = limit.acquire(now, true);
+        if (over >= minPauseNanos && over > 0) {
+            throttle(now + over);
+        }
+    }
+
+    /**
+     * Takes a permit for one record to the topic and returns the nanoseconds the caller has to sleep to stay within
+     * the rate, 0 if the topic is not limited. For senders on their own thread; does not throttle the consumers.
+     */
+    public long reserve(String topic) {
+        if (!enabled) {
+            return 0L;
+        }
+        TopicLimit limit = limits.get(topic);
+        return limit == null ? 0L : limit.acquire(System.nanoTime(), false);
+    }
+
+    /**
+     * Nanoseconds until every limited topic is back within its rate, 0 if none is throttled.
+     */
+    public long throttledNanos() {
+        return Math.max(0L, throttledUntil.get() - System.nanoTime());
+    }
+
+    public boolean isEnabled() {
+        return enabled && !limits.isEmpty();
+    }
+
+    /**
+     * Registers who pauses the consumers when a topic goes past its rate.
+     */
+    public void onThrottle(ConsumerThrottle throttle) {
+        this.throttle = throttle;
+    }
+
+    private static void sleep(long nanos) {
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            // El dueño del hilo (el replay) ve la interrupción en su siguiente espera y se cancela.
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void throttle(long untilNanos) {
+        long current;
+        do {
+            current = throttledUntil.get();
+        } while (untilNanos - current > 0 && !throttledUntil.compareAndSet(current, untilNanos));
+        ConsumerThrottle consumers = throttle;
+        if (consumers != null) {
+            consumers.throttle();
+        }
+    }
+
+    private static final class TopicLimit {
+
+        private final TokenBucket bucket;
+        private final LongAdder permits = new LongAdder();
+        private final LongAdder throttledNanos = new LongAdder();
+        private final LongAdder windowPermits = new LongAdder();
+        private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+        private volatile double achievedRate;
+
+        TopicLimit(String topic, TokenBucket bucket, MeterRegistry meterRegistry) {
+            this.bucket = bucket;
+            FunctionCounter.builder("dispatch.ratelimit.permits", permits, LongAdder::sum)
+                    .description("Records sent to the output topic through the rate limiter")
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+            FunctionCounter.builder("dispatch.ratelimit.throttled", throttledNanos, nanos -> nanos.sum() / 1e9)
+                    .description("Time the output topic was past its rate and asked the consumers to pause")
+                    .baseUnit("seconds")
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+            Gauge.builder("dispatch.ratelimit.rate", this, TopicLimit::achievedRate)
+                    .description("Records per second sent to the output topic over the last second")
+                    .baseUnit("records/s")
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+        }
+
+        long acquire(long now, boolean throttling) {
+            long start = windowStart.get();
+            if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+                achievedRate = windowPermits.sumThenReset() * 1e9 / (now - start);
+            }
+            windowPermits.increment();
+            permits.increment();
+            long over = bucket.reserve(now);
+            if (over > 0 && throttling) {
+                throttledNanos.add(Math.min(over, bucket.intervalNanos()));
+            }
+            return over;
+        }
+
+        double achievedRate() {
+            // Sin envíos no se cierra la ventana: más de dos ventanas sin actividad es ritmo 0.
+            return System.nanoTime() - windowStart.get() > 2 * WINDOW_NANOS ? 0.0 : achievedRate;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.jesusfc.kafka.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Token bucket sin locks: ratePerSecond permisos por segundo y hasta "burst" seguidos si el bucket está lleno.
+Se implementa como GCRA: en vez de contar tokens se guarda en un único AtomicLong el instante teórico en el que el
+bucket volvería a estar lleno, y cada permiso lo adelanta un intervalo (1 / ratePerSecond) con un CAS.
+reserve() nunca bloquea ni rechaza: siempre toma el permiso y devuelve cuánto se ha pasado el llamante del ritmo.
+Quien lo llama decide qué hacer con ese tiempo (pausar el consumidor, dormir en un hilo propio...).
+ */
+public final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    public TokenBucket(double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("ratePerSecond must be greater than 0");
+        }
+        this.intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+        this.burstNanos = intervalNanos * Math.max(1, burst);
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Takes one permit and returns the nanoseconds the caller has to hold off before the next permit is within
+     * the rate again, or 0 while the burst allowance covers it.
+     */
+    public long reserve(long nowNanos) {
+        while (true) {
+            long current = fullAt.get();
+            // Un bucket que lleva tiempo sin usarse está lleno, pero no acumula más de "burst" permisos.
+            long next = Math.max(current, nowNanos) + intervalNanos;
+            if (fullAt.compareAndSet(current, next)) {
+                return Math.max(0L, next - nowNanos - burstNanos);
+            }
+        }
+    }
+
+    /**
+     * Nanoseconds until a permit would be within the rate again, 0 if one is available now. Takes nothing.
+     */
+    public long delay(long nowNanos) {
+        return Math.max(0L, fullAt.get() + intervalNanos - nowNanos - burstNanos);
+    }
+
+    public long intervalNanos() {
+        return intervalNanos;
+    }
+}
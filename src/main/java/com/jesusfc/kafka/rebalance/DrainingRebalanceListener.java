@@ -0,0 +1,99 @@
+package com.jesusfc.kafka.rebalance;
+
+import com.jesusfc.kafka.pipeline.StagedDispatchPipeline;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Listener de rebalanceo de los contenedores del servicio. Con CooperativeStickyAssignor solo se revocan las
+particiones que cambian de dueño; el resto se sigue consumiendo durante el rebalanceo.
+Antes del commit de las particiones revocadas espera, como mucho dispatch.rebalance.drain-budget, a que el
+StagedDispatchPipeline termine los pedidos que ya tenía de esas particiones. Sus acks quedan encolados y Spring Kafka
+los commitea justo después de este callback (commitPendingAcks), así el nuevo dueño empieza tras el último pedido
+terminado en lugar de re-procesarlos. En el camino directo el record se procesa en el propio hilo del consumidor y no
+hay trabajo en vuelo: solo se mide.
+Si el presupuesto se agota, lo que quede en vuelo se re-entregará al nuevo dueño (at-least-once, como hasta ahora).
+Las particiones perdidas (onPartitionsLost) ya tienen otro dueño: no se espera ni se commitea nada.
+El presupuesto debe ser bastante menor que max.poll.interval.ms, porque se consume dentro del poll.
+ */
+@Slf4j
+public class DrainingRebalanceListener implements ConsumerAwareRebalanceListener {
+
+    private final ObjectProvider<StagedDispatchPipeline> pipeline;
+    private final String pipelineTopic;
+    private final Duration drainBudget;
+    private final Timer drainTimer;
+    private final Counter revokedPartitions;
+    private final Counter lostPartitions;
+    private final Counter drainTimeouts;
+
+    public DrainingRebalanceListener(ObjectProvider<StagedDispatchPipeline> pipeline, String pipelineTopic,
+                                     Duration drainBudget, MeterRegistry meterRegistry) {
+        this.pipeline = pipeline;
+        this.pipelineTopic = pipelineTopic;
+        this.drainBudget = drainBudget;
+        this.drainTimer = Timer.builder("dispatch.rebalance.drain.time")
+                .description("Time spent draining in-flight orders of revoked partitions")
+                .register(meterRegistry);
+        this.revokedPartitions = Counter.builder("dispatch.rebalance.revoked.partitions").register(meterRegistry);
+        this.lostPartitions = Counter.builder("dispatch.rebalance.lost.partitions").register(meterRegistry);
+        this.drainTimeouts = Counter.builder("dispatch.rebalance.drain.timeouts")
+                .description("Rebalances whose drain budget ran out with orders still in flight")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (partitions.isEmpty()) {
+            return;
+        }
+        revokedPartitions.increment(partitions.size());
+        StagedDispatchPipeline stagedPipeline = pipeline.getIfAvailable();
+        if (stagedPipeline == null) {
+            return;
+        }
+        List<Integer> pipelinePartitions = new ArrayList<>(partitions.size());
+        for (TopicPartition partition : partitions) {
+            if (partition.topic().equals(pipelineTopic)) {
+                pipelinePartitions.add(partition.partition());
+            }
+        }
+        if (pipelinePartitions.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        boolean drained = stagedPipeline.awaitDrained(pipelinePartitions, start + drainBudget.toNanos());
+        long elapsed = System.nanoTime() - start;
+        drainTimer.record(Duration.ofNanos(elapsed));
+        if (drained) {
+            log.info("Drained revoked partitions {} in {} ms", pipelinePartitions, elapsed / 1_000_000);
+        } else {
+            drainTimeouts.increment();
+            int left = pipelinePartitions.stream().mapToInt(stagedPipeline::inFlight).sum();
+            log.warn("Drain budget {} exhausted for revoked partitions {}, {} orders will be redelivered to the new owner",
+                    drainBudget, pipelinePartitions, left);
+        }
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        lostPartitions.increment(partitions.size());
+        log.warn("Partitions lost {}, their in-flight orders will be redelivered to the new owner", partitions);
+    }
+}
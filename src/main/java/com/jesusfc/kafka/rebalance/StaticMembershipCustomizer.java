@@ -0,0 +1,61 @@
+package com.jesusfc.kafka.rebalance;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.kafka.config.ContainerCustomizer;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.util.StringUtils;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Pertenencia estática al grupo (group.instance.id): si la instancia se reinicia antes de session.timeout.ms vuelve
+con el mismo id y el coordinador le devuelve sus particiones sin rebalancear al resto del grupo.
+Todos los listeners comparten group-id, así que cada contenedor necesita su propio id: <instancia>-<listener id>.
+Con concurrency > 1 Spring Kafka añade además el sufijo del consumidor hijo (-0, -1, ...).
+El id de la instancia es dispatch.consumer.instance-id o, si no se indica, el nombre del host; dos instancias en la
+misma máquina deben configurarlo, porque con el mismo id la segunda deja fuera (fenced) a la primera.
+ */
+public class StaticMembershipCustomizer implements ContainerCustomizer<String, Object, ConcurrentMessageListenerContainer<String, Object>> {
+
+    private static final Pattern INVALID_ID_CHARACTERS = Pattern.compile("[^a-zA-Z0-9._-]");
+
+    private final String instanceId;
+
+    public StaticMembershipCustomizer(String instanceId) {
+        this.instanceId = StringUtils.hasText(instanceId) ? instanceId : hostInstanceId();
+    }
+
+    @Override
+    public void configure(ConcurrentMessageListenerContainer<String, Object> container) {
+        if (!StringUtils.hasText(instanceId)) {
+            return;
+        }
+        // Las ContainerProperties de la factoría se copian por referencia a cada contenedor: no modificar las compartidas.
+        Properties consumerProperties = new Properties();
+        consumerProperties.putAll(container.getContainerProperties().getKafkaConsumerProperties());
+        consumerProperties.setProperty(ConsumerConfig.GROUP_INSTANCE_ID_CONFIG, groupInstanceId(container.getListenerId()));
+        container.getContainerProperties().setKafkaConsumerProperties(consumerProperties);
+    }
+
+    public String groupInstanceId(String listenerId) {
+        String id = listenerId == null ? instanceId : instanceId + "-" + listenerId;
+        // Kafka solo admite alfanuméricos ASCII, '.', '_' y '-' (los ids generados por Spring llevan '#').
+        return INVALID_ID_CHARACTERS.matcher(id).replaceAll("_");
+    }
+
+    static String hostInstanceId() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return System.getenv("HOSTNAME");
+        }
+    }
+}
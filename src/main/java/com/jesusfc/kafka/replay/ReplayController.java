@@ -0,0 +1,53 @@
+package com.jesusfc.kafka.replay;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Arranque y seguimiento del modo replay:
+  POST   /replay  -> arranca un replay (202), 409 si ya hay uno en marcha.
+  GET    /replay  -> progreso y ETA del último replay.
+  DELETE /replay  -> cancela el replay en curso.
+ */
+@RestController
+@RequestMapping("/replay")
+@RequiredArgsConstructor
+public class ReplayController {
+
+    private final ReplayService replayService;
+
+    @PostMapping
+    public ResponseEntity<ReplayProgress> start(@RequestBody ReplayRequest request) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(replayService.start(request));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<ReplayProgress> progress() {
+        return ResponseEntity.of(replayService.progress());
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Void> cancel() {
+        replayService.cancel();
+        return ResponseEntity.noContent().build();
+    }
+}
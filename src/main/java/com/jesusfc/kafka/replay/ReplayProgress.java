@@ -0,0 +1,33 @@
+package com.jesusfc.kafka.replay;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplayProgress {
+
+    public enum State { RUNNING, COMPLETED, CANCELLED, FAILED }
+
+    State state;
+    long startedAt;
+    // Registros entre el offset inicial y el offset final capturado al arrancar el replay.
+    long total;
+    long processed;
+    long replayed;
+    // Pedidos que ya estaban marcados como despachados.
+    long skipped;
+    long failed;
+    double recordsPerSecond;
+    // Segundos estimados hasta terminar, -1 si aún no hay ritmo medido.
+    long etaSeconds;
+}
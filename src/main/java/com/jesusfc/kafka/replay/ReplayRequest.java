@@ -0,0 +1,37 @@
+package com.jesusfc.kafka.replay;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/* Example of ReplayRequest:
+{
+        "fromTimestamp": 1760860800000,
+        "ratePerSecond": 500
+        }
+or, starting from explicit offsets (partitions not listed are not replayed):
+{
+        "fromOffsets": { "0": 1200, "3": 98000 }
+        }
+*/
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplayRequest {
+
+    // Epoch millis desde el que se re-procesa cada partición. Excluyente con fromOffsets.
+    Long fromTimestamp;
+    // Offset inicial por partición.
+    Map<Integer, Long> fromOffsets;
+    // Límite de pedidos re-procesados por segundo; si es null se usa dispatch.replay.rate-per-second.
+    Integer ratePerSecond;
+}
@@ -0,0 +1,327 @@
+package com.jesusfc.kafka.replay;
+
+import com.jesusfc.kafka.message.OrderCreated;
+import com.jesusfc.kafka.message.OrderDispatched;
+import com.jesusfc.kafka.ratelimit.OutputRateLimiter;
+import com.jesusfc.kafka.ratelimit.TokenBucket;
+import com.jesusfc.kafka.service.DispatchService;
+import com.jesusfc.kafka.service.DispatchedOrderRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Modo replay/backfill: re-procesa "my.order.created.topic" desde un timestamp o desde offsets por partición.
+Usa su propio consumidor (asignación manual, grupo propio y fetch/poll grandes), así que el listener
+"orderConsumerClient" sigue consumiendo sin enterarse: no hay rebalanceo del grupo en vivo.
+El offset final de cada partición se captura al arrancar, de modo que el replay termina aunque sigan
+llegando pedidos nuevos (esos los procesa el listener en vivo).
+El hilo del replay va marcado con OutputRateLimiter.paced(): sus envíos cuentan para el límite de salida de cada topic,
+pero si lo superan duerme el replay en vez de pausar al listener en vivo.
+Antes de empezar, si se replaya desde un timestamp, se lee "my.order.dispatched.topic" desde ese mismo
+instante para marcar como despachados los pedidos que ya salieron, y así no despacharlos dos veces.
+ */
+@Slf4j
+@Component
+public class ReplayService {
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+
+    private final DispatchService dispatchService;
+    private final DispatchedOrderRegistry dispatchedOrderRegistry;
+    private final Supplier<Consumer<String, Object>> orderConsumerSupplier;
+    private final Supplier<Consumer<String, Object>> dispatchedConsumerSupplier;
+    private final String topic;
+    private final int defaultRatePerSecond;
+    private final Duration progressInterval;
+
+    private final AtomicReference<ReplayJob> currentJob = new AtomicReference<>();
+
+    @Autowired
+    public ReplayService(DispatchService dispatchService,
+                         DispatchedOrderRegistry dispatchedOrderRegistry,
+                         @Value("${spring.kafka.bootstrap-servers}") String bootstrapServers,
+                         @Value("${spring.kafka.topics.consumer}") String topic,
+                         @Value("${dispatch.replay.group-id:order-dispatch-replay}") String groupId,
+                         @Value("${dispatch.replay.max-poll-records:2000}") int maxPollRecords,
+                         @Value("${dispatch.replay.fetch-min-bytes:1048576}") int fetchMinBytes,
+                         @Value("${dispatch.replay.fetch-max-wait:500ms}") Duration fetchMaxWait,
+                         @Value("${dispatch.replay.max-partition-fetch-bytes:8388608}") int maxPartitionFetchBytes,
+                         @Value("${dispatch.replay.rate-per-second:500}") int defaultRatePerSecond,
+                         @Value("${dispatch.replay.progress-interval:10s}") Duration progressInterval) {
+        this(dispatchService, dispatchedOrderRegistry,
+                consumerSupplier(bootstrapServers, groupId, maxPollRecords, fetchMinBytes, fetchMaxWait, maxPartitionFetchBytes, OrderCreated.class),
+                consumerSupplier(bootstrapServers, groupId, maxPollRecords, fetchMinBytes, fetchMaxWait, maxPartitionFetchBytes, OrderDispatched.class),
+                topic, defaultRatePerSecond, progressInterval);
+    }
+
+    ReplayService(DispatchService dispatchService,
+                  DispatchedOrderRegistry dispatchedOrderRegistry,
+                  Supplier<Consumer<String, Object>> orderConsumerSupplier,
+                  Supplier<Consumer<String, Object>> dispatchedConsumerSupplier,
+                  String topic,
+                  int defaultRatePerSecond,
+                  Duration progressInterval) {
+        this.dispatchService = dispatchService;
+        this.dispatchedOrderRegistry = dispatchedOrderRegistry;
+        this.orderConsumerSupplier = orderConsumerSupplier;
+        this.dispatchedConsumerSupplier = dispatchedConsumerSupplier;
+        this.topic = topic;
+        this.defaultRatePerSecond = defaultRatePerSecond;
+        this.progressInterval = progressInterval;
+    }
+
+    /**
+     * Starts a replay in the background. Only one replay can run at a time.
+     */
+    public ReplayProgress start(ReplayRequest request) {
+        if ((request.getFromTimestamp() == null) == (request.getFromOffsets() == null)) {
+            throw new IllegalArgumentException("Exactly one of fromTimestamp or fromOffsets must be provided");
+        }
+        int rate = request.getRatePerSecond() != null ? request.getRatePerSecond() : defaultRatePerSecond;
+        if (rate <= 0) {
+            throw new IllegalArgumentException("ratePerSecond must be greater than 0");
+        }
+        ReplayJob job = new ReplayJob(request, rate);
+        ReplayJob previous = currentJob.get();
+        if ((previous != null && previous.state == ReplayProgress.State.RUNNING) || !currentJob.compareAndSet(previous, job)) {
+            throw new IllegalStateException("A replay is already running");
+        }
+        Thread thread = new Thread(OutputRateLimiter.paced(job), "order-replay");
+        thread.setDaemon(true);
+        thread.start();
+        return job.progress();
+    }
+
+    public Optional<ReplayProgress> progress() {
+        return Optional.ofNullable(currentJob.get()).map(ReplayJob::progress);
+    }
+
+    @PreDestroy
+    public void cancel() {
+        ReplayJob job = currentJob.get();
+        if (job != null) {
+            job.cancelled = true;
+        }
+    }
+
+    private static Supplier<Consumer<String, Object>> consumerSupplier(String bootstrapServers, String groupId, int maxPollRecords,
+                                                                      int fetchMinBytes, Duration fetchMaxWait,
+                                                                      int maxPartitionFetchBytes, Class<?> valueType) {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, fetchMinBytes);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, (int) fetchMaxWait.toMillis());
+        props.put(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG, maxPartitionFetchBytes);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
+        props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class);
+        props.put(JsonDeserializer.VALUE_DEFAULT_TYPE, valueType.getCanonicalName());
+        props.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
+        DefaultKafkaConsumerFactory<String, Object> factory = new DefaultKafkaConsumerFactory<>(props);
+        return factory::createConsumer;
+    }
+
+    private class ReplayJob implements Runnable {
+
+        private final ReplayRequest request;
+        private final TokenBucket pacer;
+        private final long startedAt = System.currentTimeMillis();
+
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong replayed = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        private volatile ReplayProgress.State state = ReplayProgress.State.RUNNING;
+        private volatile boolean cancelled;
+        private volatile long total;
+
+        ReplayJob(ReplayRequest request, int ratePerSecond) {
+            this.request = request;
+            // Sin ráfagas: el replay tiene su propio hilo y puede dormir entre pedidos.
+            this.pacer = new TokenBucket(ratePerSecond, 1);
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (request.getFromTimestamp() != null) {
+                    primeDispatchedOrders(request.getFromTimestamp());
+                }
+                replay();
+                state = cancelled ? ReplayProgress.State.CANCELLED : ReplayProgress.State.COMPLETED;
+                log.info("Replay finished: {}", progress());
+            } catch (Exception e) {
+                state = ReplayProgress.State.FAILED;
+                log.error("Replay failed: {}", progress(), e);
+            }
+        }
+
+        private void primeDispatchedOrders(long fromTimestamp) {
+            String dispatchedTopic = DispatchService.ORDER_DISPATCHED_TOPIC;
+            try (Consumer<String, Object> consumer = dispatchedConsumerSupplier.get()) {
+                List<TopicPartition> partitions = partitions(consumer, dispatchedTopic);
+                consumer.assign(partitions);
+                Map<TopicPartition, Long> end = consumer.endOffsets(partitions);
+                seekToTimestamp(consumer, partitions, fromTimestamp, end);
+                long primed = 0;
+                while (!cancelled && !reachedEnd(consumer, end)) {
+                    for (ConsumerRecord<String, Object> record : consumer.poll(POLL_TIMEOUT)) {
+                        if (record.value() instanceof OrderDispatched dispatched) {
+                            dispatchedOrderRegistry.markDispatched(dispatched.getOrderId(), record.timestamp() >= 0 ? record.timestamp() : System.currentTimeMillis());
+                            primed++;
+                        }
+                    }
+                }
+                log.info("Replay primed {} already dispatched orders from {}", primed, dispatchedTopic);
+            }
+        }
+
+        private void replay() {
+            try (Consumer<String, Object> consumer = orderConsumerSupplier.get()) {
+                List<TopicPartition> partitions = partitions(consumer, topic);
+                consumer.assign(partitions);
+                Map<TopicPartition, Long> end = consumer.endOffsets(partitions);
+                Map<TopicPartition, Long> start = request.getFromTimestamp() != null
+                        ? seekToTimestamp(consumer, partitions, request.getFromTimestamp(), end)
+                        : seekToOffsets(consumer, partitions, request.getFromOffsets(), end);
+                total = partitions.stream().mapToLong(tp -> Math.max(0L, end.get(tp) - start.get(tp))).sum();
+                log.info("Replaying {} records of {} from {}", total, topic, start);
+
+                long nextReport = System.nanoTime() + progressInterval.toNanos();
+                while (!cancelled && !reachedEnd(consumer, end)) {
+                    for (ConsumerRecord<String, Object> record : consumer.poll(POLL_TIMEOUT)) {
+                        if (cancelled) {
+                            break;
+                        }
+                        TopicPartition tp = new TopicPartition(record.topic(), record.partition());
+                        if (record.offset() >= end.get(tp)) {
+                            continue;
+                        }
+                        replayRecord(record);
+                    }
+                    consumer.commitSync();
+                    if (System.nanoTime() >= nextReport) {
+                        log.info("Replay progress: {}", progress());
+                        nextReport = System.nanoTime() + progressInterval.toNanos();
+                    }
+                }
+            }
+        }
+
+        private void replayRecord(ConsumerRecord<String, Object> record) {
+            try {
+                if (!(record.value() instanceof OrderCreated orderCreated)) {
+                    log.warn("Skipping undeserializable record, partition: {}, offset: {}", record.partition(), record.offset());
+                    failed.incrementAndGet();
+                } else if (dispatchedOrderRegistry.isDispatched(orderCreated.getOrderId())) {
+                    skipped.incrementAndGet();
+                } else {
+                    pace();
+                    dispatchService.process(record.partition(), record.key(), orderCreated);
+                    replayed.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelled = true;
+            } catch (Exception e) {
+                log.warn("Replay failed for record, partition: {}, offset: {}", record.partition(), record.offset(), e);
+                failed.incrementAndGet();
+            } finally {
+                processed.incrementAndGet();
+            }
+        }
+
+        /*
+         * Limita la salida a ratePerSecond pedidos por segundo espaciando los envíos de forma uniforme.
+         */
+        private void pace() throws InterruptedException {
+            long waitNanos = pacer.reserve(System.nanoTime());
+            if (waitNanos > 0) {
+                Thread.sleep(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+            }
+        }
+
+        private boolean reachedEnd(Consumer<String, Object> consumer, Map<TopicPartition, Long> end) {
+            return end.entrySet().stream().allMatch(e -> consumer.position(e.getKey()) >= e.getValue());
+        }
+
+        private List<TopicPartition> partitions(Consumer<String, Object> consumer, String topicName) {
+            return consumer.partitionsFor(topicName).stream()
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .toList();
+        }
+
+        private Map<TopicPartition, Long> seekToTimestamp(Consumer<String, Object> consumer, List<TopicPartition> partitions,
+                                                         long timestamp, Map<TopicPartition, Long> end) {
+            Map<TopicPartition, Long> query = new HashMap<>();
+            partitions.forEach(tp -> query.put(tp, timestamp));
+            Map<TopicPartition, OffsetAndTimestamp> found = consumer.offsetsForTimes(query);
+            Map<TopicPartition, Long> start = new HashMap<>();
+            for (TopicPartition tp : partitions) {
+                OffsetAndTimestamp offset = found.get(tp);
+                // Sin mensajes posteriores al timestamp: no hay nada que replayar en esa partición.
+                start.put(tp, offset != null ? offset.offset() : end.get(tp));
+            }
+            start.forEach(consumer::seek);
+            return start;
+        }
+
+        private Map<TopicPartition, Long> seekToOffsets(Consumer<String, Object> consumer, List<TopicPartition> partitions,
+                                                       Map<Integer, Long> offsets, Map<TopicPartition, Long> end) {
+            Map<TopicPartition, Long> start = new HashMap<>();
+            for (TopicPartition tp : partitions) {
+                Long offset = offsets.get(tp.partition());
+                start.put(tp, offset != null ? Math.min(offset, end.get(tp)) : end.get(tp));
+            }
+            start.forEach(consumer::seek);
+            return start;
+        }
+
+        ReplayProgress progress() {
+            long done = processed.get();
+            double elapsedSeconds = Math.max(1L, System.currentTimeMillis() - startedAt) / 1000.0;
+            double rate = done / elapsedSeconds;
+            return ReplayProgress.builder()
+                    .state(state)
+                    .startedAt(startedAt)
+                    .total(total)
+                    .processed(done)
+                    .replayed(replayed.get())
+                    .skipped(skipped.get())
+                    .failed(failed.get())
+                    .recordsPerSecond(rate)
+                    .etaSeconds(rate > 0 ? (long) Math.ceil(Math.max(0L, total - done) / rate) : -1L)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.jesusfc.kafka.service;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Fecha de hoy en formato ISO (la de LocalDate.now().toString()), calculada una vez al día en vez de en cada pedido.
+Solo se recalcula cuando el reloj sale del día guardado, así que el resto de llamadas no crean ningún objeto.
+ */
+final class DailyDateString {
+
+    private final Clock clock;
+    private volatile Day day;
+
+    DailyDateString(Clock clock) {
+        this.clock = clock;
+        this.day = compute();
+    }
+
+    String today() {
+        Day current = day;
+        long now = clock.millis();
+        if (now < current.startMs() || now >= current.endMs()) {
+            current = compute();
+            day = current;
+        }
+        return current.date();
+    }
+
+    private Day compute() {
+        ZoneId zone = clock.getZone();
+        LocalDate today = LocalDate.now(clock);
+        return new Day(today.toString(),
+                today.atStartOfDay(zone).toInstant().toEpochMilli(),
+                today.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+    }
+
+    private record Day(String date, long startMs, long endMs) {
+    }
+}
@@ -0,0 +1,179 @@
+package com.jesusfc.kafka.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jesusfc.kafka.outbox.OutboxJournal;
+import com.jesusfc.kafka.outbox.OutboxRecord;
+import com.jesusfc.kafka.partitioning.OutputPartitioning;
+import com.jesusfc.kafka.ratelimit.OutputRateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.errors.RetriableException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.JacksonUtils;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Punto único de envío de los eventos que produce DispatchService.
+Sin outbox (dispatch.outbox.enabled=false) es un send(...).get() normal, como siempre.
+Con outbox, si el broker va lento o no está, el evento se escribe en el OutboxJournal local en vez de
+bloquear el consumo, y el OutboxDrainer lo re-envía cuando el broker se recupera. Se usa el journal cuando:
+  - ya hay registros pendientes en el journal (para no adelantar eventos nuevos a los antiguos; la comprobación y el
+    append son un único paso del journal, así que un envío directo nunca adelanta a uno que se está escribiendo),
+  - el buffer del productor está casi lleno (métrica buffer-available-bytes), o
+  - el envío no se confirma dentro de dispatch.outbox.latency-threshold o falla con un error reintentable.
+En el caso del timeout el envío original puede acabar llegando igualmente: la entrega es al-menos-una-vez.
+La partición de cada evento la decide OutputPartitioning según la estrategia del topic, antes de enviar o de
+escribir en el journal, para que el OutboxDrainer la respete al re-enviar.
+Cada envío directo pide antes permiso al OutputRateLimiter del topic: no espera, pero por encima del ritmo pausa los
+listeners. Lo que va al journal toma su permiso al salir, en el OutboxDrainer, para no contarlo dos veces.
+ */
+@Slf4j
+@Component
+public class DispatchEventSender {
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxJournal outboxJournal;
+    private final OutputPartitioning partitioning;
+    private final OutputRateLimiter rateLimiter;
+    private final ObjectMapper objectMapper = JacksonUtils.enhancedObjectMapper();
+    private final long latencyThresholdMs;
+    private final long minBufferAvailableBytes;
+
+    private volatile Metric bufferAvailableBytes;
+
+    public DispatchEventSender(KafkaTemplate<String, Object> kafkaTemplate) {
+        this(kafkaTemplate, (OutboxJournal) null, Duration.ofSeconds(2), 0L);
+    }
+
+    @Autowired
+    public DispatchEventSender(KafkaTemplate<String, Object> kafkaTemplate,
+                               ObjectProvider<OutboxJournal> outboxJournal,
+                               OutputPartitioning partitioning,
+                               OutputRateLimiter rateLimiter,
+                               @Value("${dispatch.outbox.latency-threshold:2s}") Duration latencyThreshold,
+                               @Value("${dispatch.outbox.min-buffer-available-bytes:1048576}") long minBufferAvailableBytes) {
+        this(kafkaTemplate, outboxJournal.getIfAvailable(), partitioning, rateLimiter, latencyThreshold, minBufferAvailableBytes);
+    }
+
+    DispatchEventSender(KafkaTemplate<String, Object> kafkaTemplate, OutboxJournal outboxJournal,
+                        Duration latencyThreshold, long minBufferAvailableBytes) {
+        this(kafkaTemplate, outboxJournal, OutputPartitioning.withDefaults(), latencyThreshold, minBufferAvailableBytes);
+    }
+
+    DispatchEventSender(KafkaTemplate<String, Object> kafkaTemplate, OutboxJournal outboxJournal, OutputPartitioning partitioning,
+                        Duration latencyThreshold, long minBufferAvailableBytes) {
+        this(kafkaTemplate, outboxJournal, partitioning, OutputRateLimiter.disabled(), latencyThreshold, minBufferAvailableBytes);
+    }
+
+    DispatchEventSender(KafkaTemplate<String, Object> kafkaTemplate, OutboxJournal outboxJournal, OutputPartitioning partitioning,
+                        OutputRateLimiter rateLimiter, Duration latencyThreshold, long minBufferAvailableBytes) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.outboxJournal = outboxJournal;
+        this.partitioning = partitioning;
+        this.rateLimiter = rateLimiter;
+        this.latencyThresholdMs = latencyThreshold.toMillis();
+        this.minBufferAvailableBytes = minBufferAvailableBytes;
+    }
+
+    public void send(String topic, String key, Object event) throws ExecutionException, InterruptedException {
+        send(topic, null, key, event);
+    }
+
+    /**
+     * Sends the event and waits for the broker acknowledgement, or journals it when the outbox is enabled and the broker cannot keep up.
+     * The output partition is chosen by the topic partitioning strategy; {@code inputPartition} is the one the order was consumed from.
+     */
+    public void send(String topic, Integer inputPartition, String key, Object event) throws ExecutionException, InterruptedException {
+        Integer partition = partitioning.partition(topic, inputPartition, key);
+        if (outboxJournal == null) {
+            rateLimiter.acquire(topic);
+            partitioning.recordSent(topic, partition, doSend(topic, partition, key, event).get());
+            return;
+        }
+        if (outboxJournal.appendIfPending(() -> outboxRecord(topic, partition, key, event))) {
+            return;
+        }
+        if (producerBufferExhausted()) {
+            journal(topic, partition, key, event);
+            return;
+        }
+        rateLimiter.acquire(topic);
+        try {
+            partitioning.recordSent(topic, partition, doSend(topic, partition, key, event).get(latencyThresholdMs, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            log.warn("Send to {} not acknowledged within {} ms, writing it to the outbox journal", topic, latencyThresholdMs);
+            journal(topic, partition, key, event);
+        } catch (ExecutionException e) {
+            if (!isRetriable(e)) {
+                throw e;
+            }
+            log.warn("Send to {} failed with a retriable error, writing it to the outbox journal: {}", topic, e.getMessage());
+            journal(topic, partition, key, event);
+        } catch (RuntimeException e) {
+            // KafkaProducer.send() puede lanzar directamente, p.ej. si no obtiene metadata en max.block.ms.
+            if (!isRetriable(e)) {
+                throw e;
+            }
+            log.warn("Send to {} rejected with a retriable error, writing it to the outbox journal: {}", topic, e.getMessage());
+            journal(topic, partition, key, event);
+        }
+    }
+
+    private CompletableFuture<SendResult<String, Object>> doSend(String topic, Integer partition, String key, Object event) {
+        // Sin partición usamos la variante de 3 argumentos: la partición la decide el partitioner del productor.
+        return partition == null
+                ? kafkaTemplate.send(topic, key, event)
+                : kafkaTemplate.send(topic, partition, key, event);
+    }
+
+    private void journal(String topic, Integer partition, String key, Object event) {
+        outboxJournal.append(outboxRecord(topic, partition, key, event));
+    }
+
+    private OutboxRecord outboxRecord(String topic, Integer partition, String key, Object event) {
+        try {
+            return new OutboxRecord(topic, partition, key, event.getClass().getName(), objectMapper.writeValueAsBytes(event));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Event cannot be serialized to the outbox journal: " + event, e);
+        }
+    }
+
+    private boolean producerBufferExhausted() {
+        if (minBufferAvailableBytes <= 0) {
+            return false;
+        }
+        Metric metric = bufferAvailableBytes;
+        if (metric == null) {
+            metric = kafkaTemplate.metrics().entrySet().stream()
+                    .filter(e -> e.getKey().name().equals("buffer-available-bytes") && e.getKey().group().equals("producer-metrics"))
+                    .map(Map.Entry::getValue)
+                    .findFirst()
+                    .orElse(null);
+            bufferAvailableBytes = metric;
+        }
+        return metric != null && metric.metricValue() instanceof Number available && available.longValue() < minBufferAvailableBytes;
+    }
+
+    private static boolean isRetriable(Exception e) {
+        Throwable cause = NestedExceptionUtils.getMostSpecificCause(e);
+        return cause instanceof RetriableException;
+    }
+}
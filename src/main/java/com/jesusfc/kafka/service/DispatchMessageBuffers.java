@@ -0,0 +1,86 @@
+package com.jesusfc.kafka.service;
+
+import com.jesusfc.kafka.message.DispatchCompleted;
+import com.jesusfc.kafka.message.DispatchPreparing;
+import com.jesusfc.kafka.message.OrderDispatched;
+import com.jesusfc.kafka.message.OrderLine;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Mensajes y textos reutilizables por hilo para DispatchService.dispatch, para no crear objetos por pedido.
+Reutilizar los mensajes es seguro porque DispatchEventSender no devuelve el control hasta que el evento ya se ha
+serializado (el productor de Kafka serializa dentro de send(), y el outbox también serializa al escribir).
+Los textos "<item> - dispatched" y "Dispatched: <item>" se construyen en un StringBuilder reutilizado y se guardan
+en una pequeña caché de acceso directo por artículo: los artículos repetidos (la mayoría) no crean ningún String.
+ */
+final class DispatchMessageBuffers {
+
+    private static final ThreadLocal<DispatchMessageBuffers> BUFFERS = ThreadLocal.withInitial(DispatchMessageBuffers::new);
+    private static final int ITEM_CACHE_SIZE = 256;
+
+    private final DispatchPreparing dispatchPreparing = new DispatchPreparing();
+    private final OrderDispatched orderDispatched = new OrderDispatched();
+    private final DispatchCompleted dispatchCompleted = new DispatchCompleted();
+
+    private final StringBuilder text = new StringBuilder(64);
+    private final String[] items = new String[ITEM_CACHE_SIZE];
+    private final String[] dispatchedItems = new String[ITEM_CACHE_SIZE];
+    private final String[] notes = new String[ITEM_CACHE_SIZE];
+
+    private DispatchMessageBuffers() {
+    }
+
+    static DispatchMessageBuffers current() {
+        return BUFFERS.get();
+    }
+
+    DispatchPreparing dispatchPreparing(UUID orderId) {
+        dispatchPreparing.setOrderId(orderId);
+        return dispatchPreparing;
+    }
+
+    OrderDispatched orderDispatched(UUID orderId, String item, UUID processedBy) {
+        int slot = slot(item);
+        orderDispatched.setOrderId(orderId);
+        orderDispatched.setProcessedBy(processedBy);
+        orderDispatched.setItem(dispatchedItems[slot]);
+        orderDispatched.setNotes(notes[slot]);
+        orderDispatched.setLines(null);
+        return orderDispatched;
+    }
+
+    // Pedidos con varias líneas: no es el camino caliente, aquí sí se crea el texto.
+    OrderDispatched orderDispatched(UUID orderId, List<OrderLine> lines, UUID processedBy) {
+        orderDispatched.setOrderId(orderId);
+        orderDispatched.setProcessedBy(processedBy);
+        orderDispatched.setItem(null);
+        orderDispatched.setNotes("Dispatched: " + lines.size() + " lines");
+        orderDispatched.setLines(lines);
+        return orderDispatched;
+    }
+
+    DispatchCompleted dispatchCompleted(UUID orderId, String dispatchedDate) {
+        dispatchCompleted.setOrderId(orderId);
+        dispatchCompleted.setDispatchedDate(dispatchedDate);
+        return dispatchCompleted;
+    }
+
+    private int slot(String item) {
+        int slot = item == null ? 0 : item.hashCode() & (ITEM_CACHE_SIZE - 1);
+        if (item == null || !item.equals(items[slot])) {
+            text.setLength(0);
+            dispatchedItems[slot] = text.append(item).append(" - dispatched").toString();
+            text.setLength(0);
+            notes[slot] = text.append("Dispatched: ").append(item).toString();
+            items[slot] = item;
+        }
+        return slot;
+    }
+}
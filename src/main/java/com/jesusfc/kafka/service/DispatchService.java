@@ -1,19 +1,25 @@
 package com.jesusfc.kafka.service;
 
 import com.jesusfc.kafka.client.StockServiceClient;
-import com.jesusfc.kafka.message.DispatchCompleted;
-import com.jesusfc.kafka.message.DispatchPreparing;
+import com.jesusfc.kafka.logging.DispatchEventLog;
+import com.jesusfc.kafka.message.DeferredOrder;
 import com.jesusfc.kafka.message.OrderCreated;
 import com.jesusfc.kafka.message.OrderDispatched;
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
+import com.jesusfc.kafka.message.OrderLine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDate;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 
+import static com.jesusfc.kafka.logging.DispatchEventType.ORDER_DEFERRED;
+import static com.jesusfc.kafka.logging.DispatchEventType.ORDER_DISPATCHED;
 import static java.util.UUID.randomUUID;
 
 /**
@@ -21,20 +27,53 @@ import static java.util.UUID.randomUUID;
  * jesus.fdez.caraballo@gmail.com
  * Created on jun - 2025
  */
-@Slf4j
-@RequiredArgsConstructor
+/*
+Pedidos con varias líneas (OrderCreated.lines): el stock de todas las líneas se consulta de una vez
+(StockServiceClient.checkAvailability(Collection): bulk o en paralelo) y el pedido se despacha entero, con un único
+DispatchPreparing, OrderDispatched y DispatchCompleted por pedido en vez de por línea. Si falta stock de alguna línea:
+  - todo o nada (por defecto): se aparca el pedido entero;
+  - parcial (OrderCreated.partialDispatch o dispatch.orders.partial-dispatch): se despachan ya las líneas con stock
+    y se aparca un pedido con las que faltan, que sale en otro OrderDispatched cuando el DeferredOrderScheduler las encuentra.
+Los pedidos de un solo artículo siguen exactamente el camino de siempre.
+ */
 @Service
 public class DispatchService {
 
     // Topic donde se envían los eventos de tracking del dispatch. Hacemos un seguimiento de los eventos de dispatch.
     private static final String DISPATCH_TRACKING_TOPIC = "dispatch.tracking";
 
-    private static final String ORDER_DISPATCHED_TOPIC = "my.order.dispatched.topic";
-    private final KafkaTemplate<String, Object> kafkaProducer;
+    public static final String ORDER_DISPATCHED_TOPIC = "my.order.dispatched.topic";
+
+    // Topic donde se aparcan los pedidos sin stock hasta que el DeferredOrderScheduler los vuelve a comprobar.
+    public static final String DEFERRED_ORDER_TOPIC = "my.order.deferred.topic";
+    private final DispatchEventSender kafkaProducer;
     private final StockServiceClient stockServiceClient;
+    private final DispatchedOrderRegistry dispatchedOrderRegistry;
+    private final DispatchEventLog eventLog;
+    private final DailyDateString dispatchedDate = new DailyDateString(Clock.systemDefaultZone());
+    private final boolean partialDispatchByDefault;
+    // Tiempo de servicio por record (consulta de stock + envíos), para el AutoscalingAdvisor.
+    private final LongAdder processedRecords = new LongAdder();
+    private final LongAdder serviceTimeNanos = new LongAdder();
 
     private static final UUID APPLICATION_ID = randomUUID();
 
+    public DispatchService(DispatchEventSender kafkaProducer, StockServiceClient stockServiceClient,
+                           DispatchedOrderRegistry dispatchedOrderRegistry, DispatchEventLog eventLog) {
+        this(kafkaProducer, stockServiceClient, dispatchedOrderRegistry, eventLog, false);
+    }
+
+    @Autowired
+    public DispatchService(DispatchEventSender kafkaProducer, StockServiceClient stockServiceClient,
+                           DispatchedOrderRegistry dispatchedOrderRegistry, DispatchEventLog eventLog,
+                           @Value("${dispatch.orders.partial-dispatch:false}") boolean partialDispatchByDefault) {
+        this.kafkaProducer = kafkaProducer;
+        this.stockServiceClient = stockServiceClient;
+        this.dispatchedOrderRegistry = dispatchedOrderRegistry;
+        this.eventLog = eventLog;
+        this.partialDispatchByDefault = partialDispatchByDefault;
+    }
+
 
     /**
      * Desde la consola de Kafka "Producer" enviamos un mensaje JSON al topic "my.order.created.topic",
@@ -60,43 +99,168 @@ public class DispatchService {
      *
      */
     public void process(Integer partition, String key, OrderCreated orderCreated) throws ExecutionException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            if (orderCreated.hasLines()) {
+                dispatchOrDefer(partition, key, orderCreated, lineAvailability(orderCreated));
+                return;
+            }
+            dispatchOrDefer(partition, key, orderCreated, isAvailable(orderCreated));
+        } finally {
+            recordServiceTime(System.nanoTime() - start);
+        }
+    }
 
+    /**
+     * Adds the time spent on one record. The staged pipeline calls it with the time of its bottleneck stage.
+     */
+    public void recordServiceTime(long nanos) {
+        processedRecords.increment();
+        serviceTimeNanos.add(nanos);
+    }
+
+    /**
+     * Records processed since startup.
+     */
+    public long processedRecords() {
+        return processedRecords.sum();
+    }
+
+    /**
+     * Total time spent processing records since startup, in nanoseconds.
+     */
+    public long serviceTimeNanos() {
+        return serviceTimeNanos.sum();
+    }
+
+    /**
+     * Consulta al servicio de stock si el artículo del pedido está disponible.
+     * El pipeline por etapas (dispatch.pipeline.enabled) lo llama desde su etapa de disponibilidad.
+     * En un pedido con varias líneas, si lo están todas.
+     */
+    public boolean isAvailable(OrderCreated orderCreated) {
+        if (orderCreated.hasLines()) {
+            return !lineAvailability(orderCreated).containsValue(false);
+        }
         // Check stock availability
         String available = stockServiceClient.checkAvailability(orderCreated.getItem());
 
         // Check if is a boolean param and true
-        if (Boolean.parseBoolean(available)) {
+        return Boolean.parseBoolean(available);
+    }
+
+    /**
+     * Disponibilidad de cada artículo del pedido, consultados todos a la vez (bulk o en paralelo).
+     */
+    public Map<String, Boolean> lineAvailability(OrderCreated orderCreated) {
+        return stockServiceClient.checkAvailability(orderCreated.items());
+    }
+
+    /**
+     * Despacha lo que permite la disponibilidad de cada artículo o aparca lo que falta (ver dispatchAvailable).
+     */
+    public void dispatchOrDefer(Integer partition, String key, OrderCreated orderCreated, Map<String, Boolean> availability) throws ExecutionException, InterruptedException {
+        OrderCreated pending = dispatchAvailable(partition, key, orderCreated, availability);
+        if (pending != null) {
+            eventLog.log(ORDER_DEFERRED, "orderId", orderCreated.getOrderId(), "lines", pending.items().size(), "partition", partition, "key", key);
+            defer(key, DeferredOrder.builder()
+                    .order(pending)
+                    .partition(partition)
+                    .attempt(1)
+                    .firstDeferredAt(System.currentTimeMillis())
+                    .build());
+        }
+    }
 
-            // Enviamos un mensaje al topic "dispatch.tracking" para hacer un seguimiento del estado del dispatch.
-            DispatchPreparing dispatchPreparing = DispatchPreparing.builder()
-                    .orderId(orderCreated.getOrderId())
-                    .build();
-            kafkaProducer.send(DISPATCH_TRACKING_TOPIC, key, dispatchPreparing).get();
+    /**
+     * Despacha el pedido si todos sus artículos tienen stock o, si el pedido admite envío parcial, las líneas que
+     * lo tienen. Devuelve el pedido con lo que queda por despachar, o null si ya no queda nada.
+     */
+    public OrderCreated dispatchAvailable(Integer partition, String key, OrderCreated orderCreated, Map<String, Boolean> availability) throws ExecutionException, InterruptedException {
+        if (!orderCreated.hasLines()) {
+            if (Boolean.TRUE.equals(availability.get(orderCreated.getItem()))) {
+                dispatch(partition, key, orderCreated);
+                return null;
+            }
+            return orderCreated;
+        }
+        List<OrderLine> available = new ArrayList<>();
+        List<OrderLine> missing = new ArrayList<>();
+        for (OrderLine line : orderCreated.getLines()) {
+            (Boolean.TRUE.equals(availability.get(line.getItem())) ? available : missing).add(line);
+        }
+        if (missing.isEmpty()) {
+            dispatch(partition, key, orderCreated);
+            return null;
+        }
+        boolean partial = orderCreated.getPartialDispatch() != null ? orderCreated.getPartialDispatch() : partialDispatchByDefault;
+        if (!partial || available.isEmpty()) {
+            return orderCreated;
+        }
+        // El pedido aún no está despachado del todo: no se marca hasta que salgan las líneas que faltan.
+        send(partition, key, withLines(orderCreated, available));
+        return withLines(orderCreated, missing);
+    }
 
-            OrderDispatched orderDispatched = OrderDispatched.builder()
-                    .orderId(orderCreated.getOrderId())
-                    .processedBy(APPLICATION_ID)
-                    .item(orderCreated.getItem() + " - dispatched")
-                    .notes("Dispatched: " + orderCreated.getItem())
-                    .build();
+    /**
+     * Despacha el pedido si hay stock o lo aparca para volver a comprobarlo más tarde.
+     */
+    public void dispatchOrDefer(Integer partition, String key, OrderCreated orderCreated, boolean available) throws ExecutionException, InterruptedException {
+        if (available) {
+            dispatch(partition, key, orderCreated);
+        } else {
+            eventLog.log(ORDER_DEFERRED, "orderId", orderCreated.getOrderId(), "item", orderCreated.getItem(), "partition", partition, "key", key);
+            defer(key, DeferredOrder.builder()
+                    .order(orderCreated)
+                    .partition(partition)
+                    .attempt(1)
+                    .firstDeferredAt(System.currentTimeMillis())
+                    .build());
+        }
+    }
 
-            log.info("Processing orderDispatched (send to another topic): {}", orderDispatched);
+    /**
+     * Envía los eventos de tracking y el OrderDispatched de un pedido cuyo stock ya se ha confirmado.
+     * Los mensajes se reutilizan por hilo (DispatchMessageBuffers) para no crear objetos por pedido.
+     */
+    public void dispatch(Integer partition, String key, OrderCreated orderCreated) throws ExecutionException, InterruptedException {
+        send(partition, key, orderCreated);
+        dispatchedOrderRegistry.markDispatched(orderCreated.getOrderId());
+    }
 
-            // Enviamos el mensaje al topic "my.order.dispatched.topic"
-            kafkaProducer.send(ORDER_DISPATCHED_TOPIC, partition, key, orderDispatched).get();
+    private void send(Integer partition, String key, OrderCreated orderCreated) throws ExecutionException, InterruptedException {
+        DispatchMessageBuffers buffers = DispatchMessageBuffers.current();
 
-            // Enviamos un mensaje al topic "dispatch.tracking" para hacer un seguimiento del estado del dispatch.
-            DispatchCompleted dispatchCompleted = DispatchCompleted.builder()
-                    .orderId(orderCreated.getOrderId())
-                    .dispatchedDate(LocalDate.now().toString())
-                    .build();
-            kafkaProducer.send(DISPATCH_TRACKING_TOPIC, key, dispatchCompleted).get();
+        // Enviamos un mensaje al topic "dispatch.tracking" para hacer un seguimiento del estado del dispatch.
+        kafkaProducer.send(DISPATCH_TRACKING_TOPIC, partition, key, buffers.dispatchPreparing(orderCreated.getOrderId()));
 
-            log.info("Send Message: orderId: {} - processedById: {}, partition: {}, key: {}", orderDispatched.getOrderId(), APPLICATION_ID, partition, key);
+        OrderDispatched orderDispatched = orderCreated.hasLines()
+                ? buffers.orderDispatched(orderCreated.getOrderId(), orderCreated.getLines(), APPLICATION_ID)
+                : buffers.orderDispatched(orderCreated.getOrderId(), orderCreated.getItem(), APPLICATION_ID);
 
-        } else {
-            log.info("Item {} is unavailable.", orderCreated.getItem());
-        }
+        // Enviamos el mensaje al topic "my.order.dispatched.topic"
+        kafkaProducer.send(ORDER_DISPATCHED_TOPIC, partition, key, orderDispatched);
+
+        // Enviamos un mensaje al topic "dispatch.tracking" para hacer un seguimiento del estado del dispatch.
+        kafkaProducer.send(DISPATCH_TRACKING_TOPIC, partition, key, buffers.dispatchCompleted(orderCreated.getOrderId(), dispatchedDate.today()));
+
+        eventLog.log(ORDER_DISPATCHED, "orderId", orderCreated.getOrderId(), "item", orderCreated.getItem(), "partition", partition, "key", key);
+    }
+
+    private static OrderCreated withLines(OrderCreated orderCreated, List<OrderLine> lines) {
+        return OrderCreated.builder()
+                .orderId(orderCreated.getOrderId())
+                .priority(orderCreated.getPriority())
+                .partialDispatch(orderCreated.getPartialDispatch())
+                .lines(List.copyOf(lines))
+                .build();
+    }
+
+    /**
+     * Aparca un pedido sin stock en el topic "my.order.deferred.topic" en lugar de descartarlo.
+     */
+    public void defer(String key, DeferredOrder deferredOrder) throws ExecutionException, InterruptedException {
+        kafkaProducer.send(DEFERRED_ORDER_TOPIC, deferredOrder.getPartition(), key, deferredOrder);
     }
 
 }
@@ -0,0 +1,88 @@
+package com.jesusfc.kafka.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Registro en memoria de los pedidos ya despachados por esta instancia (orderId -> epoch millis del dispatch).
+Lo alimenta DispatchService y lo consulta el modo replay para no volver a despachar pedidos.
+Está acotado por número de entradas (se expulsan las más antiguas en orden de inserción) y por TTL.
+ */
+@Component
+public class DispatchedOrderRegistry {
+
+    private final Map<UUID, Long> dispatched = new ConcurrentHashMap<>();
+    private final Queue<UUID> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final int maxEntries;
+    private final long ttlMs;
+
+    public DispatchedOrderRegistry(@Value("${dispatch.dedup.max-entries:1000000}") int maxEntries,
+                                   @Value("${dispatch.dedup.ttl:7d}") Duration ttl) {
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttl.toMillis();
+    }
+
+    public void markDispatched(UUID orderId) {
+        markDispatched(orderId, System.currentTimeMillis());
+    }
+
+    public void markDispatched(UUID orderId, long dispatchedAt) {
+        if (orderId == null) {
+            return;
+        }
+        if (dispatched.put(orderId, dispatchedAt) == null) {
+            insertionOrder.add(orderId);
+            while (dispatched.size() > maxEntries) {
+                UUID eldest = insertionOrder.poll();
+                if (eldest == null) {
+                    break;
+                }
+                dispatched.remove(eldest);
+            }
+        }
+    }
+
+    /**
+     * Restores an entry saved in a snapshot. Entries older than the TTL are ignored.
+     *
+     * @return true if the entry was restored.
+     */
+    public boolean restore(UUID orderId, long dispatchedAt) {
+        if (System.currentTimeMillis() - dispatchedAt > ttlMs) {
+            return false;
+        }
+        markDispatched(orderId, dispatchedAt);
+        return true;
+    }
+
+    /**
+     * Copy of the current entries (orderId -> dispatched epoch millis), for the warm-restart snapshot.
+     */
+    public Map<UUID, Long> entries() {
+        return Map.copyOf(dispatched);
+    }
+
+    public boolean isDispatched(UUID orderId) {
+        if (orderId == null) {
+            return false;
+        }
+        Long dispatchedAt = dispatched.get(orderId);
+        return dispatchedAt != null && System.currentTimeMillis() - dispatchedAt <= ttlMs;
+    }
+
+    public int size() {
+        return dispatched.size();
+    }
+}
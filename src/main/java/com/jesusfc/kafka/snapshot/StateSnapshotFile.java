@@ -0,0 +1,187 @@
+package com.jesusfc.kafka.snapshot;
+
+import com.jesusfc.kafka.client.AvailabilityCache.CachedAvailability;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.zip.CRC32C;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Formato binario compacto del snapshot de arranque en caliente, leído y escrito con ficheros mapeados en memoria.
+Cabecera (32 bytes):
+    [int magic "DSNP"][short versión][short reservado][long creado en epoch millis]
+    [int nº disponibilidades][int nº pedidos despachados][int longitud del cuerpo][int crc32c del cuerpo]
+Cuerpo:
+    disponibilidades: [short len][item utf8][short len][disponibilidad utf8][long expira en epoch millis]
+                      (len sin signo: hasta 65535 bytes; una entrada más larga no se guarda y se vuelve a
+                      consultar al stock tras el arranque, en vez de invalidar el snapshot entero)
+    despachados:      [long msb][long lsb][long despachado en epoch millis]
+Se escribe en un fichero temporal que luego se renombra de forma atómica, así que un snapshot nunca queda a medias.
+Un snapshot con otra versión, otro magic o CRC incorrecto se ignora y se arranca en frío.
+ */
+@Slf4j
+public final class StateSnapshotFile {
+
+    static final int MAGIC = 0x44534E50;
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    private static final int DISPATCHED_ENTRY_BYTES = 24;
+    static final int MAX_STRING_BYTES = 0xFFFF;
+
+    private StateSnapshotFile() {
+    }
+
+    public record LoadResult(boolean loaded, long createdAt, int availabilityLoaded, int dispatchedLoaded,
+                             int expired, boolean budgetExceeded) {
+
+        static LoadResult cold() {
+            return new LoadResult(false, 0L, 0, 0, 0, false);
+        }
+    }
+
+    public static void write(Path path, List<CachedAvailability> availability, Map<UUID, Long> dispatched, long now) throws IOException {
+        byte[][] items = new byte[availability.size()][];
+        byte[][] values = new byte[availability.size()][];
+        int bodyBytes = dispatched.size() * DISPATCHED_ENTRY_BYTES;
+        int availabilityCount = 0;
+        for (int i = 0; i < availability.size(); i++) {
+            byte[] item = availability.get(i).item().getBytes(StandardCharsets.UTF_8);
+            byte[] value = availability.get(i).availability().getBytes(StandardCharsets.UTF_8);
+            if (item.length > MAX_STRING_BYTES || value.length > MAX_STRING_BYTES) {
+                continue;
+            }
+            items[i] = item;
+            values[i] = value;
+            availabilityCount++;
+            bodyBytes += 2 + item.length + 2 + value.length + 8;
+        }
+        if (availabilityCount < availability.size()) {
+            log.warn("{} availability entries longer than {} bytes left out of snapshot {}",
+                    availability.size() - availabilityCount, MAX_STRING_BYTES, path);
+        }
+
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = parent.resolve(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + bodyBytes);
+            buffer.position(HEADER_BYTES);
+            for (int i = 0; i < availability.size(); i++) {
+                if (items[i] == null) {
+                    continue;
+                }
+                buffer.putShort((short) items[i].length).put(items[i]);
+                buffer.putShort((short) values[i].length).put(values[i]);
+                buffer.putLong(availability.get(i).expiresAt());
+            }
+            dispatched.forEach((orderId, dispatchedAt) -> buffer
+                    .putLong(orderId.getMostSignificantBits())
+                    .putLong(orderId.getLeastSignificantBits())
+                    .putLong(dispatchedAt));
+
+            buffer.putInt(0, MAGIC)
+                    .putShort(4, VERSION)
+                    .putShort(6, (short) 0)
+                    .putLong(8, now)
+                    .putInt(16, availabilityCount)
+                    .putInt(20, dispatched.size())
+                    .putInt(24, bodyBytes)
+                    .putInt(28, crc(buffer.slice(HEADER_BYTES, bodyBytes)));
+            buffer.force();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads the snapshot into the given sinks, which return false for entries they discard as expired.
+     * Stops early, keeping what was already loaded, once the deadline (System.nanoTime) is reached.
+     */
+    public static LoadResult load(Path path, Predicate<CachedAvailability> availabilitySink,
+                                  BiPredicate<UUID, Long> dispatchedSink, long deadlineNanos) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return LoadResult.cold();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                log.warn("Snapshot {} is truncated, starting cold", path);
+                return LoadResult.cold();
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int magic = buffer.getInt(0);
+            short version = buffer.getShort(4);
+            if (magic != MAGIC || version != VERSION) {
+                log.warn("Snapshot {} has magic {} and version {}, expected version {}; starting cold", path, Integer.toHexString(magic), version, VERSION);
+                return LoadResult.cold();
+            }
+            long createdAt = buffer.getLong(8);
+            int availabilityCount = buffer.getInt(16);
+            int dispatchedCount = buffer.getInt(20);
+            int bodyBytes = buffer.getInt(24);
+            if (bodyBytes < 0 || HEADER_BYTES + (long) bodyBytes > channel.size()
+                    || crc(buffer.slice(HEADER_BYTES, bodyBytes)) != buffer.getInt(28)) {
+                log.warn("Snapshot {} is corrupt, starting cold", path);
+                return LoadResult.cold();
+            }
+
+            int availabilityLoaded = 0;
+            int dispatchedLoaded = 0;
+            int expired = 0;
+            buffer.position(HEADER_BYTES);
+            for (int i = 0; i < availabilityCount; i++) {
+                if ((i & 1023) == 0 && System.nanoTime() >= deadlineNanos) {
+                    return new LoadResult(true, createdAt, availabilityLoaded, dispatchedLoaded, expired, true);
+                }
+                String item = readString(buffer);
+                String availability = readString(buffer);
+                if (availabilitySink.test(new CachedAvailability(item, availability, buffer.getLong()))) {
+                    availabilityLoaded++;
+                } else {
+                    expired++;
+                }
+            }
+            for (int i = 0; i < dispatchedCount; i++) {
+                if ((i & 1023) == 0 && System.nanoTime() >= deadlineNanos) {
+                    return new LoadResult(true, createdAt, availabilityLoaded, dispatchedLoaded, expired, true);
+                }
+                UUID orderId = new UUID(buffer.getLong(), buffer.getLong());
+                if (dispatchedSink.test(orderId, buffer.getLong())) {
+                    dispatchedLoaded++;
+                } else {
+                    expired++;
+                }
+            }
+            return new LoadResult(true, createdAt, availabilityLoaded, dispatchedLoaded, expired, false);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int crc(ByteBuffer body) {
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,145 @@
+package com.jesusfc.kafka.snapshot;
+
+import com.jesusfc.kafka.client.AvailabilityCache;
+import com.jesusfc.kafka.service.DispatchedOrderRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Arranque en caliente: guarda periódicamente en disco la caché de disponibilidad y el registro de pedidos
+despachados, y los recarga al arrancar ANTES de que empiecen los listeners de Kafka (su fase es menor que la de
+los contenedores), así que orderConsumerClient ya ve la caché caliente en el primer poll.
+La carga tiene un presupuesto de tiempo (dispatch.snapshot.load-budget): si se agota, se arranca con lo cargado.
+Las entradas caducadas mientras el servicio estaba parado se descartan al cargar.
+Al parar se escribe un último snapshot, después de que los listeners se hayan detenido y de que termine la escritura
+periódica que pudiera estar en curso: las dos comparten el fichero temporal, así que nunca se solapan (write() es
+synchronized) y la periódica no se interrumpe a mitad de la E/S del FileChannel.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "dispatch.snapshot", name = "enabled", havingValue = "true")
+public class WarmRestartSnapshotter implements SmartLifecycle {
+
+    private final AvailabilityCache availabilityCache;
+    private final DispatchedOrderRegistry dispatchedOrderRegistry;
+    private final Path file;
+    private final Duration interval;
+    private final Duration loadBudget;
+    private final Timer warmTimer;
+    private final Timer writeTimer;
+    private final Counter restoredEntries;
+    private final Counter expiredEntries;
+
+    private volatile boolean running;
+    private ScheduledExecutorService executor;
+
+    public WarmRestartSnapshotter(AvailabilityCache availabilityCache,
+                                  DispatchedOrderRegistry dispatchedOrderRegistry,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${dispatch.snapshot.file:./snapshot/dispatch-state.snap}") Path file,
+                                  @Value("${dispatch.snapshot.interval:30s}") Duration interval,
+                                  @Value("${dispatch.snapshot.load-budget:2s}") Duration loadBudget) {
+        this.availabilityCache = availabilityCache;
+        this.dispatchedOrderRegistry = dispatchedOrderRegistry;
+        this.file = file;
+        this.interval = interval;
+        this.loadBudget = loadBudget;
+        this.warmTimer = Timer.builder("dispatch.snapshot.warm.time")
+                .description("Time to load the warm-restart snapshot before the listeners start")
+                .register(meterRegistry);
+        this.writeTimer = Timer.builder("dispatch.snapshot.write.time").register(meterRegistry);
+        this.restoredEntries = Counter.builder("dispatch.snapshot.restored.entries").register(meterRegistry);
+        this.expiredEntries = Counter.builder("dispatch.snapshot.expired.entries").register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        load();
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "warm-restart-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::write, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    log.warn("Periodic snapshot of {} still running after 5 s, the final one waits for it", file);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        write();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Antes que los contenedores de Kafka al arrancar, y después de ellos al parar.
+        return AbstractMessageListenerContainer.DEFAULT_PHASE - 100;
+    }
+
+    void load() {
+        long start = System.nanoTime();
+        try {
+            StateSnapshotFile.LoadResult result = StateSnapshotFile.load(file, availabilityCache::restore,
+                    dispatchedOrderRegistry::restore, start + loadBudget.toNanos());
+            long elapsed = System.nanoTime() - start;
+            warmTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            if (!result.loaded()) {
+                log.info("No usable snapshot at {}, starting cold", file);
+                return;
+            }
+            restoredEntries.increment(result.availabilityLoaded() + result.dispatchedLoaded());
+            expiredEntries.increment(result.expired());
+            log.info("Warm restart from snapshot taken {} ms ago: {} availability entries, {} dispatched orders, {} expired, in {} ms{}",
+                    System.currentTimeMillis() - result.createdAt(), result.availabilityLoaded(), result.dispatchedLoaded(),
+                    result.expired(), TimeUnit.NANOSECONDS.toMillis(elapsed),
+                    result.budgetExceeded() ? " (load budget of " + loadBudget.toMillis() + " ms exceeded, partially loaded)" : "");
+        } catch (Exception e) {
+            warmTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.warn("Could not load snapshot {}, starting cold", file, e);
+        }
+    }
+
+    synchronized void write() {
+        try {
+            writeTimer.recordCallable(() -> {
+                StateSnapshotFile.write(file, availabilityCache.entries(), dispatchedOrderRegistry.entries(), System.currentTimeMillis());
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Could not write snapshot {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.jesusfc.kafka.autoscaling;
+
+import com.jesusfc.kafka.client.StockServiceClient;
+import com.jesusfc.kafka.logging.DispatchEventLog;
+import com.jesusfc.kafka.service.DispatchEventSender;
+import com.jesusfc.kafka.service.DispatchService;
+import com.jesusfc.kafka.service.DispatchedOrderRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+class AutoscalingAdvisorTest {
+
+    private static final Duration DRAIN_TARGET = Duration.ofSeconds(60);
+
+    private final Deque<GroupSnapshot> snapshots = new ArrayDeque<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private DispatchService dispatchService;
+    private AutoscalingAdvisor advisor;
+
+    @BeforeEach
+    void setUp() {
+        dispatchService = new DispatchService(mock(DispatchEventSender.class), mock(StockServiceClient.class),
+                mock(DispatchedOrderRegistry.class), mock(DispatchEventLog.class));
+        advisor = new AutoscalingAdvisor(snapshots::poll, dispatchService, meterRegistry, DRAIN_TARGET, () -> ConsumersPerInstance.fixed(1), 1.0, 1,
+                Duration.ofSeconds(10));
+    }
+
+    @Test
+    void recommend_CoversArrivalPlusLagOverTheDrainTarget() {
+        // 10 ms por record: 100 records/s por instancia. Llegan 250/s y hay 6000 de lag a vaciar en 60 s: 350/s.
+        AutoscalingRecommendation recommendation = AutoscalingAdvisor.recommend(new GroupSnapshot(12, 0, 6_000, 2),
+                250, 0.010, DRAIN_TARGET, ConsumersPerInstance.fixed(1), 1.0, 1);
+
+        assertThat(recommendation.requiredRatePerSecond()).isEqualTo(350.0, within(1e-9));
+        assertThat(recommendation.recommendedInstances()).isEqualTo(4);
+        assertThat(recommendation.currentInstances()).isEqualTo(2);
+        assertThat(recommendation.limitedBy()).isEqualTo("demand");
+    }
+
+    @Test
+    void recommend_IsCappedAtThePartitionCountAndKeepsTheMinimum() {
+        AutoscalingRecommendation overloaded = AutoscalingAdvisor.recommend(new GroupSnapshot(6, 0, 1_000_000, 6),
+                1_000, 0.010, DRAIN_TARGET, ConsumersPerInstance.fixed(1), 0.8, 1);
+        AutoscalingRecommendation idle = AutoscalingAdvisor.recommend(new GroupSnapshot(6, 0, 0, 3),
+                0, 0.010, DRAIN_TARGET, ConsumersPerInstance.fixed(1), 0.8, 2);
+        // Con 3 consumidores por instancia, 6 particiones solo dan trabajo a 2 instancias.
+        AutoscalingRecommendation concurrent = AutoscalingAdvisor.recommend(new GroupSnapshot(6, 0, 1_000_000, 6),
+                1_000, 0.010, DRAIN_TARGET, ConsumersPerInstance.fixed(3), 0.8, 1);
+
+        assertThat(overloaded.recommendedInstances()).isEqualTo(6);
+        assertThat(overloaded.limitedBy()).isEqualTo("partitions");
+        assertThat(idle.recommendedInstances()).isEqualTo(2);
+        assertThat(idle.limitedBy()).isEqualTo("min-instances");
+        assertThat(concurrent.recommendedInstances()).isEqualTo(2);
+        assertThat(concurrent.currentInstances()).isEqualTo(2);
+    }
+
+    @Test
+    void recommend_CountsTheProcessingConsumersForCapacity() {
+        // Carriles: un consumidor de entrada por instancia que re-publica y 3 + 4 que procesan, a 10 ms cada uno.
+        ConsumersPerInstance lanes = new ConsumersPerInstance(1, 7);
+        AutoscalingRecommendation recommendation = AutoscalingAdvisor.recommend(new GroupSnapshot(12, 0, 6_000, 2),
+                1_300, 0.010, DRAIN_TARGET, lanes, 1.0, 1);
+
+        assertThat(recommendation.capacityPerInstance()).isEqualTo(700.0, within(1e-9));
+        assertThat(recommendation.consumersPerInstance()).isEqualTo(7);
+        assertThat(recommendation.recommendedInstances()).isEqualTo(2);
+        assertThat(recommendation.currentInstances()).isEqualTo(2);
+        assertThat(recommendation.maxInstances()).isEqualTo(12);
+    }
+
+    @Test
+    void consumersPerInstance_FollowTheRunningContainers() {
+        KafkaListenerEndpointRegistry registry = mock(KafkaListenerEndpointRegistry.class);
+        MessageListenerContainer input = container(1, 1);
+        MessageListenerContainer express = container(3, 3);
+        // Bulk con concurrencia 4 pero solo 2 hilos con partición.
+        MessageListenerContainer bulk = container(4, 2);
+        when(registry.getListenerContainer("orderConsumerClient")).thenReturn(input);
+
+        assertThat(ConsumersPerInstance.of(registry)).isEqualTo(new ConsumersPerInstance(1, 1));
+
+        when(registry.getListenerContainer("expressLaneConsumerClient")).thenReturn(express);
+        when(registry.getListenerContainer("bulkLaneConsumerClient")).thenReturn(bulk);
+
+        assertThat(ConsumersPerInstance.of(registry)).isEqualTo(new ConsumersPerInstance(1, 5));
+    }
+
+    @Test
+    void sample_MeasuresArrivalAndServiceTimeBetweenSnapshots() {
+        long start = TimeUnit.SECONDS.toNanos(100);
+        snapshots.add(new GroupSnapshot(8, 10_000, 0, 1));
+        advisor.sample(start);
+        assertThat(advisor.recommendation()).isEmpty();
+
+        // 10 s después: 2000 records más en el topic, 1200 de lag y 1000 procesados a 20 ms.
+        for (int i = 0; i < 1_000; i++) {
+            dispatchService.recordServiceTime(TimeUnit.MILLISECONDS.toNanos(20));
+        }
+        snapshots.add(new GroupSnapshot(8, 12_000, 1_200, 1));
+        advisor.sample(start + TimeUnit.SECONDS.toNanos(10));
+
+        AutoscalingRecommendation recommendation = advisor.recommendation().orElseThrow();
+        assertThat(recommendation.arrivalRatePerSecond()).isEqualTo(200.0, within(1e-9));
+        assertThat(recommendation.serviceTimeMillis()).isEqualTo(20.0, within(1e-9));
+        // 200/s + 1200/60 s = 220/s a 50/s por instancia.
+        assertThat(recommendation.recommendedInstances()).isEqualTo(5);
+        assertThat(meterRegistry.get("dispatch.autoscaling.recommended.instances").gauge().value()).isEqualTo(5);
+        assertThat(meterRegistry.get("dispatch.autoscaling.lag").gauge().value()).isEqualTo(1_200);
+        assertThat(meterRegistry.get("dispatch.autoscaling.arrival.rate").gauge().value()).isEqualTo(200.0, within(1e-9));
+    }
+
+    @Test
+    void sample_WithoutProcessedRecordsKeepsTheCurrentInstances() {
+        snapshots.add(new GroupSnapshot(8, 0, 0, 3));
+        snapshots.add(new GroupSnapshot(8, 500, 500, 3));
+
+        advisor.sample(1);
+        advisor.sample(1 + TimeUnit.SECONDS.toNanos(10));
+
+        AutoscalingRecommendation recommendation = advisor.recommendation().orElseThrow();
+        assertThat(recommendation.limitedBy()).isEqualTo("no-service-time");
+        assertThat(recommendation.recommendedInstances()).isEqualTo(3);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MessageListenerContainer container(int concurrency, int assigned) {
+        ConcurrentMessageListenerContainer<String, Object> container = mock(ConcurrentMessageListenerContainer.class);
+        List<KafkaMessageListenerContainer<String, Object>> children = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            KafkaMessageListenerContainer<String, Object> child = mock(KafkaMessageListenerContainer.class);
+            when(child.getAssignedPartitions()).thenReturn(i < assigned ? List.of(new TopicPartition("order.created", i)) : List.of());
+            children.add(child);
+        }
+        when(container.isRunning()).thenReturn(true);
+        when(container.getConcurrency()).thenReturn(concurrency);
+        when(container.getContainers()).thenReturn(children);
+        return container;
+    }
+}
@@ -3,15 +3,29 @@ package com.jesusfc.kafka.client;
 import com.jesusfc.kafka.exception.RetryableException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 /**
@@ -62,4 +76,78 @@ public class StockServiceClientTest {
         assertThrows(Exception.class, () -> client.checkAvailability("my-item"));
         verify(restTemplateMock, times(1)).getForEntity(STOCK_SERVICE_QUERY, String.class);
     }
+
+    @Test
+    public void testCheckAvailability_CachedWhileFresh() {
+        client = new StockServiceClient(restTemplateMock, STOCK_SERVICE_ENDPOINT, new AvailabilityCache(Duration.ofMinutes(1), 10));
+        ResponseEntity<String> response = new ResponseEntity<>("true", HttpStatusCode.valueOf(200));
+        when(restTemplateMock.getForEntity(STOCK_SERVICE_QUERY, String.class)).thenReturn(response);
+
+        assertThat(client.checkAvailability("my-item"), equalTo("true"));
+        assertThat(client.checkAvailability("my-item"), equalTo("true"));
+        verify(restTemplateMock, times(1)).getForEntity(STOCK_SERVICE_QUERY, String.class);
+    }
+
+    @Test
+    public void testCheckAvailability_SeveralItems_ConcurrentCallsWithoutBulkEndpoint() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(restTemplateMock.getForEntity(anyString(), eq(String.class))).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            inFlight.decrementAndGet();
+            return new ResponseEntity<>(invocation.getArgument(0, String.class).endsWith("blue") ? "false" : "true", HttpStatusCode.valueOf(200));
+        });
+
+        Map<String, Boolean> availability = client.checkAvailability(List.of("red", "blue", "green", "red"));
+
+        assertThat(availability, equalTo(Map.of("red", true, "blue", false, "green", true)));
+        verify(restTemplateMock, times(3)).getForEntity(anyString(), eq(String.class));
+        assertThat(maxInFlight.get() > 1, equalTo(true));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCheckAvailability_SeveralItems_BulkEndpoint() {
+        client = new StockServiceClient(restTemplateMock, STOCK_SERVICE_ENDPOINT, AvailabilityCache.disabled(), "bulk", 8);
+        when(restTemplateMock.exchange(eq(URI.create("bulk?items=red%2Cblue")), eq(HttpMethod.GET), isNull(), any(ParameterizedTypeReference.class)))
+                .thenReturn(new ResponseEntity<>(Map.of("red", true, "blue", "false"), HttpStatusCode.valueOf(200)));
+
+        assertThat(client.checkAvailability(List.of("red", "blue")), equalTo(Map.of("red", true, "blue", false)));
+        verify(restTemplateMock, never()).getForEntity(anyString(), eq(String.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCheckAvailability_SeveralItems_BulkEndpointEncodesItemNames() {
+        client = new StockServiceClient(restTemplateMock, STOCK_SERVICE_ENDPOINT, AvailabilityCache.disabled(), "http://stock/bulk", 8);
+        when(restTemplateMock.exchange(eq(URI.create("http://stock/bulk?items=salt%26pepper%2Cred%20wine%2Cb%23")), eq(HttpMethod.GET), isNull(), any(ParameterizedTypeReference.class)))
+                .thenReturn(new ResponseEntity<>(Map.of("salt&pepper", true, "red wine", true, "b#", false), HttpStatusCode.valueOf(200)));
+
+        assertThat(client.checkAvailability(List.of("salt&pepper", "red wine", "b#")),
+                equalTo(Map.of("salt&pepper", true, "red wine", true, "b#", false)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCheckAvailability_SeveralItems_MissingBulkEndpointFallsBackToSingleCalls() {
+        client = new StockServiceClient(restTemplateMock, STOCK_SERVICE_ENDPOINT, AvailabilityCache.disabled(), "bulk", 8);
+        when(restTemplateMock.exchange(any(URI.class), eq(HttpMethod.GET), isNull(), any(ParameterizedTypeReference.class)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", null, null, null));
+        when(restTemplateMock.getForEntity(anyString(), eq(String.class))).thenReturn(new ResponseEntity<>("true", HttpStatusCode.valueOf(200)));
+
+        client.checkAvailability(List.of("red", "blue"));
+        client.checkAvailability(List.of("red", "blue"));
+
+        verify(restTemplateMock, times(1)).exchange(any(URI.class), eq(HttpMethod.GET), isNull(), any(ParameterizedTypeReference.class));
+        verify(restTemplateMock, times(4)).getForEntity(anyString(), eq(String.class));
+    }
+
+    @Test
+    public void testCheckAvailability_SeveralItems_RetryableFailureOfAnyItemFailsTheCheck() {
+        when(restTemplateMock.getForEntity(anyString(), eq(String.class))).thenReturn(new ResponseEntity<>("true", HttpStatusCode.valueOf(200)));
+        when(restTemplateMock.getForEntity("endpoint?item=blue", String.class)).thenThrow(new ResourceAccessException("down"));
+
+        assertThrows(RetryableException.class, () -> client.checkAvailability(List.of("red", "blue")));
+    }
 }
@@ -0,0 +1,204 @@
+package com.jesusfc.kafka.deferred;
+
+import com.jesusfc.kafka.client.StockServiceClient;
+import com.jesusfc.kafka.message.DeferredOrder;
+import com.jesusfc.kafka.message.OrderCreated;
+import com.jesusfc.kafka.message.OrderLine;
+import com.jesusfc.kafka.service.DispatchService;
+import com.jesusfc.kafka.util.TestEventData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+class DeferredOrderSchedulerTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-19T10:00:00Z");
+
+    private DispatchService dispatchServiceMock;
+    private StockServiceClient stockServiceClientMock;
+    private MutableClock clock;
+    private DeferredOrderScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        dispatchServiceMock = mock(DispatchService.class);
+        stockServiceClientMock = mock(StockServiceClient.class);
+        clock = new MutableClock(NOW);
+        scheduler = new DeferredOrderScheduler(dispatchServiceMock, stockServiceClientMock,
+                List.of(Duration.ofSeconds(1), Duration.ofSeconds(5)), Duration.ofMinutes(10),
+                Duration.ofMillis(100), 64, clock);
+    }
+
+    @Test
+    void tick_BatchesStockChecksPerItem() throws Exception {
+        when(stockServiceClientMock.checkAvailability("red")).thenReturn("true");
+        for (int i = 0; i < 100; i++) {
+            scheduler.schedule("key-" + i, 3, deferred(TestEventData.buildOrderCreatedEvent(randomUUID(), "red"), 1));
+        }
+
+        clock.advance(Duration.ofSeconds(1));
+        scheduler.tick();
+
+        verify(stockServiceClientMock, times(1)).checkAvailability("red");
+        verify(dispatchServiceMock, times(100)).dispatch(eq(3), anyString(), any(OrderCreated.class));
+        assertThat(scheduler.parkedOrders()).isZero();
+    }
+
+    @Test
+    void tick_ReparksStillUnavailableOrdersWithNextAttempt() throws Exception {
+        when(stockServiceClientMock.checkAvailability("blue")).thenReturn("false");
+        OrderCreated order = TestEventData.buildOrderCreatedEvent(randomUUID(), "blue");
+        scheduler.schedule("key", 3, deferred(order, 1));
+
+        clock.advance(Duration.ofMillis(900));
+        scheduler.tick();
+        verifyNoInteractions(stockServiceClientMock);
+
+        clock.advance(Duration.ofMillis(100));
+        scheduler.tick();
+
+        ArgumentCaptor<DeferredOrder> captor = ArgumentCaptor.forClass(DeferredOrder.class);
+        verify(dispatchServiceMock, times(1)).defer(eq("key"), captor.capture());
+        verify(dispatchServiceMock, never()).dispatch(any(), anyString(), any(OrderCreated.class));
+        assertThat(captor.getValue().getAttempt()).isEqualTo(2);
+        assertThat(captor.getValue().getFirstDeferredAt()).isEqualTo(NOW.toEpochMilli());
+        assertThat(captor.getValue().getOrder()).isEqualTo(order);
+    }
+
+    @Test
+    void tick_TreatsStockFailuresAsUnavailable() throws Exception {
+        when(stockServiceClientMock.checkAvailability("green")).thenThrow(new RuntimeException("stock down"));
+        scheduler.schedule("key", 3, deferred(TestEventData.buildOrderCreatedEvent(randomUUID(), "green"), 1));
+
+        clock.advance(Duration.ofSeconds(1));
+        scheduler.tick();
+
+        verify(dispatchServiceMock, times(1)).defer(eq("key"), any(DeferredOrder.class));
+    }
+
+    @Test
+    void tick_MultiLineOrdersShareTheItemChecksAndReparkWhatIsStillPending() throws Exception {
+        when(stockServiceClientMock.checkAvailability("red")).thenReturn("true");
+        when(stockServiceClientMock.checkAvailability("blue")).thenReturn("false");
+        OrderCreated basket = OrderCreated.builder()
+                .orderId(randomUUID())
+                .lines(List.of(OrderLine.builder().item("red").build(), OrderLine.builder().item("blue").build()))
+                .build();
+        OrderCreated pending = OrderCreated.builder().orderId(basket.getOrderId()).lines(List.of(OrderLine.builder().item("blue").build())).build();
+        when(dispatchServiceMock.dispatchAvailable(eq(3), eq("basket"), eq(basket), anyMap())).thenReturn(pending);
+        scheduler.schedule("basket", 3, deferred(basket, 1));
+        scheduler.schedule("key", 3, deferred(TestEventData.buildOrderCreatedEvent(randomUUID(), "red"), 1));
+
+        clock.advance(Duration.ofSeconds(1));
+        scheduler.tick();
+
+        verify(stockServiceClientMock, times(1)).checkAvailability("red");
+        verify(dispatchServiceMock, times(1)).dispatchAvailable(3, "basket", basket, Map.of("red", true, "blue", false));
+        verify(dispatchServiceMock, times(1)).dispatch(eq(3), eq("key"), any(OrderCreated.class));
+        ArgumentCaptor<DeferredOrder> captor = ArgumentCaptor.forClass(DeferredOrder.class);
+        verify(dispatchServiceMock, times(1)).defer(eq("basket"), captor.capture());
+        assertThat(captor.getValue().getOrder()).isSameAs(pending);
+        assertThat(captor.getValue().getAttempt()).isEqualTo(2);
+    }
+
+    @Test
+    void schedule_DropsOrdersOlderThanMaxAge() throws Exception {
+        clock.advance(Duration.ofMinutes(11));
+        scheduler.schedule("key", 3, deferred(TestEventData.buildOrderCreatedEvent(randomUUID(), "red"), 3));
+
+        assertThat(scheduler.parkedOrders()).isZero();
+        verifyNoInteractions(dispatchServiceMock, stockServiceClientMock);
+    }
+
+    @Test
+    void release_PublishesTheParkedOrdersOfRevokedPartitionsUnchanged() throws Exception {
+        OrderCreated order = TestEventData.buildOrderCreatedEvent(randomUUID(), "red");
+        scheduler.schedule("revoked", 3, deferred(order, 2));
+        scheduler.schedule("kept", 4, deferred(TestEventData.buildOrderCreatedEvent(randomUUID(), "red"), 1));
+
+        scheduler.release(List.of(3));
+
+        ArgumentCaptor<DeferredOrder> captor = ArgumentCaptor.forClass(DeferredOrder.class);
+        verify(dispatchServiceMock, times(1)).defer(eq("revoked"), captor.capture());
+        assertThat(captor.getValue().getOrder()).isEqualTo(order);
+        assertThat(captor.getValue().getAttempt()).isEqualTo(2);
+        assertThat(captor.getValue().getFirstDeferredAt()).isEqualTo(NOW.toEpochMilli());
+        assertThat(scheduler.parkedOrders()).isEqualTo(1);
+    }
+
+    @Test
+    void stop_PublishesEveryParkedOrderIncludingTheOnesWhoseReparkFailed() throws Exception {
+        when(stockServiceClientMock.checkAvailability("blue")).thenReturn("false");
+        doThrow(new RuntimeException("broker down")).doNothing().when(dispatchServiceMock).defer(eq("failed"), any(DeferredOrder.class));
+        scheduler.schedule("failed", 3, deferred(TestEventData.buildOrderCreatedEvent(randomUUID(), "blue"), 1));
+        scheduler.schedule("parked", 5, deferred(TestEventData.buildOrderCreatedEvent(randomUUID(), "blue"), 2));
+
+        clock.advance(Duration.ofSeconds(1));
+        scheduler.tick();
+        assertThat(scheduler.parkedOrders()).isEqualTo(2);
+
+        scheduler.stop();
+
+        ArgumentCaptor<DeferredOrder> captor = ArgumentCaptor.forClass(DeferredOrder.class);
+        verify(dispatchServiceMock, times(2)).defer(eq("failed"), captor.capture());
+        assertThat(captor.getAllValues()).extracting(DeferredOrder::getAttempt).containsExactly(2, 2);
+        verify(dispatchServiceMock, times(1)).defer(eq("parked"), any(DeferredOrder.class));
+        assertThat(scheduler.parkedOrders()).isZero();
+    }
+
+    private DeferredOrder deferred(OrderCreated order, int attempt) {
+        return DeferredOrder.builder()
+                .order(order)
+                .partition(3)
+                .attempt(attempt)
+                .firstDeferredAt(NOW.toEpochMilli())
+                .build();
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.jesusfc.kafka.deferred;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+class HierarchicalTimerWheelTest {
+
+    private static final long START = 1_000_000L;
+    private static final long TICK = 100L;
+
+    private HierarchicalTimerWheel<String> wheel;
+
+    @BeforeEach
+    void setUp() {
+        // 8 huecos x 3 niveles: el nivel 0 cubre 800ms, el nivel 1 6.4s y el nivel 2 51.2s.
+        wheel = new HierarchicalTimerWheel<>(TICK, 8, 3, START);
+    }
+
+    @Test
+    void advance_ExpiresTaskOnItsTick() {
+        wheel.schedule("a", 300, START);
+
+        assertThat(wheel.advance(START + 200)).isEmpty();
+        assertThat(wheel.advance(START + 300)).containsExactly("a");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void advance_CascadesTasksFromUpperLevels() {
+        wheel.schedule("level1", 2_000, START);
+        wheel.schedule("level2", 20_000, START);
+
+        assertThat(wheel.advance(START + 1_900)).isEmpty();
+        assertThat(wheel.advance(START + 2_000)).containsExactly("level1");
+        assertThat(wheel.advance(START + 19_900)).isEmpty();
+        assertThat(wheel.advance(START + 20_000)).containsExactly("level2");
+    }
+
+    @Test
+    void advance_NeverExpiresTasksBeyondTheWheelRangeEarly() {
+        wheel.schedule("far", 120_000, START);
+
+        assertThat(wheel.advance(START + 119_900)).isEmpty();
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(wheel.advance(START + 120_000)).containsExactly("far");
+    }
+
+    @Test
+    void advance_ExpiresEveryTaskExactlyOnceAndNotBeforeItsDeadline() {
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            long delay = 1 + (i * 7919L) % 60_000;
+            wheel.schedule(String.valueOf(delay), delay, START);
+            deadlines.add(delay);
+        }
+
+        List<String> fired = new ArrayList<>();
+        for (long now = START; now <= START + 60_100; now += TICK) {
+            for (String task : wheel.advance(now)) {
+                assertThat(Long.parseLong(task)).isLessThanOrEqualTo(now - START);
+                assertThat(Long.parseLong(task)).isGreaterThan(now - START - TICK);
+                fired.add(task);
+            }
+        }
+        assertThat(fired).hasSize(deadlines.size());
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void schedule_WithZeroDelayFiresOnNextTick() {
+        wheel.advance(START + 500);
+        wheel.schedule("now", 0, START + 500);
+
+        assertThat(wheel.advance(START + 600)).containsExactly("now");
+    }
+
+    @Test
+    void removeIf_TakesMatchingTasksFromEveryLevel() {
+        wheel.schedule("keep", 300, START);
+        wheel.schedule("drop-0", 300, START);
+        wheel.schedule("drop-1", 2_000, START);
+        wheel.schedule("drop-2", 20_000, START);
+
+        assertThat(wheel.removeIf(task -> task.startsWith("drop"))).containsExactlyInAnyOrder("drop-0", "drop-1", "drop-2");
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(wheel.advance(START + 20_000)).containsExactly("keep");
+    }
+}
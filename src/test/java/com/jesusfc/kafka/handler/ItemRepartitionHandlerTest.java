@@ -0,0 +1,140 @@
+package com.jesusfc.kafka.handler;
+
+import com.jesusfc.kafka.exception.NotRetryableException;
+import com.jesusfc.kafka.exception.RetryableException;
+import com.jesusfc.kafka.logging.DispatchEventLog;
+import com.jesusfc.kafka.message.OrderCreated;
+import com.jesusfc.kafka.message.OrderLine;
+import com.jesusfc.kafka.service.DispatchService;
+import com.jesusfc.kafka.util.TestEventData;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+class ItemRepartitionHandlerTest {
+
+    private static final String BY_ITEM_TOPIC = "my.order.created.by-item.topic";
+
+    private KafkaTemplate<String, Object> kafkaTemplateMock;
+    private DispatchService dispatchServiceMock;
+    private ItemRepartitionHandler handler;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        kafkaTemplateMock = mock(KafkaTemplate.class);
+        when(kafkaTemplateMock.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+        dispatchServiceMock = mock(DispatchService.class);
+        handler = new ItemRepartitionHandler(kafkaTemplateMock, dispatchServiceMock, DispatchEventLog.withDefaults(), BY_ITEM_TOPIC);
+    }
+
+    @Test
+    void repartition_RekeysByItemAndKeepsTheOriginalKeyAndPartition() throws Exception {
+        OrderCreated order = TestEventData.buildOrderCreatedEvent(randomUUID(), "red");
+
+        handler.repartition(4, "customer-1", order);
+
+        ProducerRecord<String, Object> repartitioned = repartitioned();
+        assertThat(repartitioned.topic()).isEqualTo(BY_ITEM_TOPIC);
+        assertThat(repartitioned.key()).isEqualTo("red");
+        assertThat(repartitioned.value()).isSameAs(order);
+        assertThat(header(repartitioned, ItemRepartitionHandler.ORIGINAL_KEY_HEADER)).isEqualTo("customer-1");
+        assertThat(header(repartitioned, ItemRepartitionHandler.ORIGINAL_PARTITION_HEADER)).isEqualTo("4");
+    }
+
+    @Test
+    void repartition_WithoutKeyOnlyWritesThePartition() throws Exception {
+        handler.repartition(2, null, TestEventData.buildOrderCreatedEvent(randomUUID(), "red"));
+
+        ProducerRecord<String, Object> repartitioned = repartitioned();
+        assertThat(repartitioned.headers().lastHeader(ItemRepartitionHandler.ORIGINAL_KEY_HEADER)).isNull();
+        assertThat(header(repartitioned, ItemRepartitionHandler.ORIGINAL_PARTITION_HEADER)).isEqualTo("2");
+    }
+
+    @Test
+    void repartition_KeysMultiLineOrdersByTheirFirstItem() throws Exception {
+        OrderCreated order = TestEventData.buildOrderCreatedEvent(randomUUID(), null);
+        order.setLines(List.of(OrderLine.builder().item("blue").quantity(2).build(), OrderLine.builder().item("red").build()));
+
+        handler.repartition(4, "customer-1", order);
+
+        assertThat(repartitioned().key()).isEqualTo("blue");
+    }
+
+    @Test
+    void repartitionKey_WithoutItemFallsBackToTheOriginalKeyAndThenTheOrderId() {
+        OrderCreated order = TestEventData.buildOrderCreatedEvent(randomUUID(), null);
+
+        assertThat(ItemRepartitionHandler.repartitionKey("customer-1", order)).isEqualTo("customer-1");
+        assertThat(ItemRepartitionHandler.repartitionKey(null, order)).isEqualTo(order.getOrderId().toString());
+    }
+
+    @Test
+    void listen_RestoresTheOriginalKeyAndPartition() throws Exception {
+        OrderCreated order = TestEventData.buildOrderCreatedEvent(randomUUID(), "red");
+        ConsumerRecord<String, OrderCreated> record = record(1, "red", order);
+        record.headers().add(ItemRepartitionHandler.ORIGINAL_KEY_HEADER, "customer-1".getBytes(StandardCharsets.UTF_8));
+        record.headers().add(ItemRepartitionHandler.ORIGINAL_PARTITION_HEADER, "4".getBytes(StandardCharsets.UTF_8));
+
+        handler.listen(record);
+
+        verify(dispatchServiceMock).process(4, "customer-1", order);
+    }
+
+    @Test
+    void listen_WithoutHeadersFallsBackToTheRecordPartitionAndNoKey() throws Exception {
+        OrderCreated order = TestEventData.buildOrderCreatedEvent(randomUUID(), "red");
+
+        handler.listen(record(1, "red", order));
+
+        verify(dispatchServiceMock).process(1, null, order);
+    }
+
+    @Test
+    void listen_WrapsFailuresLikeOrderCreatedHandler() throws Exception {
+        OrderCreated retryable = TestEventData.buildOrderCreatedEvent(randomUUID(), "red");
+        OrderCreated failing = TestEventData.buildOrderCreatedEvent(randomUUID(), "blue");
+        doThrow(new RetryableException("stock down")).when(dispatchServiceMock).process(1, null, retryable);
+        doThrow(new RuntimeException("Service failure")).when(dispatchServiceMock).process(1, null, failing);
+
+        assertThatThrownBy(() -> handler.listen(record(1, "red", retryable))).isInstanceOf(RetryableException.class);
+        assertThatThrownBy(() -> handler.listen(record(1, "blue", failing))).isInstanceOf(NotRetryableException.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ProducerRecord<String, Object> repartitioned() {
+        ArgumentCaptor<ProducerRecord<String, Object>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplateMock).send(captor.capture());
+        return captor.getValue();
+    }
+
+    private static ConsumerRecord<String, OrderCreated> record(int partition, String key, OrderCreated order) {
+        return new ConsumerRecord<>(BY_ITEM_TOPIC, partition, 0L, 1_000L, TimestampType.CREATE_TIME, -1, -1, key, order,
+                new RecordHeaders(), Optional.empty());
+    }
+
+    private static String header(ProducerRecord<String, Object> record, String name) {
+        return new String(record.headers().lastHeader(name).value(), StandardCharsets.UTF_8);
+    }
+}
@@ -2,6 +2,7 @@ package com.jesusfc.kafka.handler;
 
 import com.jesusfc.kafka.exception.NotRetryableException;
 import com.jesusfc.kafka.exception.RetryableException;
+import com.jesusfc.kafka.logging.DispatchEventLog;
 import com.jesusfc.kafka.message.OrderCreated;
 import com.jesusfc.kafka.service.DispatchService;
 import com.jesusfc.kafka.util.TestEventData;
@@ -30,7 +31,7 @@ class OrderCreatedHandlerTest {
     @BeforeEach
     void setUp() {
         dispatchServiceMock = mock(DispatchService.class);
-        handler = new OrderCreatedHandler(dispatchServiceMock);
+        handler = new OrderCreatedHandler(dispatchServiceMock, DispatchEventLog.withDefaults());
     }
 
     @Test
@@ -0,0 +1,121 @@
+package com.jesusfc.kafka.handler;
+
+import com.jesusfc.kafka.exception.NotRetryableException;
+import com.jesusfc.kafka.lanes.LaneArbiter;
+import com.jesusfc.kafka.logging.DispatchEventLog;
+import com.jesusfc.kafka.message.OrderCreated;
+import com.jesusfc.kafka.message.OrderPriority;
+import com.jesusfc.kafka.service.DispatchService;
+import com.jesusfc.kafka.util.TestEventData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+class PriorityLaneHandlerTest {
+
+    private static final String EXPRESS_TOPIC = "my.order.created.express.topic";
+    private static final String BULK_TOPIC = "my.order.created.bulk.topic";
+
+    private KafkaTemplate<String, Object> kafkaTemplateMock;
+    private DispatchService dispatchServiceMock;
+    private LaneArbiter arbiter;
+    private PriorityLaneHandler handler;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        kafkaTemplateMock = mock(KafkaTemplate.class);
+        when(kafkaTemplateMock.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+        dispatchServiceMock = mock(DispatchService.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        arbiter = new LaneArbiter(2, Map.of(OrderPriority.EXPRESS, 3, OrderPriority.BULK, 1), meterRegistry);
+        handler = new PriorityLaneHandler(kafkaTemplateMock, dispatchServiceMock, DispatchEventLog.withDefaults(), arbiter,
+                meterRegistry, EXPRESS_TOPIC, BULK_TOPIC, OrderPriority.BULK);
+    }
+
+    @Test
+    void route_PayloadPriorityPicksTheLaneTopic() throws Exception {
+        OrderCreated order = TestEventData.buildOrderCreatedEvent(randomUUID(), "item");
+        order.setPriority(OrderPriority.EXPRESS);
+
+        handler.route(record("my.order.created.topic", 5, order, null));
+
+        ProducerRecord<String, Object> routed = routed();
+        assertThat(routed.topic()).isEqualTo(EXPRESS_TOPIC);
+        assertThat(routed.key()).isEqualTo("key");
+        assertThat(routed.timestamp()).isEqualTo(1_000L);
+        assertThat(header(routed, ItemRepartitionHandler.ORIGINAL_PARTITION_HEADER)).isEqualTo("5");
+    }
+
+    @Test
+    void route_HeaderOverridesThePayloadAndUnknownValuesFallBack() throws Exception {
+        OrderCreated order = TestEventData.buildOrderCreatedEvent(randomUUID(), "item");
+        order.setPriority(OrderPriority.BULK);
+
+        assertThat(handler.laneOf(record("in", 0, order, "Express"))).isEqualTo(OrderPriority.EXPRESS);
+        assertThat(handler.laneOf(record("in", 0, order, "urgent"))).isEqualTo(OrderPriority.BULK);
+        assertThat(handler.laneOf(record("in", 0, TestEventData.buildOrderCreatedEvent(randomUUID(), "item"), null))).isEqualTo(OrderPriority.BULK);
+    }
+
+    @Test
+    void listen_DispatchesWithTheOriginalPartitionAndReleasesTheSlot() throws Exception {
+        OrderCreated order = TestEventData.buildOrderCreatedEvent(randomUUID(), "item");
+        ConsumerRecord<String, OrderCreated> record = record(EXPRESS_TOPIC, 0, order, null);
+        record.headers().add(ItemRepartitionHandler.ORIGINAL_PARTITION_HEADER, "7".getBytes(StandardCharsets.UTF_8));
+
+        handler.listenExpress(record);
+
+        verify(dispatchServiceMock).process(7, "key", order);
+        assertThat(arbiter.active(OrderPriority.EXPRESS)).isZero();
+    }
+
+    @Test
+    void listen_FailureReleasesTheSlot() throws Exception {
+        OrderCreated order = TestEventData.buildOrderCreatedEvent(randomUUID(), "item");
+        doThrow(new RuntimeException("Service failure")).when(dispatchServiceMock).process(0, "key", order);
+
+        assertThatThrownBy(() -> handler.listenBulk(record(BULK_TOPIC, 0, order, null))).isInstanceOf(NotRetryableException.class);
+        assertThat(arbiter.active(OrderPriority.BULK)).isZero();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ProducerRecord<String, Object> routed() {
+        ArgumentCaptor<ProducerRecord<String, Object>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplateMock).send(captor.capture());
+        return captor.getValue();
+    }
+
+    private static ConsumerRecord<String, OrderCreated> record(String topic, int partition, OrderCreated order, String priorityHeader) {
+        RecordHeaders headers = new RecordHeaders();
+        if (priorityHeader != null) {
+            headers.add(PriorityLaneHandler.PRIORITY_HEADER, priorityHeader.getBytes(StandardCharsets.UTF_8));
+        }
+        return new ConsumerRecord<>(topic, partition, 0L, 1_000L, TimestampType.CREATE_TIME, -1, -1, "key", order, headers, Optional.empty());
+    }
+
+    private static String header(ProducerRecord<String, Object> record, String name) {
+        return new String(record.headers().lastHeader(name).value(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,92 @@
+package com.jesusfc.kafka.lanes;
+
+import com.jesusfc.kafka.message.OrderPriority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.jesusfc.kafka.message.OrderPriority.BULK;
+import static com.jesusfc.kafka.message.OrderPriority.EXPRESS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+class LaneArbiterTest {
+
+    private final LaneArbiter arbiter = new LaneArbiter(4, Map.of(EXPRESS, 3, BULK, 1), new SimpleMeterRegistry());
+
+    @Test
+    void acquire_ALoneLaneUsesEverySlot() throws InterruptedException {
+        for (int i = 0; i < 4; i++) {
+            arbiter.acquire(BULK);
+        }
+
+        assertThat(arbiter.active(BULK)).isEqualTo(4);
+        assertThat(arbiter.share(BULK)).isEqualTo(4);
+    }
+
+    @Test
+    void acquire_ExpressTakesTheFreedSlotsUpToItsShare() throws InterruptedException {
+        for (int i = 0; i < 4; i++) {
+            arbiter.acquire(BULK);
+        }
+        AtomicInteger expressEntered = new AtomicInteger();
+        CountDownLatch bulkEntered = new CountDownLatch(1);
+        startWaiting(EXPRESS, 3, expressEntered::incrementAndGet);
+        await().atMost(Duration.ofSeconds(5)).until(() -> arbiter.share(EXPRESS) == 3);
+        startWaiting(BULK, 1, bulkEntered::countDown);
+
+        // Bulk está por encima de su parte (1): cada hueco que libera es para el express mientras espere.
+        for (int i = 0; i < 3; i++) {
+            arbiter.release(BULK);
+            int entered = i + 1;
+            await().atMost(Duration.ofSeconds(5)).until(() -> expressEntered.get() == entered);
+        }
+
+        assertThat(arbiter.active(EXPRESS)).isEqualTo(3);
+        assertThat(arbiter.active(BULK)).isEqualTo(1);
+        assertThat(bulkEntered.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void acquire_BulkKeepsAtLeastOneSlotUnderContention() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            arbiter.acquire(EXPRESS);
+        }
+        CountDownLatch bulkEntered = new CountDownLatch(1);
+        AtomicInteger expressEntered = new AtomicInteger();
+        startWaiting(EXPRESS, 1, expressEntered::incrementAndGet);
+        await().atMost(Duration.ofSeconds(5)).until(() -> expressEntered.get() == 1);
+        startWaiting(BULK, 1, bulkEntered::countDown);
+        await().atMost(Duration.ofSeconds(5)).until(() -> arbiter.share(EXPRESS) == 3);
+
+        // Los cuatro huecos son del express; al liberar uno, bulk entra con su parte garantizada aunque express tenga más trabajo.
+        startWaiting(EXPRESS, 1, expressEntered::incrementAndGet);
+        arbiter.release(EXPRESS);
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> bulkEntered.getCount() == 0);
+        assertThat(arbiter.active(BULK)).isEqualTo(1);
+        assertThat(expressEntered.get()).isEqualTo(1);
+    }
+
+    private void startWaiting(OrderPriority lane, int times, Runnable entered) {
+        for (int i = 0; i < times; i++) {
+            Thread.ofVirtual().start(() -> {
+                try {
+                    arbiter.acquire(lane);
+                    entered.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+    }
+}
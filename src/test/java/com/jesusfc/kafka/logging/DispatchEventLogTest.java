@@ -0,0 +1,149 @@
+package com.jesusfc.kafka.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.jesusfc.kafka.exception.RetryableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+class DispatchEventLogTest {
+
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private final Logger logger = (Logger) LoggerFactory.getLogger(DispatchEventLog.LOGGER_NAME);
+    private final MockEnvironment environment = new MockEnvironment();
+    private DispatchEventLog eventLog;
+
+    @BeforeEach
+    void setUp() {
+        appender.start();
+        logger.addAppender(appender);
+        logger.setLevel(Level.INFO);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (eventLog != null) {
+            eventLog.stop();
+        }
+        logger.detachAppender(appender);
+        logger.setLevel(null);
+    }
+
+    @Test
+    void log_FieldsAreKeyValuesNotInterpolated() throws InterruptedException {
+        environment.setProperty("dispatch.logging.events.order-dispatched.sample-rate", "1");
+        UUID orderId = UUID.randomUUID();
+
+        start().log(DispatchEventType.ORDER_DISPATCHED, "orderId", orderId, "partition", 3);
+        eventLog.stop();
+
+        assertThat(appender.list).hasSize(1);
+        ILoggingEvent event = appender.list.get(0);
+        assertThat(event.getFormattedMessage()).isEqualTo("order-dispatched");
+        assertThat(event.getKeyValuePairs()).extracting(kv -> kv.key + "=" + kv.value)
+                .containsExactly("orderId=" + orderId, "partition=3", "thread=" + Thread.currentThread().getName());
+        assertThat(event.getThreadName()).isEqualTo("dispatch-event-log");
+    }
+
+    @Test
+    void log_IsSampledPerEventType() throws InterruptedException {
+        environment.setProperty("dispatch.logging.events.order-received.sample-rate", "0.1");
+        environment.setProperty("dispatch.logging.events.order-received.rate-limit", "0");
+        environment.setProperty("dispatch.logging.events.order-deferred.sample-rate", "1");
+
+        start();
+        for (int i = 0; i < 100; i++) {
+            eventLog.log(DispatchEventType.ORDER_RECEIVED, "offset", i);
+            eventLog.log(DispatchEventType.ORDER_DEFERRED, "offset", i);
+        }
+        eventLog.stop();
+
+        assertThat(messages()).filteredOn("order-received"::equals).hasSize(10);
+        assertThat(messages()).filteredOn("order-deferred"::equals).hasSize(100);
+        assertThat(eventLog.suppressed()).isEqualTo(90);
+    }
+
+    @Test
+    void log_IsRateLimitedPerSecond() throws InterruptedException {
+        environment.setProperty("dispatch.logging.events.order-received.sample-rate", "1");
+        environment.setProperty("dispatch.logging.events.order-received.rate-limit", "5");
+
+        start();
+        for (int i = 0; i < 1000; i++) {
+            eventLog.log(DispatchEventType.ORDER_RECEIVED, "offset", i);
+        }
+        eventLog.stop();
+
+        // Como mucho cruza un cambio de segundo durante el bucle.
+        assertThat(appender.list.size()).isBetween(5, 10);
+    }
+
+    @Test
+    void failure_ErrorsAreAlwaysLoggedSynchronously() {
+        environment.setProperty("dispatch.logging.events.failure.sample-rate", "0");
+        eventLog = new DispatchEventLog(environment, 16);
+
+        for (int i = 0; i < 3; i++) {
+            eventLog.failure(DispatchEventType.FAILURE, new IllegalStateException("boom"), "orderId", i, "item", "item");
+        }
+
+        // Sin arrancar el hilo de escritura: los errores no pasan por la cola.
+        assertThat(appender.list).hasSize(3);
+        assertThat(appender.list.get(0).getLevel()).isEqualTo(Level.ERROR);
+        assertThat(appender.list.get(0).getThrowableProxy().getClassName()).isEqualTo(IllegalStateException.class.getName());
+    }
+
+    @Test
+    void failure_FirstOccurrenceOfEachFailureTypeIsLogged() throws InterruptedException {
+        environment.setProperty("dispatch.logging.events.retryable-failure.sample-rate", "0");
+
+        start();
+        eventLog.failure(DispatchEventType.RETRYABLE_FAILURE, new RetryableException("down"), "orderId", 1, "item", "a");
+        eventLog.failure(DispatchEventType.RETRYABLE_FAILURE, new RetryableException("down"), "orderId", 2, "item", "a");
+        eventLog.failure(DispatchEventType.RETRYABLE_FAILURE, new IllegalStateException("other"), "orderId", 3, "item", "a");
+        eventLog.stop();
+
+        assertThat(appender.list).extracting(e -> e.getThrowableProxy().getClassName())
+                .containsExactly(RetryableException.class.getName(), IllegalStateException.class.getName());
+        assertThat(eventLog.suppressed()).isEqualTo(1);
+    }
+
+    @Test
+    void log_QueueFull_EventsAreDroppedNotBlocking() {
+        environment.setProperty("dispatch.logging.events.order-deferred.sample-rate", "1");
+        environment.setProperty("dispatch.logging.events.order-deferred.rate-limit", "0");
+        eventLog = new DispatchEventLog(environment, 4);
+
+        for (int i = 0; i < 10; i++) {
+            eventLog.log(DispatchEventType.ORDER_DEFERRED, "offset", i);
+        }
+
+        assertThat(eventLog.dropped()).isEqualTo(6);
+        assertThat(appender.list).isEmpty();
+    }
+
+    private DispatchEventLog start() {
+        eventLog = new DispatchEventLog(environment, 1024);
+        eventLog.start();
+        return eventLog;
+    }
+
+    private List<String> messages() {
+        return appender.list.stream().map(ILoggingEvent::getFormattedMessage).toList();
+    }
+}
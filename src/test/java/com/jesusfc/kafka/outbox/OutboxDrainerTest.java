@@ -0,0 +1,131 @@
+package com.jesusfc.kafka.outbox;
+
+import com.jesusfc.kafka.message.DispatchPreparing;
+import com.jesusfc.kafka.ratelimit.OutputRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.common.errors.NotEnoughReplicasException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.JacksonUtils;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+class OutboxDrainerTest {
+
+    private static final String TOPIC = "dispatch.tracking";
+
+    @TempDir
+    Path directory;
+
+    private KafkaTemplate<String, Object> kafkaTemplateMock;
+    private OutboxJournal journal;
+    private final List<CompletableFuture<SendResult<String, Object>>> sends = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws IOException {
+        kafkaTemplateMock = mock(KafkaTemplate.class);
+        journal = new OutboxJournal(directory, 64 * 1024, 1024 * 1024, OutboxJournal.FsyncPolicy.NEVER);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        journal.close();
+    }
+
+    @Test
+    void drainBatch_SendsTheWholeBatchBeforeWaitingForAcks() throws Exception {
+        journalEvents(25);
+        OutboxDrainer drainer = drainer(10);
+        // Los acks solo llegan cuando el lote entero está en vuelo: un drainer que esperase uno a uno caducaría.
+        when(kafkaTemplateMock.send(anyString(), any(), anyString(), any())).thenAnswer(invocation -> {
+            CompletableFuture<SendResult<String, Object>> send = new CompletableFuture<>();
+            sends.add(send);
+            if (sends.size() == 10) {
+                sends.forEach(inFlight -> inFlight.complete(null));
+            }
+            return send;
+        });
+
+        assertThat(drainer.drainBatch()).isEqualTo(10);
+        assertThat(journal.pendingRecords()).isEqualTo(15);
+        assertThat(journal.peek().key()).isEqualTo("k10");
+    }
+
+    @Test
+    void drainBatch_CommitsUpToTheFirstFailedSendAndRetriesFromIt() throws Exception {
+        journalEvents(5);
+        OutboxDrainer drainer = drainer(10);
+        when(kafkaTemplateMock.send(anyString(), any(), anyString(), any())).thenAnswer(invocation -> {
+            int index = sends.size();
+            CompletableFuture<SendResult<String, Object>> send = index == 2
+                    ? CompletableFuture.failedFuture(new NotEnoughReplicasException("isr"))
+                    : CompletableFuture.completedFuture(null);
+            sends.add(send);
+            return send;
+        });
+
+        assertThrows(ExecutionException.class, drainer::drainBatch);
+        assertThat(sends).hasSize(5);
+        assertThat(journal.pendingRecords()).isEqualTo(3);
+        assertThat(journal.peek().key()).isEqualTo("k2");
+    }
+
+    @Test
+    void drainBatch_PacesTheSendsToTheOutputRate() throws Exception {
+        journalEvents(20);
+        OutputRateLimiter rateLimiter = new OutputRateLimiter(new MockEnvironment()
+                .withProperty("dispatch.rate-limit.topics[" + TOPIC + "].rate-per-second", "100")
+                .withProperty("dispatch.rate-limit.topics[" + TOPIC + "].burst", "1"),
+                new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class), true, List.of(TOPIC), Duration.ofMillis(10));
+        OutboxDrainer drainer = drainer(rateLimiter, 20);
+        when(kafkaTemplateMock.send(anyString(), any(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        long start = System.nanoTime();
+        assertThat(drainer.drainBatch()).isEqualTo(20);
+
+        // 100/s sin ráfaga: 20 envíos son al menos 19 intervalos de 10 ms, en vez de salir todos de golpe.
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(180));
+        assertThat(journal.isEmpty()).isTrue();
+    }
+
+    private OutboxDrainer drainer(int batchSize) {
+        return drainer(OutputRateLimiter.disabled(), batchSize);
+    }
+
+    private OutboxDrainer drainer(OutputRateLimiter rateLimiter, int batchSize) {
+        return new OutboxDrainer(journal, kafkaTemplateMock, JacksonUtils.enhancedObjectMapper(), rateLimiter,
+                batchSize, Duration.ofMillis(200), Duration.ofMillis(10), Duration.ofSeconds(1));
+    }
+
+    private void journalEvents(int count) {
+        for (int i = 0; i < count; i++) {
+            journal.append(new OutboxRecord(TOPIC, 1, "k" + i, DispatchPreparing.class.getName(),
+                    ("{\"orderId\":\"" + randomUUID() + "\"}").getBytes()));
+        }
+    }
+}
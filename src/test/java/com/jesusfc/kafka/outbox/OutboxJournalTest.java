@@ -0,0 +1,210 @@
+package com.jesusfc.kafka.outbox;
+
+import com.jesusfc.kafka.exception.RetryableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+class OutboxJournalTest {
+
+    private static final int SEGMENT_BYTES = 1024;
+
+    @TempDir
+    Path directory;
+
+    private final List<OutboxJournal> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (OutboxJournal journal : opened) {
+            journal.close();
+        }
+    }
+
+    @Test
+    void append_RecordsAreDrainedInOrder() throws IOException {
+        OutboxJournal journal = open(OutboxJournal.FsyncPolicy.ALWAYS);
+        journal.append(record("dispatch.tracking", null, "k1", "one"));
+        journal.append(record("my.order.dispatched.topic", 3, null, "two"));
+
+        OutboxRecord first = journal.peek();
+        assertThat(first.topic()).isEqualTo("dispatch.tracking");
+        assertThat(first.partition()).isNull();
+        assertThat(first.key()).isEqualTo("k1");
+        assertThat(new String(first.value(), StandardCharsets.UTF_8)).isEqualTo("one");
+        // peek sin commit no avanza
+        assertThat(journal.peek().key()).isEqualTo("k1");
+        journal.commit();
+
+        OutboxRecord second = journal.peek();
+        assertThat(second.partition()).isEqualTo(3);
+        assertThat(second.key()).isNull();
+        journal.commit();
+
+        assertThat(journal.peek()).isNull();
+        assertThat(journal.isEmpty()).isTrue();
+    }
+
+    @Test
+    void recover_AfterCrashResumesFromLastCommittedRecord() throws IOException {
+        // Simulamos la caída: la primera instancia nunca se cierra de forma ordenada.
+        OutboxJournal crashed = open(OutboxJournal.FsyncPolicy.NEVER);
+        for (int i = 0; i < 5; i++) {
+            crashed.append(record("t", null, "k" + i, "v" + i));
+        }
+        crashed.peek();
+        crashed.commit();
+        crashed.peek();
+        crashed.commit();
+
+        OutboxJournal recovered = open(OutboxJournal.FsyncPolicy.NEVER);
+        assertThat(recovered.pendingRecords()).isEqualTo(3);
+        assertThat(drainKeys(recovered)).containsExactly("k2", "k3", "k4");
+    }
+
+    @Test
+    void recover_TruncatesTornRecordAndKeepsAppending() throws IOException {
+        OutboxJournal crashed = open(OutboxJournal.FsyncPolicy.ALWAYS);
+        crashed.append(record("t", null, "k0", "v0"));
+        crashed.append(record("t", null, "k1", "v1"));
+        long tornPosition = 2L * (8 + record("t", null, "k0", "v0").encode().length);
+
+        // Registro a medias: longitud escrita pero payload y CRC no.
+        try (RandomAccessFile file = new RandomAccessFile(onlySegment().toFile(), "rw")) {
+            file.seek(tornPosition);
+            file.writeInt(40);
+            file.writeInt(0xCAFEBABE);
+            file.write("garbage".getBytes(StandardCharsets.UTF_8));
+        }
+
+        OutboxJournal recovered = open(OutboxJournal.FsyncPolicy.ALWAYS);
+        assertThat(recovered.pendingRecords()).isEqualTo(2);
+        recovered.append(record("t", null, "k2", "v2"));
+
+        OutboxJournal recoveredAgain = open(OutboxJournal.FsyncPolicy.ALWAYS);
+        assertThat(drainKeys(recoveredAgain)).containsExactly("k0", "k1", "k2");
+    }
+
+    @Test
+    void recover_IgnoresCorruptCheckpointAndRedeliversFromOldestSegment() throws IOException {
+        OutboxJournal crashed = open(OutboxJournal.FsyncPolicy.ALWAYS);
+        crashed.append(record("t", null, "k0", "v0"));
+        crashed.append(record("t", null, "k1", "v1"));
+        crashed.peek();
+        crashed.commit();
+
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("drain.checkpoint").toFile(), "rw")) {
+            file.seek(12);
+            file.writeInt(0);
+        }
+
+        // Al-menos-una-vez: sin checkpoint válido se vuelve a entregar desde el principio.
+        assertThat(drainKeys(open(OutboxJournal.FsyncPolicy.ALWAYS))).containsExactly("k0", "k1");
+    }
+
+    @Test
+    void append_RollsSegmentsAndDeletesDrainedOnes() throws IOException {
+        OutboxJournal journal = open(OutboxJournal.FsyncPolicy.INTERVAL);
+        for (int i = 0; i < 40; i++) {
+            journal.append(record("t", null, "k" + i, "value-" + i));
+        }
+        assertThat(segmentFiles()).hasSizeGreaterThan(1);
+
+        List<String> keys = drainKeys(journal);
+        assertThat(keys).hasSize(40);
+        assertThat(keys.get(0)).isEqualTo("k0");
+        assertThat(keys.get(39)).isEqualTo("k39");
+        assertThat(segmentFiles()).hasSize(1);
+    }
+
+    @Test
+    void append_FailsWithRetryableExceptionWhenJournalIsFull() throws IOException {
+        OutboxJournal journal = new OutboxJournal(directory, SEGMENT_BYTES, 2L * SEGMENT_BYTES, OutboxJournal.FsyncPolicy.NEVER);
+        opened.add(journal);
+
+        assertThrows(RetryableException.class, () -> {
+            for (int i = 0; i < 1000; i++) {
+                journal.append(record("t", null, "k" + i, "value-" + i));
+            }
+        });
+        assertThat(journal.sizeBytes()).isEqualTo(2L * SEGMENT_BYTES);
+    }
+
+    @Test
+    void peek_BatchSpansSegmentsAndCommitAdvancesInOrder() throws IOException {
+        OutboxJournal journal = open(OutboxJournal.FsyncPolicy.NEVER);
+        for (int i = 0; i < 40; i++) {
+            journal.append(record("t", null, "k" + i, "value-" + i));
+        }
+
+        List<OutboxRecord> batch = journal.peek(30);
+        assertThat(batch).extracting(OutboxRecord::key).startsWith("k0", "k1").endsWith("k29");
+        journal.commit(10);
+        assertThat(journal.pendingRecords()).isEqualTo(30);
+        journal.commit(10);
+
+        // Lo leído sin confirmar se vuelve a leer en el siguiente lote, también tras reabrir.
+        OutboxJournal recovered = open(OutboxJournal.FsyncPolicy.NEVER);
+        assertThat(drainKeys(recovered)).hasSize(20).startsWith("k20");
+        assertThat(journal.peek(5)).extracting(OutboxRecord::key).containsExactly("k20", "k21", "k22", "k23", "k24");
+        assertThrows(IllegalStateException.class, () -> journal.commit(6));
+    }
+
+    @Test
+    void appendIfPending_OnlyAppendsBehindUndeliveredRecords() throws IOException {
+        OutboxJournal journal = open(OutboxJournal.FsyncPolicy.NEVER);
+
+        assertThat(journal.appendIfPending(() -> record("t", null, "direct", "v"))).isFalse();
+        journal.append(record("t", null, "k0", "v0"));
+        assertThat(journal.appendIfPending(() -> record("t", null, "k1", "v1"))).isTrue();
+
+        assertThat(drainKeys(journal)).containsExactly("k0", "k1");
+        assertThat(journal.appendIfPending(() -> record("t", null, "direct", "v"))).isFalse();
+    }
+
+    private OutboxJournal open(OutboxJournal.FsyncPolicy fsyncPolicy) throws IOException {
+        OutboxJournal journal = new OutboxJournal(directory, SEGMENT_BYTES, 64L * SEGMENT_BYTES, fsyncPolicy);
+        opened.add(journal);
+        return journal;
+    }
+
+    private static OutboxRecord record(String topic, Integer partition, String key, String value) {
+        return new OutboxRecord(topic, partition, key, String.class.getName(), value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> drainKeys(OutboxJournal journal) {
+        List<String> keys = new ArrayList<>();
+        for (OutboxRecord record = journal.peek(); record != null; record = journal.peek()) {
+            keys.add(record.key());
+            journal.commit();
+        }
+        return keys;
+    }
+
+    private Path onlySegment() throws IOException {
+        return segmentFiles().get(0);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".seg")).sorted().toList();
+        }
+    }
+}
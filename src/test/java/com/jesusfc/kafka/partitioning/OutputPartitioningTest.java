@@ -0,0 +1,175 @@
+package com.jesusfc.kafka.partitioning;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+class OutputPartitioningTest {
+
+    private static final String INPUT = "my.order.created.topic";
+    private static final String DISPATCHED = "my.order.dispatched.topic";
+    private static final String TRACKING = "dispatch.tracking";
+
+    private final MockEnvironment environment = new MockEnvironment();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void defaults_DispatchedMirrorsInputAndOthersHashTheKey() {
+        OutputPartitioning partitioning = OutputPartitioning.withDefaults();
+
+        assertThat(partitioning.strategy(DISPATCHED)).isEqualTo(PartitioningStrategy.MIRROR_INPUT);
+        assertThat(partitioning.partition(DISPATCHED, 3, "key")).isEqualTo(3);
+        assertThat(partitioning.strategy(TRACKING)).isEqualTo(PartitioningStrategy.KEY_HASH);
+        assertThat(partitioning.partition(TRACKING, 3, "key")).isNull();
+    }
+
+    @Test
+    void validate_MirrorInputWithFewerPartitionsThanTheInputFailsStartup() {
+        OutputPartitioning partitioning = partitioning();
+
+        assertThatThrownBy(() -> partitioning.validate(Map.of(INPUT, 6, DISPATCHED, 4, TRACKING, 2)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(DISPATCHED + " has 4 partitions");
+    }
+
+    @Test
+    void validate_KeyHashAcceptsAnyPartitionCount() {
+        environment.setProperty("dispatch.partitioning.topics[" + DISPATCHED + "].strategy", "key-hash");
+        OutputPartitioning partitioning = partitioning();
+
+        partitioning.validate(Map.of(INPUT, 6, DISPATCHED, 4));
+
+        assertThat(partitioning.partition(DISPATCHED, 5, "key")).isNull();
+    }
+
+    @Test
+    void sticky_SendsBatchesToOnePartitionAndRotates() {
+        environment.setProperty("dispatch.partitioning.topics[" + TRACKING + "].strategy", "sticky");
+        environment.setProperty("dispatch.partitioning.sticky-batch-records", "4");
+        OutputPartitioning partitioning = partitioning();
+        partitioning.validate(Map.of(INPUT, 3, DISPATCHED, 3, TRACKING, 3));
+
+        List<Integer> chosen = IntStream.range(0, 12).mapToObj(i -> partitioning.partition(TRACKING, 0, "key-" + i)).toList();
+
+        assertThat(chosen).containsExactly(0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2);
+    }
+
+    @Test
+    void consistentHash_KeysStayOnTheirPartitionWhileBalanced() {
+        ConsistentHashPartitioner partitioner = new ConsistentHashPartitioner(8, 64, 1.25, 1_000_000);
+        List<String> keys = IntStream.range(0, 8_000).mapToObj(i -> "item-" + i).toList();
+
+        long moved = keys.stream().filter(key -> partitioner.partition(0, key) != partitioner.home(key)).count();
+        int[] homes = new int[8];
+        keys.forEach(key -> homes[partitioner.home(key)]++);
+
+        // Con claves uniformes casi todas van a su partición del anillo, y el anillo reparte razonablemente.
+        assertThat(moved).isLessThan(keys.size() / 10);
+        assertThat(IntStream.of(homes).max().getAsInt()).isLessThan(1_500);
+    }
+
+    @Test
+    void consistentHash_HotKeyOverflowsToOtherPartitions() {
+        ConsistentHashPartitioner partitioner = new ConsistentHashPartitioner(4, 64, 1.25, 1_000_000);
+        int[] counts = new int[4];
+
+        for (int i = 0; i < 4_000; i++) {
+            counts[partitioner.partition(0, "hot-item")]++;
+        }
+
+        // Ninguna partición pasa de 1.25 veces la media (1000), redondeando por arriba.
+        assertThat(IntStream.of(counts).max().getAsInt()).isLessThanOrEqualTo(1_251);
+        assertThat(IntStream.of(counts).min().getAsInt()).isPositive();
+    }
+
+    @Test
+    void recordSent_ExportsRecordsPerPartitionAndSkew() {
+        OutputPartitioning partitioning = partitioning();
+        partitioning.validate(Map.of(INPUT, 2, DISPATCHED, 2));
+
+        for (int i = 0; i < 6; i++) {
+            partitioning.recordSent(DISPATCHED, 0, null);
+        }
+        partitioning.recordSent(DISPATCHED, 1, null);
+        partitioning.recordSent(DISPATCHED, 1, null);
+
+        assertThat(meterRegistry.get("dispatch.partitioning.records").tag("topic", DISPATCHED).tag("partition", "0").counter().count()).isEqualTo(6);
+        assertThat(meterRegistry.get("dispatch.partitioning.records").tag("topic", DISPATCHED).tag("partition", "1").counter().count()).isEqualTo(2);
+        // 6 sobre una media de 4.
+        assertThat(meterRegistry.get("dispatch.partitioning.skew").tag("topic", DISPATCHED).gauge().value()).isEqualTo(1.5);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void partition_UnresolvedCountFallsBackToKeyHashOnlyUntilTheRetry() throws InterruptedException {
+        environment.setProperty("dispatch.partitioning.topics[" + TRACKING + "].strategy", "sticky");
+        environment.setProperty("dispatch.partitioning.sticky-batch-records", "1");
+        KafkaTemplate<String, Object> kafkaTemplateMock = mock(KafkaTemplate.class);
+        when(kafkaTemplateMock.partitionsFor(TRACKING))
+                .thenThrow(new TimeoutException("metadata"))
+                .thenReturn(IntStream.range(0, 3).mapToObj(p -> new PartitionInfo(TRACKING, p, null, null, null)).toList());
+        OutputPartitioning partitioning = new OutputPartitioning(environment, null, kafkaTemplateMock, meterRegistry, INPUT,
+                List.of(DISPATCHED, TRACKING), Duration.ofSeconds(1), Duration.ofMillis(50));
+
+        assertThat(partitioning.partition(TRACKING, 0, "key")).isNull();
+        // Dentro del backoff no se vuelve a consultar (ni a bloquear) en cada envío.
+        assertThat(partitioning.partition(TRACKING, 0, "key")).isNull();
+        verify(kafkaTemplateMock, times(1)).partitionsFor(TRACKING);
+
+        Thread.sleep(60);
+        assertThat(partitioning.partition(TRACKING, 0, "key")).isEqualTo(0);
+        assertThat(partitioning.partition(TRACKING, 0, "key")).isEqualTo(1);
+        verify(kafkaTemplateMock, times(2)).partitionsFor(TRACKING);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordSent_LazyMirrorInputWithFewerPartitionsThanTheInputFallsBackToKeyHash() {
+        KafkaTemplate<String, Object> kafkaTemplateMock = mock(KafkaTemplate.class);
+        when(kafkaTemplateMock.partitionsFor(DISPATCHED)).thenReturn(partitions(DISPATCHED, 4));
+        when(kafkaTemplateMock.partitionsFor(INPUT)).thenReturn(partitions(INPUT, 6));
+        OutputPartitioning partitioning = new OutputPartitioning(environment, null, kafkaTemplateMock, meterRegistry, INPUT,
+                List.of(DISPATCHED, TRACKING), Duration.ofSeconds(1), Duration.ofSeconds(30));
+        // Sin la validación del arranque (describe agotó su tiempo), se resuelve con el primer envío confirmado.
+        partitioning.recordSent(DISPATCHED, 1, null);
+
+        // Ni 5 % 4 = 1 ni la partición 5: key-hash explícito.
+        assertThat(partitioning.partition(DISPATCHED, 5, "key")).isNull();
+        assertThat(partitioning.partition(DISPATCHED, 1, "key")).isNull();
+    }
+
+    @Test
+    void partition_MirrorInputOutOfRangeFallsBackToKeyHash() {
+        OutputPartitioning partitioning = partitioning();
+        partitioning.validate(Map.of(DISPATCHED, 4));
+
+        assertThat(partitioning.partition(DISPATCHED, 3, "key")).isEqualTo(3);
+        assertThat(partitioning.partition(DISPATCHED, 5, "key")).isNull();
+        assertThat(partitioning.partition(DISPATCHED, 3, "key")).isNull();
+    }
+
+    private static List<PartitionInfo> partitions(String topic, int count) {
+        return IntStream.range(0, count).mapToObj(p -> new PartitionInfo(topic, p, null, null, null)).toList();
+    }
+
+    private OutputPartitioning partitioning() {
+        return new OutputPartitioning(environment, null, null, meterRegistry, INPUT, List.of(DISPATCHED, TRACKING), Duration.ofSeconds(1), Duration.ofSeconds(30));
+    }
+}
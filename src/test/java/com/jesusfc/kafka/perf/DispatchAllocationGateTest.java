@@ -0,0 +1,138 @@
+package com.jesusfc.kafka.perf;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.jesusfc.kafka.client.StockServiceClient;
+import com.jesusfc.kafka.logging.DispatchEventLog;
+import com.jesusfc.kafka.message.OrderCreated;
+import com.jesusfc.kafka.service.DispatchEventSender;
+import com.jesusfc.kafka.service.DispatchService;
+import com.jesusfc.kafka.service.DispatchedOrderRegistry;
+import com.jesusfc.kafka.util.TestEventData;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.SendResult;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Control de asignación de memoria del camino caliente: mide los bytes asignados por pedido despachado en
+DispatchService.process y falla el build si superan el presupuesto. Usa el mismo contador por hilo que el profiler
+"gc" de JMH (gc.alloc.rate.norm), com.sun.management.ThreadMXBean#getThreadAllocatedBytes.
+Kafka y el servicio de stock se sustituyen por stubs que no asignan memoria, así que lo que se mide es lo que crea
+nuestro código. El registro de despachados sí cuenta: su entrada por pedido es parte del presupuesto.
+No lleva la etiqueta "perf": se ejecuta en cada build, en su propia JVM (ejecución "allocation-gate" de surefire)
+para que la medida no dependa del perfil del JIT que dejen otros tests.
+ */
+@Slf4j
+@Tag("allocation")
+class DispatchAllocationGateTest {
+
+    private static final long BYTES_PER_RECORD_BUDGET = 160;
+    private static final int ORDERS = 10_000;
+    private static final int ITEMS = 50;
+    private static final int WARMUP_ROUNDS = 30;
+    private static final int MEASURED_ROUNDS = 20;
+
+    private static final CompletableFuture<SendResult<String, Object>> ACKNOWLEDGED = CompletableFuture.completedFuture(null);
+
+    private Level dispatchServiceLevel;
+
+    @BeforeEach
+    void setUp() {
+        // Nivel de log de producción: el log por pedido no debe asignar nada.
+        Logger logger = (Logger) LoggerFactory.getLogger(DispatchService.class);
+        dispatchServiceLevel = logger.getLevel();
+        logger.setLevel(Level.INFO);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ((Logger) LoggerFactory.getLogger(DispatchService.class)).setLevel(dispatchServiceLevel);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void dispatchHotPath_StaysWithinAllocationBudget() throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        DispatchService dispatchService = new DispatchService(
+                new DispatchEventSender(new AcknowledgingKafkaTemplate(mock(ProducerFactory.class))),
+                new AvailableStockServiceClient(),
+                new DispatchedOrderRegistry(1_000, Duration.ofDays(1)),
+                DispatchEventLog.withDefaults());
+        List<OrderCreated> orders = IntStream.range(0, ORDERS)
+                .mapToObj(i -> TestEventData.buildOrderCreatedEvent(randomUUID(), "item-" + (i % ITEMS)))
+                .toList();
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            dispatchAll(dispatchService, orders);
+        }
+        long threadId = Thread.currentThread().threadId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            dispatchAll(dispatchService, orders);
+        }
+        long bytesPerRecord = (threads.getThreadAllocatedBytes(threadId) - before) / ((long) ORDERS * MEASURED_ROUNDS);
+
+        log.info("Dispatch hot path allocates {} bytes per record (budget {})", bytesPerRecord, BYTES_PER_RECORD_BUDGET);
+        assertThat(bytesPerRecord).isLessThanOrEqualTo(BYTES_PER_RECORD_BUDGET);
+    }
+
+    private static void dispatchAll(DispatchService dispatchService, List<OrderCreated> orders) throws Exception {
+        for (int i = 0; i < orders.size(); i++) {
+            dispatchService.process(i & 7, "key", orders.get(i));
+        }
+    }
+
+    private static class AcknowledgingKafkaTemplate extends KafkaTemplate<String, Object> {
+
+        AcknowledgingKafkaTemplate(ProducerFactory<String, Object> producerFactory) {
+            super(producerFactory);
+        }
+
+        @Override
+        public CompletableFuture<SendResult<String, Object>> send(String topic, String key, Object data) {
+            return ACKNOWLEDGED;
+        }
+
+        @Override
+        public CompletableFuture<SendResult<String, Object>> send(String topic, Integer partition, String key, Object data) {
+            return ACKNOWLEDGED;
+        }
+    }
+
+    private static class AvailableStockServiceClient extends StockServiceClient {
+
+        AvailableStockServiceClient() {
+            super(null, "http://localhost/stock");
+        }
+
+        @Override
+        public String checkAvailability(String item) {
+            return "true";
+        }
+    }
+}
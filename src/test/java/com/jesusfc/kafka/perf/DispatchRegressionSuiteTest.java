@@ -0,0 +1,542 @@
+package com.jesusfc.kafka.perf;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.extension.Parameters;
+import com.github.tomakehurst.wiremock.extension.ResponseDefinitionTransformerV2;
+import com.github.tomakehurst.wiremock.http.ResponseDefinition;
+import com.github.tomakehurst.wiremock.stubbing.ServeEvent;
+import com.jesusfc.kafka.client.StockServiceClient;
+import com.jesusfc.kafka.config.KafkaConfig;
+import com.jesusfc.kafka.handler.OrderCreatedHandler;
+import com.jesusfc.kafka.logging.DispatchEventLog;
+import com.jesusfc.kafka.message.OrderCreated;
+import com.jesusfc.kafka.perf.PerfBaseline.Metric;
+import com.jesusfc.kafka.pipeline.StagedDispatchPipeline;
+import com.jesusfc.kafka.rebalance.DrainingRebalanceListener;
+import com.jesusfc.kafka.rebalance.StaticMembershipCustomizer;
+import com.jesusfc.kafka.service.DispatchEventSender;
+import com.jesusfc.kafka.service.DispatchService;
+import com.jesusfc.kafka.service.DispatchedOrderRegistry;
+import com.jesusfc.kafka.util.TestEventData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Suite de regresión de rendimiento del camino de dispatch completo: broker embebido, servicio de stock en WireMock y
+los mismos ConsumerFactory, ProducerFactory y factoría de contenedores de KafkaConfig que usa el servicio, con
+OrderCreatedHandler y DispatchService reales. Cada escenario es una carga fija:
+  steady-state     artículos repartidos uniformemente, stock inmediato.
+  hot-item-skew    el 80 % de los pedidos es del mismo artículo y la key es el artículo: una partición se lleva casi
+                   todo el trabajo y el resto de consumidores está ocioso.
+  stock-brownout   el servicio de stock responde con un retardo log-normal (mediana 8 ms), un 2 % de 503 y un 0,5 % de
+                   respuestas más lentas que el timeout del cliente: los reintentos del contenedor son parte de la carga
+                   y el p99 es el de un pedido reintentado.
+  broker-slowdown  otro productor satura el broker con records grandes (acks=all) mientras dura el escenario.
+Todos los escenarios arrancan y se calientan antes de medir ninguno, y cada ronda los recorre en un orden barajado:
+así la deriva de la JVM y del broker a lo largo de la ejecución (JIT, heap, segmentos del log) se reparte entre todos
+en vez de cargársela siempre al último. Por escenario mide, con la mediana de ROUNDS rondas:
+  throughput   pedidos/s al vaciar un atasco de BACKLOG pedidos (contenedor en pausa mientras se publican).
+  latencia     p50/p95/p99 de publicado -> despachado (los tres envíos confirmados) a un ritmo fijo por escenario,
+               por debajo de su throughput para medir el servicio y no la cola. Los percentiles salen de los pedidos
+               de todas las rondas juntos (ROUNDS x PACED): con solo PACED el p99 son seis pedidos.
+  asignación   bytes por pedido en los hilos del contenedor durante el atasco.
+  GC           colecciones y tiempo de GC de la JVM (broker incluido) durante la ronda.
+Los resultados se comparan con perf/dispatch-regression-baseline.properties y el test falla si alguna métrica empeora
+más de perf.tolerance (25 % por defecto). Cada ejecución deja sus resultados en target/perf; para aceptar los
+nuevos valores como referencia (p. ej. tras un ajuste de KafkaConfig en la máquina de referencia):
+  ./mvnw test -Pperf -Dtest=DispatchRegressionSuiteTest -Dperf.baseline.update=true
+Se ejecuta con el perfil "perf": ./mvnw test -Pperf
+ */
+@Slf4j
+@Tag("perf")
+@EmbeddedKafka(partitions = DispatchRegressionSuiteTest.PARTITIONS,
+        topics = {DispatchService.ORDER_DISPATCHED_TOPIC, "dispatch.tracking", DispatchService.DEFERRED_ORDER_TOPIC,
+                DispatchRegressionSuiteTest.NOISE_TOPIC})
+class DispatchRegressionSuiteTest {
+
+    static final String TOPIC_PREFIX = "order.created.perf.";
+    static final String NOISE_TOPIC = "perf.noise";
+    static final int PARTITIONS = 6;
+
+    private static final Path BASELINE = Path.of("src", "test", "resources", "perf", "dispatch-regression-baseline.properties");
+    private static final Path RESULTS = Path.of("target", "perf", "dispatch-regression.properties");
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("perf.tolerance", "0.25"));
+    private static final boolean UPDATE_BASELINE = Boolean.getBoolean("perf.baseline.update");
+
+    private static final int CONCURRENCY = 3;
+    private static final int WARMUP = 2_000;
+    private static final int ROUNDS = 5;
+    private static final int BACKLOG = 1_500;
+    private static final int PACED = 600;
+    private static final int ITEMS = 1_000;
+    private static final int CUSTOMERS = 20_000;
+    private static final int NOISE_RECORD_BYTES = 256 * 1024;
+    private static final String STOCK_PATH = "/api/stock/";
+    private static final Duration STOCK_TIMEOUT = Duration.ofMillis(250);
+    // FixedBackOff(100 ms, 3 reintentos) de KafkaConfig: tras el cuarto fallo el pedido se descarta.
+    private static final int DELIVERY_ATTEMPTS = 4;
+    private static final List<Class<?>> QUIET_LOGGERS = List.of(DispatchService.class, StockServiceClient.class);
+
+    private static final List<Scenario> SCENARIOS = List.of(
+            new Scenario("steady-state", 0.0, false, 0, 0.0, 0.0, false, 100),
+            new Scenario("hot-item-skew", 0.8, true, 0, 0.0, 0.0, false, 100),
+            new Scenario("stock-brownout", 0.0, false, 8, 0.02, 0.005, false, 100),
+            new Scenario("broker-slowdown", 0.0, false, 0, 0.0, 0.0, true, 100));
+
+    private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private WireMockServer stockService;
+    private final Map<Class<?>, Level> loggerLevels = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        // El log por pedido de DispatchService y los avisos por cada fallo del stock dominarían la medida.
+        for (Class<?> quiet : QUIET_LOGGERS) {
+            Logger logger = (Logger) LoggerFactory.getLogger(quiet);
+            loggerLevels.put(quiet, logger.getLevel());
+            logger.setLevel(Level.ERROR);
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        stockService = new WireMockServer(options().dynamicPort().extensions(new StockFaults()));
+        stockService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockService.stop();
+        loggerLevels.forEach((quiet, level) -> ((Logger) LoggerFactory.getLogger(quiet)).setLevel(level));
+    }
+
+    @Test
+    void dispatchScenarios_DoNotRegressAgainstTheBaseline(EmbeddedKafkaBroker broker) throws Exception {
+        PerfBaseline baseline = PerfBaseline.load(BASELINE);
+        PerfBaseline recorded = PerfBaseline.empty();
+        List<String> regressions = new ArrayList<>();
+        StringBuilder report = new StringBuilder();
+
+        Map<String, List<Map<Metric, Double>>> rounds = new LinkedHashMap<>();
+        Map<String, List<long[]>> latencies = new LinkedHashMap<>();
+        List<Instance> instances = new ArrayList<>();
+        KafkaConfig kafkaConfig = new KafkaConfig();
+        KafkaTemplate<String, Object> orders = kafkaConfig.kafkaTemplate(kafkaConfig.producerFactory(broker.getBrokersAsString(), Duration.ofSeconds(10)));
+        Random random = new Random(42);
+        try {
+            for (Scenario scenario : SCENARIOS) {
+                Instance instance = new Instance(broker, scenario);
+                instances.add(instance);
+                instance.start();
+                rounds.put(scenario.name(), new ArrayList<>());
+                latencies.put(scenario.name(), new ArrayList<>());
+            }
+            // Calentamiento de todos los escenarios antes de medir ninguno: JIT, conexiones al stock (también las
+            // que fallan) y metadata de los topics de salida.
+            for (Instance instance : instances) {
+                publish(orders, instance, random, WARMUP, 0);
+                instance.awaitCompleted(WARMUP);
+            }
+            List<Instance> order = new ArrayList<>(instances);
+            for (int round = 0; round < ROUNDS; round++) {
+                Collections.shuffle(order, random);
+                for (Instance instance : order) {
+                    rounds.get(instance.scenario.name()).add(measure(broker, orders, instance, random));
+                    latencies.get(instance.scenario.name()).add(instance.latencies());
+                }
+            }
+        } finally {
+            instances.forEach(Instance::stop);
+            orders.destroy();
+        }
+
+        for (Scenario scenario : SCENARIOS) {
+            Map<Metric, Double> metrics = median(rounds.get(scenario.name()));
+            long[] pooled = latencies.get(scenario.name()).stream().flatMapToLong(Arrays::stream).toArray();
+            metrics.put(Metric.LATENCY_P50, percentileMillis(pooled, 0.50));
+            metrics.put(Metric.LATENCY_P95, percentileMillis(pooled, 0.95));
+            metrics.put(Metric.LATENCY_P99, percentileMillis(pooled, 0.99));
+            recorded.put(scenario.name(), metrics);
+            if (!baseline.has(scenario.name())) {
+                log.warn("No baseline for scenario {}, recording it only", scenario.name());
+            }
+            regressions.addAll(baseline.regressions(scenario.name(), metrics, TOLERANCE));
+            report.append(String.format("  %-16s %9.0f %8.0f %8.0f %8.0f %10.0f %5.0f %7.0f%n", scenario.name(),
+                    metrics.get(Metric.THROUGHPUT), metrics.get(Metric.LATENCY_P50), metrics.get(Metric.LATENCY_P95),
+                    metrics.get(Metric.LATENCY_P99), metrics.get(Metric.ALLOCATION), metrics.get(Metric.GC_COUNT),
+                    metrics.get(Metric.GC_TIME)));
+        }
+
+        String header = String.format("Dispatch regression suite, recorded on %s%nJava %s, %d processors",
+                LocalDate.now(), System.getProperty("java.version"), Runtime.getRuntime().availableProcessors());
+        recorded.write(RESULTS, header);
+        if (UPDATE_BASELINE) {
+            recorded.write(BASELINE, header);
+        }
+        log.info("""
+
+                        Dispatch regression suite ({} partitions, concurrency {}, backlog {}, {} paced orders, median of {} interleaved rounds, tolerance {}%)
+                          scenario          orders/s   p50 ms   p95 ms   p99 ms   bytes/order   gc   gc ms
+                        {}""",
+                PARTITIONS, CONCURRENCY, BACKLOG, PACED, ROUNDS, Math.round(TOLERANCE * 100), report);
+
+        if (!UPDATE_BASELINE) {
+            assertThat(regressions).as("Scenarios worse than %s", BASELINE).isEmpty();
+        }
+    }
+
+    private static Map<Metric, Double> median(List<Map<Metric, Double>> rounds) {
+        Map<Metric, Double> metrics = new EnumMap<>(Metric.class);
+        for (Metric metric : rounds.get(0).keySet()) {
+            metrics.put(metric, rounds.stream().mapToDouble(r -> r.get(metric)).sorted().toArray()[rounds.size() / 2]);
+        }
+        return metrics;
+    }
+
+    private void stubStock(Scenario scenario) {
+        ResponseDefinitionBuilder available = aResponse().withStatus(200).withBody("true");
+        if (scenario.stockMedianMillis() > 0) {
+            available = available.withLogNormalRandomDelay(scenario.stockMedianMillis(), 0.4);
+        }
+        if (scenario.stockErrorShare() > 0 || scenario.stockTimeoutShare() > 0) {
+            available = available.withTransformers(StockFaults.NAME)
+                    .withTransformerParameter(StockFaults.ERROR_SHARE, scenario.stockErrorShare())
+                    .withTransformerParameter(StockFaults.TIMEOUT_SHARE, scenario.stockTimeoutShare());
+        }
+        stockService.stubFor(get(urlPathEqualTo(STOCK_PATH + scenario.name())).willReturn(available));
+    }
+
+    /*
+     * Una ronda del escenario: throughput con un atasco publicado con el contenedor en pausa y vaciado de golpe, y
+     * pedidos a ritmo fijo, cuyas latencias quedan en la instancia. La GC es la de toda la ronda. El vecino ruidoso de broker-slowdown solo está activo
+     * durante sus propias rondas.
+     */
+    private Map<Metric, Double> measure(EmbeddedKafkaBroker broker, KafkaTemplate<String, Object> orders, Instance instance,
+                                        Random random) throws InterruptedException {
+        NoisyProducer noise = instance.scenario.brokerNoise() ? new NoisyProducer(broker) : null;
+        if (noise != null) {
+            noise.start();
+        }
+        try {
+            long gcCountBefore = gcCount();
+            long gcTimeBefore = gcMillis();
+
+            instance.container.pause();
+            await().atMost(Duration.ofSeconds(10)).until(instance.container::isContainerPaused);
+            publish(orders, instance, random, BACKLOG, 0);
+            instance.reset();
+            long allocatedBefore = instance.allocatedBytes();
+            long start = System.nanoTime();
+            instance.container.resume();
+            instance.awaitCompleted(BACKLOG);
+            double throughput = BACKLOG * 1e9 / (instance.lastCompletion.get() - start);
+            double bytesPerOrder = (double) (instance.allocatedBytes() - allocatedBefore) / BACKLOG;
+
+            instance.reset();
+            publish(orders, instance, random, PACED, instance.scenario.ratePerSecond());
+            instance.awaitCompleted(PACED);
+
+            Map<Metric, Double> metrics = new EnumMap<>(Metric.class);
+            metrics.put(Metric.THROUGHPUT, throughput);
+            metrics.put(Metric.ALLOCATION, bytesPerOrder);
+            metrics.put(Metric.GC_COUNT, (double) (gcCount() - gcCountBefore));
+            metrics.put(Metric.GC_TIME, (double) (gcMillis() - gcTimeBefore));
+            return metrics;
+        } finally {
+            if (noise != null) {
+                noise.stop();
+            }
+        }
+    }
+
+    /*
+     * Publica count pedidos al topic del escenario: de golpe si ratePerSecond es 0, si no uno cada 1/ratePerSecond
+     * segundos. El instante de publicación de cada pedido se guarda para la latencia.
+     */
+    private static void publish(KafkaTemplate<String, Object> orders, Instance instance, Random random, int count,
+                                int ratePerSecond) {
+        Scenario scenario = instance.scenario;
+        long interval = ratePerSecond == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long next = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            if (interval > 0) {
+                LockSupport.parkNanos(next - System.nanoTime());
+                next += interval;
+            }
+            String item = random.nextDouble() < scenario.hotItemShare() ? "hot-item" : "item-" + random.nextInt(ITEMS);
+            String key = scenario.keyByItem() ? item : "customer-" + random.nextInt(CUSTOMERS);
+            UUID orderId = randomUUID();
+            instance.published.put(orderId, System.nanoTime());
+            orders.send(instance.topic, key, TestEventData.buildOrderCreatedEvent(orderId, item));
+        }
+        orders.flush();
+    }
+
+    private static double percentileMillis(long[] latencies, double percentile) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private record Scenario(String name, double hotItemShare, boolean keyByItem, int stockMedianMillis, double stockErrorShare,
+                            double stockTimeoutShare, boolean brokerNoise, int ratePerSecond) {
+    }
+
+    /*
+     * El servicio tal y como lo monta KafkaConfig: misma factoría de contenedores (rebalanceo cooperativo, pertenencia
+     * estática, manejador de errores) con un topic de entrada y un grupo propios por escenario y concurrencia fija para
+     * que el reparto de particiones entre consumidores sea parte de la carga. Un pedido cuenta como terminado una sola
+     * vez, por orderId: al despacharse o cuando el manejador de errores agota sus reintentos y lo descarta.
+     */
+    private final class Instance {
+
+        private final Scenario scenario;
+        private final String topic;
+        private final ConcurrentMessageListenerContainer<String, Object> container;
+        private final KafkaTemplate<String, Object> kafkaTemplate;
+        private final Map<UUID, Long> published = new ConcurrentHashMap<>();
+        private final Map<UUID, Integer> failedAttempts = new ConcurrentHashMap<>();
+        private final long[] latencies = new long[Math.max(BACKLOG, PACED) + WARMUP];
+        private final AtomicInteger dispatched = new AtomicInteger();
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicLong lastCompletion = new AtomicLong();
+        private final String threadPrefix;
+
+        Instance(EmbeddedKafkaBroker broker, Scenario scenario) {
+            this.scenario = scenario;
+            this.topic = TOPIC_PREFIX + scenario.name();
+            broker.addTopics(new NewTopic(topic, PARTITIONS, (short) 1));
+            stubStock(scenario);
+
+            KafkaConfig kafkaConfig = new KafkaConfig();
+            kafkaTemplate = kafkaConfig.kafkaTemplate(kafkaConfig.producerFactory(broker.getBrokersAsString(), Duration.ofSeconds(10)));
+            SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+            requestFactory.setConnectTimeout(STOCK_TIMEOUT);
+            requestFactory.setReadTimeout(STOCK_TIMEOUT);
+            DispatchService dispatchService = new DispatchService(new DispatchEventSender(kafkaTemplate),
+                    new StockServiceClient(new RestTemplate(requestFactory), "http://localhost:" + stockService.port() + STOCK_PATH + scenario.name()),
+                    new DispatchedOrderRegistry(100_000, Duration.ofDays(1)), DispatchEventLog.withDefaults());
+            OrderCreatedHandler handler = new OrderCreatedHandler(dispatchService, DispatchEventLog.withDefaults());
+
+            DrainingRebalanceListener rebalanceListener = new DrainingRebalanceListener(
+                    new StaticListableBeanFactory().getBeanProvider(StagedDispatchPipeline.class), topic,
+                    Duration.ofSeconds(10), new SimpleMeterRegistry());
+            ConsumerFactory<String, Object> consumerFactory = kafkaConfig.consumerFactory(broker.getBrokersAsString(), Duration.ofSeconds(10), Duration.ofSeconds(1));
+            container = kafkaConfig.kafkaListenerContainerFactory(consumerFactory, rebalanceListener,
+                            new StaticMembershipCustomizer("perf-" + scenario.name()))
+                    .createContainer(topic);
+            container.setBeanName("perf-" + scenario.name());
+            container.setConcurrency(CONCURRENCY);
+            container.getContainerProperties().setGroupId("perf-" + scenario.name() + "-" + randomUUID());
+            container.getContainerProperties().getKafkaConsumerProperties().setProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+            container.setupMessageListener((MessageListener<String, Object>) record -> {
+                OrderCreated order = (OrderCreated) record.value();
+                try {
+                    handler.listen(record.partition(), record.key(), order);
+                } catch (RuntimeException e) {
+                    if (failedAttempts.merge(order.getOrderId(), 1, Integer::sum) >= DELIVERY_ATTEMPTS) {
+                        complete(order.getOrderId(), false);
+                    }
+                    throw e;
+                }
+                complete(order.getOrderId(), true);
+            });
+            threadPrefix = "perf-" + scenario.name() + "-";
+        }
+
+        void start() {
+            container.start();
+            ContainerTestUtils.waitForAssignment(container, PARTITIONS);
+        }
+
+        void stop() {
+            container.stop();
+            kafkaTemplate.destroy();
+        }
+
+        void reset() {
+            dispatched.set(0);
+            completed.set(0);
+            lastCompletion.set(0);
+        }
+
+        void awaitCompleted(int count) {
+            await().atMost(Duration.ofSeconds(120)).pollInterval(Duration.ofMillis(10)).until(() -> completed.get() >= count);
+        }
+
+        long[] latencies() {
+            return Arrays.copyOf(latencies, Math.min(dispatched.get(), latencies.length));
+        }
+
+        private void complete(UUID orderId, boolean dispatchedOrder) {
+            long now = System.nanoTime();
+            Long publishedAt = published.remove(orderId);
+            if (publishedAt == null) {
+                // Re-entrega de un pedido que ya se contó.
+                return;
+            }
+            failedAttempts.remove(orderId);
+            if (dispatchedOrder) {
+                int index = dispatched.getAndIncrement();
+                if (index < latencies.length) {
+                    latencies[index] = now - publishedAt;
+                }
+            }
+            lastCompletion.accumulateAndGet(now, Math::max);
+            completed.incrementAndGet();
+        }
+
+        /*
+         * Bytes asignados por los hilos de los consumidores del contenedor: deserialización, consulta de stock,
+         * serialización y envío de los eventos. El hilo de red del productor y el broker quedan fuera.
+         */
+        long allocatedBytes() {
+            long[] ids = Arrays.stream(threads.getThreadInfo(threads.getAllThreadIds()))
+                    .filter(info -> info != null && info.getThreadName().startsWith(threadPrefix))
+                    .mapToLong(ThreadInfo::getThreadId)
+                    .toArray();
+            return Arrays.stream(threads.getThreadAllocatedBytes(ids)).filter(bytes -> bytes > 0).sum();
+        }
+    }
+
+    /*
+     * Vecino ruidoso del broker: publica records grandes con acks=all en bucle hasta que se para.
+     */
+    private static final class NoisyProducer {
+
+        private final KafkaProducer<byte[], byte[]> producer;
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        NoisyProducer(EmbeddedKafkaBroker broker) {
+            producer = new KafkaProducer<>(Map.of(
+                    ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                    ProducerConfig.ACKS_CONFIG, "all",
+                    ProducerConfig.LINGER_MS_CONFIG, 0,
+                    ProducerConfig.MAX_REQUEST_SIZE_CONFIG, 2 * NOISE_RECORD_BYTES),
+                    new ByteArraySerializer(), new ByteArraySerializer());
+            byte[] payload = new byte[NOISE_RECORD_BYTES];
+            new Random(7).nextBytes(payload);
+            thread = new Thread(() -> {
+                while (running) {
+                    producer.send(new ProducerRecord<>(NOISE_TOPIC, payload));
+                }
+            }, "perf-noise");
+            thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+            producer.close(Duration.ofSeconds(10));
+        }
+    }
+
+    /*
+     * Fallos del servicio de stock en stock-brownout: una fracción de las respuestas es un 503 y otra llega después
+     * del timeout de lectura del cliente. Los dos acaban en RetryableException y en los reintentos del contenedor.
+     */
+    private static final class StockFaults implements ResponseDefinitionTransformerV2 {
+
+        static final String NAME = "stock-faults";
+        static final String ERROR_SHARE = "error-share";
+        static final String TIMEOUT_SHARE = "timeout-share";
+
+        @Override
+        public ResponseDefinition transform(ServeEvent serveEvent) {
+            Parameters parameters = serveEvent.getTransformerParameters();
+            double errorShare = ((Number) parameters.get(ERROR_SHARE)).doubleValue();
+            double timeoutShare = ((Number) parameters.get(TIMEOUT_SHARE)).doubleValue();
+            double draw = ThreadLocalRandom.current().nextDouble();
+            if (draw < errorShare) {
+                return aResponse().withStatus(503).build();
+            }
+            if (draw < errorShare + timeoutShare) {
+                return ResponseDefinitionBuilder.like(serveEvent.getResponseDefinition())
+                        .withFixedDelay((int) STOCK_TIMEOUT.multipliedBy(2).toMillis())
+                        .build();
+            }
+            return serveEvent.getResponseDefinition();
+        }
+
+        @Override
+        public boolean applyGlobally() {
+            return false;
+        }
+
+        @Override
+        public String getName() {
+            return NAME;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.jesusfc.kafka.perf;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.jesusfc.kafka.logging.DispatchEventLog;
+import com.jesusfc.kafka.logging.DispatchEventType;
+import com.jesusfc.kafka.message.OrderCreated;
+import com.jesusfc.kafka.util.TestEventData;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Benchmark del coste del log por record en el hilo del listener:
+  - sync-info:      el log.info con el payload completo que había antes en OrderCreatedHandler.
+  - events-all:     DispatchEventLog escribiendo todos los eventos (sin muestreo) por la cola asíncrona.
+  - events-sampled: DispatchEventLog con la política por defecto (1% y como mucho 100 eventos/s).
+Los appenders escriben a un OutputStream nulo, así que se mide el formateo y el encolado, no el disco.
+Se ejecuta con el perfil "perf": ./mvnw test -Pperf
+ */
+@Slf4j
+@Tag("perf")
+class EventLoggingBenchmarkTest {
+
+    private static final int RECORDS = 200_000;
+    private static final int ROUNDS = 5;
+
+    private final Logger syncLogger = (Logger) LoggerFactory.getLogger("benchmark.sync");
+    private final Logger eventsLogger = (Logger) LoggerFactory.getLogger("dispatch.events");
+    private OutputStreamAppender<ILoggingEvent> syncAppender;
+    private OutputStreamAppender<ILoggingEvent> eventsAppender;
+
+    @BeforeEach
+    void setUp() {
+        syncAppender = nullAppender("%d %5p [%t] %logger : %m%n");
+        eventsAppender = nullAppender("%d %5p [%t] %logger : %m %kvp{DOUBLE}%n");
+        attach(syncLogger, syncAppender);
+        attach(eventsLogger, eventsAppender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        detach(syncLogger, syncAppender);
+        detach(eventsLogger, eventsAppender);
+    }
+
+    @Test
+    void sampledEventLogIsCheaperThanSynchronousPayloadLogging() throws InterruptedException {
+        List<OrderCreated> orders = IntStream.range(0, 1024)
+                .mapToObj(i -> TestEventData.buildOrderCreatedEvent(randomUUID(), "item-" + i))
+                .toList();
+
+        Result sync = measure(orders, order ->
+                syncLogger.info("Processing order created event, partition: {}, key: {}, payload: {}", 3, "key", order));
+
+        DispatchEventLog sampledEvents = DispatchEventLog.withDefaults();
+        sampledEvents.start();
+        Result sampled = measure(orders, order -> sampledEvents.log(DispatchEventType.ORDER_RECEIVED,
+                "partition", 3, "key", "key", "orderId", order.getOrderId(), "item", order.getItem()));
+        sampledEvents.stop();
+
+        MockEnvironment unsampled = new MockEnvironment()
+                .withProperty("dispatch.logging.events.order-received.sample-rate", "1")
+                .withProperty("dispatch.logging.events.order-received.rate-limit", "0");
+        DispatchEventLog allEvents = new DispatchEventLog(unsampled, 65536);
+        allEvents.start();
+        Result all = measure(orders, order -> allEvents.log(DispatchEventType.ORDER_RECEIVED,
+                "partition", 3, "key", "key", "orderId", order.getOrderId(), "item", order.getItem()));
+        allEvents.stop();
+
+        log.info("""
+
+                        Per-record logging cost on the listener thread ({} records)
+                          mode            ns/record   bytes/record   dropped
+                          sync-info       {}     {}
+                          events-all      {}     {}      {}
+                          events-sampled  {}     {}      {}
+                        """,
+                RECORDS,
+                column(sync.nanosPerRecord()), column(sync.bytesPerRecord()),
+                column(all.nanosPerRecord()), column(all.bytesPerRecord()), allEvents.dropped(),
+                column(sampled.nanosPerRecord()), column(sampled.bytesPerRecord()), sampledEvents.dropped());
+
+        assertThat(sampled.nanosPerRecord()).isLessThan(sync.nanosPerRecord());
+        assertThat(sampled.bytesPerRecord()).isLessThan(sync.bytesPerRecord());
+    }
+
+    private static Result measure(List<OrderCreated> orders, Consumer<OrderCreated> logRecord) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        Result last = null;
+        // La primera ronda es de calentamiento; nos quedamos con la última.
+        for (int round = 0; round < ROUNDS; round++) {
+            long bytes = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < RECORDS; i++) {
+                logRecord.accept(orders.get(i & 1023));
+            }
+            last = new Result((double) (System.nanoTime() - start) / RECORDS,
+                    (double) (threads.getThreadAllocatedBytes(threadId) - bytes) / RECORDS);
+        }
+        return last;
+    }
+
+    private static OutputStreamAppender<ILoggingEvent> nullAppender(String pattern) {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern(pattern);
+        encoder.start();
+        OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(context);
+        appender.setEncoder(encoder);
+        appender.setOutputStream(OutputStream.nullOutputStream());
+        appender.start();
+        return appender;
+    }
+
+    private static void attach(Logger logger, OutputStreamAppender<ILoggingEvent> appender) {
+        logger.addAppender(appender);
+        logger.setAdditive(false);
+        logger.setLevel(Level.INFO);
+    }
+
+    private static void detach(Logger logger, OutputStreamAppender<ILoggingEvent> appender) {
+        logger.detachAppender(appender);
+        logger.setAdditive(true);
+        logger.setLevel(null);
+        appender.stop();
+    }
+
+    private static String column(double value) {
+        return String.format("%9.1f", value);
+    }
+
+    private record Result(double nanosPerRecord, double bytesPerRecord) {
+    }
+}
@@ -0,0 +1,160 @@
+package com.jesusfc.kafka.perf;
+
+import com.jesusfc.kafka.client.AvailabilityCache;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.utils.Utils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Harness de carga del reparto por artículo (dispatch.repartition.enabled). Simula, sin broker, el reparto de
+pedidos entre particiones con el mismo hash murmur2 que el partitioner de Kafka y mide por instancia la tasa de
+aciertos de su AvailabilityCache, comparando:
+  - key-hash: los pedidos se reparten por su key original (el comportamiento actual).
+  - item-hash: los pedidos se reparten por artículo (topic interno "my.order.created.by-item.topic").
+También informa de la contrapartida: el porcentaje de keys cuyos pedidos acaban en varias particiones y, por tanto,
+pierden el orden por key.
+Se ejecuta con el perfil "perf": ./mvnw test -Pperf
+ */
+@Slf4j
+@Tag("perf")
+class ItemAffinityLoadHarnessTest {
+
+    private static final int INSTANCES = 4;
+    private static final int PARTITIONS = 12;
+    private static final int ITEMS = 5_000;
+    private static final int CUSTOMERS = 20_000;
+    private static final int ORDERS = 200_000;
+    private static final int ORDERS_PER_SECOND = 20_000;
+    private static final Duration CACHE_TTL = Duration.ofSeconds(2);
+
+    @Test
+    void itemAffinityImprovesCacheHitRate() {
+        List<Order> orders = generateOrders(new Random(42));
+
+        Result keyHash = simulate(orders, Order::key);
+        Result itemHash = simulate(orders, Order::item);
+
+        log.info("""
+
+                        Item-affinity load harness ({} orders, {} items, {} instances, {} partitions, cache ttl {})
+                          mode       hit-rate   stock-calls   keys-split-across-partitions
+                          key-hash   {}      {}        {}
+                          item-hash  {}      {}        {}
+                        """,
+                ORDERS, ITEMS, INSTANCES, PARTITIONS, CACHE_TTL,
+                percent(keyHash.hitRate()), keyHash.stockCalls(), percent(keyHash.splitKeys()),
+                percent(itemHash.hitRate()), itemHash.stockCalls(), percent(itemHash.splitKeys()));
+
+        assertThat(itemHash.hitRate()).isGreaterThan(keyHash.hitRate());
+        assertThat(itemHash.stockCalls()).isLessThan(keyHash.stockCalls());
+        // Con reparto por key el orden por key se mantiene siempre.
+        assertThat(keyHash.splitKeys()).isZero();
+    }
+
+    private Result simulate(List<Order> orders, Function<Order, String> partitionKey) {
+        SimClock clock = new SimClock();
+        Map<Integer, AvailabilityCache> caches = new HashMap<>();
+        IntStream.range(0, INSTANCES).forEach(i -> caches.put(i, new AvailabilityCache(CACHE_TTL, ITEMS, clock)));
+        Map<String, Set<Integer>> partitionsPerKey = new HashMap<>();
+
+        long stockCalls = 0;
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            clock.millis = i * 1000L / ORDERS_PER_SECOND;
+            int partition = partition(partitionKey.apply(order));
+            partitionsPerKey.computeIfAbsent(order.key(), k -> new HashSet<>()).add(partition);
+
+            // Asignación de particiones round-robin entre instancias, como haría el assignor con un único topic.
+            AvailabilityCache cache = caches.get(partition % INSTANCES);
+            if (cache.get(order.item()) == null) {
+                stockCalls++;
+                cache.put(order.item(), "true");
+            }
+        }
+
+        long hits = caches.values().stream().mapToLong(AvailabilityCache::hits).sum();
+        long misses = caches.values().stream().mapToLong(AvailabilityCache::misses).sum();
+        long split = partitionsPerKey.values().stream().filter(p -> p.size() > 1).count();
+        return new Result((double) hits / (hits + misses), stockCalls, (double) split / partitionsPerKey.size());
+    }
+
+    private static int partition(String key) {
+        // Mismo cálculo que el partitioner por defecto de Kafka para records con key.
+        return Utils.toPositive(Utils.murmur2(key.getBytes(StandardCharsets.UTF_8))) % PARTITIONS;
+    }
+
+    private static List<Order> generateOrders(Random random) {
+        // Popularidad de artículos tipo Zipf (s = 1): unos pocos artículos concentran la mayoría de pedidos.
+        double[] cumulative = new double[ITEMS];
+        double sum = 0;
+        for (int i = 0; i < ITEMS; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        final double total = sum;
+        return IntStream.range(0, ORDERS).mapToObj(i -> {
+            double target = random.nextDouble() * total;
+            int index = Arrays.binarySearch(cumulative, target);
+            int item = index >= 0 ? index : -index - 1;
+            return new Order("customer-" + random.nextInt(CUSTOMERS), "item-" + Math.min(item, ITEMS - 1));
+        }).toList();
+    }
+
+    private static String percent(double value) {
+        return String.format("%6.2f%%", value * 100);
+    }
+
+    private record Order(String key, String item) {
+    }
+
+    private record Result(double hitRate, long stockCalls, double splitKeys) {
+    }
+
+    private static class SimClock extends Clock {
+        private long millis;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+}
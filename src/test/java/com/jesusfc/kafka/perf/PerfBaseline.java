@@ -0,0 +1,118 @@
+package com.jesusfc.kafka.perf;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Fichero de referencia de la suite de regresión de rendimiento: una línea <escenario>.<métrica>=<valor> por métrica,
+versionado junto al código para que un cambio de rendimiento se vea en el diff igual que uno de comportamiento.
+Cada métrica sabe en qué dirección empeora y cuánto margen absoluto tiene además de la tolerancia relativa, para
+que 1 ms -> 2 ms de p50 en un broker local no cuente como una regresión del 100 %.
+ */
+final class PerfBaseline {
+
+    enum Metric {
+        THROUGHPUT("throughput.orders-per-second", true, 0),
+        LATENCY_P50("latency.p50-ms", false, 2),
+        LATENCY_P95("latency.p95-ms", false, 10),
+        LATENCY_P99("latency.p99-ms", false, 20),
+        ALLOCATION("allocation.bytes-per-order", false, 0),
+        GC_COUNT("gc.count", false, 2),
+        GC_TIME("gc.time-ms", false, 50);
+
+        private final String key;
+        private final boolean higherIsBetter;
+        private final double slack;
+
+        Metric(String key, boolean higherIsBetter, double slack) {
+            this.key = key;
+            this.higherIsBetter = higherIsBetter;
+            this.slack = slack;
+        }
+
+        String key() {
+            return key;
+        }
+
+        boolean regressed(double baseline, double current, double tolerance) {
+            return higherIsBetter
+                    ? current < baseline * (1 - tolerance) - slack
+                    : current > baseline * (1 + tolerance) + slack;
+        }
+    }
+
+    private final Map<String, Double> values = new LinkedHashMap<>();
+
+    private PerfBaseline() {
+    }
+
+    static PerfBaseline empty() {
+        return new PerfBaseline();
+    }
+
+    static PerfBaseline load(Path file) throws IOException {
+        PerfBaseline baseline = new PerfBaseline();
+        if (Files.exists(file)) {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            properties.stringPropertyNames().stream().sorted()
+                    .forEach(name -> baseline.values.put(name, Double.parseDouble(properties.getProperty(name))));
+        }
+        return baseline;
+    }
+
+    boolean has(String scenario) {
+        return values.keySet().stream().anyMatch(key -> key.startsWith(scenario + "."));
+    }
+
+    void put(String scenario, Map<Metric, Double> metrics) {
+        metrics.forEach((metric, value) -> values.put(scenario + "." + metric.key(), value));
+    }
+
+    /**
+     * Describes every metric of the scenario that is worse than the baseline beyond the tolerance.
+     */
+    List<String> regressions(String scenario, Map<Metric, Double> metrics, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        metrics.forEach((metric, current) -> {
+            Double baseline = values.get(scenario + "." + metric.key());
+            if (baseline != null && metric.regressed(baseline, current, tolerance)) {
+                regressions.add(String.format(Locale.ROOT, "%s %s: %.1f (baseline %.1f, tolerance %.0f%%)",
+                        scenario, metric.key(), current, baseline, tolerance * 100));
+            }
+        });
+        return regressions;
+    }
+
+    void write(Path file, String header) throws IOException {
+        StringBuilder content = new StringBuilder();
+        header.lines().forEach(line -> content.append("# ").append(line).append('\n'));
+        String previousScenario = null;
+        for (Map.Entry<String, Double> entry : values.entrySet()) {
+            String scenario = entry.getKey().substring(0, entry.getKey().indexOf('.'));
+            if (previousScenario != null && !previousScenario.equals(scenario)) {
+                content.append('\n');
+            }
+            previousScenario = scenario;
+            content.append(entry.getKey()).append('=').append(String.format(Locale.ROOT, "%.1f", entry.getValue())).append('\n');
+        }
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+    }
+}
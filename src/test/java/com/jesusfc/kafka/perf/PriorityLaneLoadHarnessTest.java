@@ -0,0 +1,180 @@
+package com.jesusfc.kafka.perf;
+
+import com.jesusfc.kafka.lanes.LaneArbiter;
+import com.jesusfc.kafka.message.OrderPriority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.jesusfc.kafka.message.OrderPriority.BULK;
+import static com.jesusfc.kafka.message.OrderPriority.EXPRESS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Harness de carga de los carriles por prioridad (dispatch.lanes.enabled). Sin broker: cada "dispatch" ocupa uno de
+SLOTS huecos (la concurrencia que aguanta el servicio de stock) durante SERVICE_TIME. Llega de golpe un atasco de
+BULK_BACKLOG pedidos bulk y, mientras se procesa, pedidos express a EXPRESS_RATE por segundo. Se compara:
+  - single-lane: un único listener FIFO, como hasta ahora; los express esperan detrás de todo el atasco.
+  - lanes:       un listener por carril (concurrencia 3 y 4) que comparten los huecos con el LaneArbiter (pesos 3:1).
+Informa de los percentiles de latencia (llegada -> despachado) por carril en cada modo.
+Se ejecuta con el perfil "perf": ./mvnw test -Pperf
+ */
+@Slf4j
+@Tag("perf")
+class PriorityLaneLoadHarnessTest {
+
+    private static final int SLOTS = 4;
+    private static final long SERVICE_TIME_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final int BULK_BACKLOG = 4_000;
+    private static final int EXPRESS_RATE = 100;
+    private static final int EXPRESS_ORDERS = 150;
+
+    @Test
+    void expressLaneIsIsolatedFromTheBulkBacklog() throws InterruptedException {
+        Result single = singleLane();
+        Result lanes = lanes();
+
+        log.info("""
+
+                        Priority lane load harness ({} bulk backlog, {} express/s, {} slots, {} ms per dispatch)
+                          mode         lane      p50 ms    p95 ms    p99 ms    max ms
+                          single-lane  express  {}
+                          single-lane  bulk     {}
+                          lanes        express  {}
+                          lanes        bulk     {}
+                          bulk drain time: single-lane {} ms, lanes {} ms
+                        """,
+                BULK_BACKLOG, EXPRESS_RATE, SLOTS, TimeUnit.NANOSECONDS.toMillis(SERVICE_TIME_NANOS),
+                percentiles(single.express()), percentiles(single.bulk()),
+                percentiles(lanes.express()), percentiles(lanes.bulk()),
+                single.bulkDrainMillis(), lanes.bulkDrainMillis());
+
+        assertThat(percentile(lanes.express(), 0.99)).isLessThan(percentile(single.express(), 0.99) / 10);
+        // La prioridad no cuesta capacidad: el atasco bulk tarda más o menos lo mismo en vaciarse.
+        assertThat(lanes.bulkDrainMillis()).isLessThan(single.bulkDrainMillis() * 5 / 4);
+    }
+
+    private Result singleLane() throws InterruptedException {
+        BlockingQueue<Order> queue = new LinkedBlockingQueue<>();
+        List<Long> express = new ArrayList<>();
+        List<Long> bulk = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(BULK_BACKLOG + EXPRESS_ORDERS);
+        long start = System.nanoTime();
+        for (int i = 0; i < BULK_BACKLOG; i++) {
+            queue.add(new Order(BULK, start));
+        }
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < SLOTS; i++) {
+            workers.add(Thread.ofPlatform().start(() -> consume(queue, null, express, bulk, done)));
+        }
+        produceExpress(queue);
+        done.await();
+        long drained = System.nanoTime() - start;
+        workers.forEach(Thread::interrupt);
+        return new Result(toArray(express), toArray(bulk), TimeUnit.NANOSECONDS.toMillis(drained));
+    }
+
+    private Result lanes() throws InterruptedException {
+        LaneArbiter arbiter = new LaneArbiter(SLOTS, Map.of(EXPRESS, 3, BULK, 1), new SimpleMeterRegistry());
+        BlockingQueue<Order> expressQueue = new LinkedBlockingQueue<>();
+        BlockingQueue<Order> bulkQueue = new LinkedBlockingQueue<>();
+        List<Long> express = new ArrayList<>();
+        List<Long> bulk = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(BULK_BACKLOG + EXPRESS_ORDERS);
+        long start = System.nanoTime();
+        for (int i = 0; i < BULK_BACKLOG; i++) {
+            bulkQueue.add(new Order(BULK, start));
+        }
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            workers.add(Thread.ofPlatform().start(() -> consume(expressQueue, arbiter, express, bulk, done)));
+        }
+        // Bulk con tantos hilos como huecos: sin express usa toda la capacidad.
+        for (int i = 0; i < SLOTS; i++) {
+            workers.add(Thread.ofPlatform().start(() -> consume(bulkQueue, arbiter, express, bulk, done)));
+        }
+        produceExpress(expressQueue);
+        done.await();
+        long drained = System.nanoTime() - start;
+        workers.forEach(Thread::interrupt);
+        return new Result(toArray(express), toArray(bulk), TimeUnit.NANOSECONDS.toMillis(drained));
+    }
+
+    private static void produceExpress(BlockingQueue<Order> queue) {
+        long interval = TimeUnit.SECONDS.toNanos(1) / EXPRESS_RATE;
+        long next = System.nanoTime();
+        for (int i = 0; i < EXPRESS_ORDERS; i++) {
+            next += interval;
+            LockSupport.parkNanos(next - System.nanoTime());
+            queue.add(new Order(EXPRESS, System.nanoTime()));
+        }
+    }
+
+    private static void consume(BlockingQueue<Order> queue, LaneArbiter arbiter, List<Long> express, List<Long> bulk, CountDownLatch done) {
+        try {
+            while (true) {
+                Order order = queue.take();
+                if (arbiter != null) {
+                    arbiter.acquire(order.lane());
+                }
+                try {
+                    // El servicio de stock: ocupa el hueco durante el tiempo de servicio.
+                    long end = System.nanoTime() + SERVICE_TIME_NANOS;
+                    while (System.nanoTime() < end) {
+                        LockSupport.parkNanos(end - System.nanoTime());
+                    }
+                } finally {
+                    if (arbiter != null) {
+                        arbiter.release(order.lane());
+                    }
+                }
+                List<Long> latencies = order.lane() == EXPRESS ? express : bulk;
+                synchronized (latencies) {
+                    latencies.add(System.nanoTime() - order.arrivedNanos());
+                }
+                done.countDown();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long[] toArray(List<Long> latencies) {
+        synchronized (latencies) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1_000_000.0;
+    }
+
+    private static String percentiles(long[] sorted) {
+        return String.format("%8.1f  %8.1f  %8.1f  %8.1f", percentile(sorted, 0.5), percentile(sorted, 0.95),
+                percentile(sorted, 0.99), percentile(sorted, 1.0));
+    }
+
+    private record Order(OrderPriority lane, long arrivedNanos) {
+    }
+
+    private record Result(long[] express, long[] bulk, long bulkDrainMillis) {
+    }
+}
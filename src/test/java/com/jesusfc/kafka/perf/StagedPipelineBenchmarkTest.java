@@ -0,0 +1,170 @@
+package com.jesusfc.kafka.perf;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.jesusfc.kafka.client.StockServiceClient;
+import com.jesusfc.kafka.logging.DispatchEventLog;
+import com.jesusfc.kafka.message.OrderCreated;
+import com.jesusfc.kafka.pipeline.StagedDispatchPipeline;
+import com.jesusfc.kafka.pipeline.WaitStrategy;
+import com.jesusfc.kafka.service.DispatchEventSender;
+import com.jesusfc.kafka.service.DispatchService;
+import com.jesusfc.kafka.service.DispatchedOrderRegistry;
+import com.jesusfc.kafka.util.TestEventData;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Benchmark del pipeline por etapas (dispatch.pipeline.enabled) frente al camino directo de OrderCreatedHandler, sin
+broker: el servicio de stock y las confirmaciones de Kafka se simulan con una latencia fija. Se procesa un backlog
+de pedidos (como un poll lleno) y se mide el throughput y la latencia por pedido, desde que el listener lo recibe
+hasta que se puede confirmar su offset.
+Se ejecuta con el perfil "perf": ./mvnw test -Pperf
+ */
+@Slf4j
+@Tag("perf")
+class StagedPipelineBenchmarkTest {
+
+    private static final int ORDERS = 5_000;
+    private static final int WARMUP_ORDERS = 1_000;
+    private static final long STOCK_LATENCY_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final long SEND_LATENCY_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private DispatchService dispatchService;
+    private Level dispatchServiceLevel;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        // El log por pedido de DispatchService dominaría la medida.
+        Logger logger = (Logger) LoggerFactory.getLogger(DispatchService.class);
+        dispatchServiceLevel = logger.getLevel();
+        logger.setLevel(Level.WARN);
+
+        KafkaTemplate<String, Object> kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenAnswer(invocation -> acknowledged());
+        when(kafkaTemplate.send(anyString(), anyInt(), anyString(), any())).thenAnswer(invocation -> acknowledged());
+        StockServiceClient stockServiceClient = mock(StockServiceClient.class);
+        when(stockServiceClient.checkAvailability(anyString())).thenAnswer(invocation -> {
+            LockSupport.parkNanos(STOCK_LATENCY_NANOS);
+            return "true";
+        });
+        dispatchService = new DispatchService(new DispatchEventSender(kafkaTemplate), stockServiceClient,
+                new DispatchedOrderRegistry(ORDERS * 2, Duration.ofDays(1)), DispatchEventLog.withDefaults());
+    }
+
+    @AfterEach
+    void tearDown() {
+        ((Logger) LoggerFactory.getLogger(DispatchService.class)).setLevel(dispatchServiceLevel);
+    }
+
+    @Test
+    void stagedPipelineOutperformsDirectPath() throws Exception {
+        runDirect(orders(WARMUP_ORDERS));
+        Result direct = runDirect(orders(ORDERS));
+
+        StagedDispatchPipeline pipeline = new StagedDispatchPipeline(dispatchService, DispatchEventLog.withDefaults(), 1024, WaitStrategy.YIELDING,
+                4, Duration.ofMillis(100), Duration.ofSeconds(10));
+        pipeline.start();
+        try {
+            runPipeline(pipeline, orders(WARMUP_ORDERS));
+            Result staged = runPipeline(pipeline, orders(ORDERS));
+
+            log.info("""
+
+                            Staged pipeline benchmark ({} orders, stock latency {} us, send latency {} us x 3)
+                              path       orders/s   p50 us     p99 us     max us
+                              direct     {}   {}   {}   {}
+                              staged     {}   {}   {}   {}
+                            """,
+                    ORDERS, TimeUnit.NANOSECONDS.toMicros(STOCK_LATENCY_NANOS), TimeUnit.NANOSECONDS.toMicros(SEND_LATENCY_NANOS),
+                    column(direct.throughput()), column(direct.percentile(0.50)), column(direct.percentile(0.99)), column(direct.percentile(1.0)),
+                    column(staged.throughput()), column(staged.percentile(0.50)), column(staged.percentile(0.99)), column(staged.percentile(1.0)));
+
+            assertThat(staged.throughput()).isGreaterThan(direct.throughput());
+        } finally {
+            pipeline.stop();
+        }
+    }
+
+    private Result runDirect(List<OrderCreated> orders) throws Exception {
+        long[] latencies = new long[orders.size()];
+        long start = System.nanoTime();
+        for (int i = 0; i < orders.size(); i++) {
+            // Todo el backlog llega en el mismo instante; cada pedido espera a que termine el anterior.
+            dispatchService.process(0, "key-" + i, orders.get(i));
+            latencies[i] = System.nanoTime() - start;
+        }
+        return new Result(orders.size(), System.nanoTime() - start, latencies);
+    }
+
+    private Result runPipeline(StagedDispatchPipeline pipeline, List<OrderCreated> orders) throws Exception {
+        long[] latencies = new long[orders.size()];
+        CountDownLatch done = new CountDownLatch(orders.size());
+        long start = System.nanoTime();
+        for (int i = 0; i < orders.size(); i++) {
+            int index = i;
+            pipeline.submit(0, "key-" + i, orders.get(i), () -> {
+                latencies[index] = System.nanoTime() - start;
+                done.countDown();
+            });
+        }
+        assertThat(done.await(60, TimeUnit.SECONDS)).isTrue();
+        return new Result(orders.size(), System.nanoTime() - start, latencies);
+    }
+
+    private static CompletableFuture<Object> acknowledged() {
+        LockSupport.parkNanos(SEND_LATENCY_NANOS);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static List<OrderCreated> orders(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> TestEventData.buildOrderCreatedEvent(randomUUID(), "item-" + (i % 100)))
+                .toList();
+    }
+
+    private static String column(double value) {
+        return String.format("%8.0f", value);
+    }
+
+    private record Result(int orders, long elapsedNanos, long[] latencies) {
+
+        double throughput() {
+            return orders * 1e9 / elapsedNanos;
+        }
+
+        double percentile(double p) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            return TimeUnit.NANOSECONDS.toMicros(sorted[Math.max(0, (int) Math.ceil(p * sorted.length) - 1)]);
+        }
+    }
+}
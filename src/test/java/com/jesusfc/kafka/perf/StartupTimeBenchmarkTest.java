@@ -0,0 +1,167 @@
+package com.jesusfc.kafka.perf;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.jesusfc.kafka.config.KafkaConfig;
+import com.jesusfc.kafka.service.DispatchService;
+import com.jesusfc.kafka.util.TestEventData;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Tiempo hasta el primer record: se arranca el servicio empaquetado en una JVM nueva contra un broker embebido y un
+servicio de stock simulado, y se mide desde que se lanza el proceso hasta que aparece su primer pedido en
+"my.order.dispatched.topic". Mientras tanto se publica un pedido cada 20 ms (el consumidor empieza en "latest").
+  - default: java -jar, sin AOT ni CDS.
+  - fast:    el mismo jar con -XX:SharedArchiveFile, spring.aot.enabled y el perfil fast-startup (lazy init).
+Necesita los artefactos del perfil Maven fast-startup:
+  ./mvnw package -Pfast-startup -DskipTests && ./mvnw test -Pperf -Dtest=StartupTimeBenchmarkTest
+ */
+@Slf4j
+@Tag("perf")
+@EmbeddedKafka(partitions = 1, topics = {"my.order.created.topic", DispatchService.ORDER_DISPATCHED_TOPIC, "dispatch.tracking", DispatchService.DEFERRED_ORDER_TOPIC})
+class StartupTimeBenchmarkTest {
+
+    private static final Path APPLICATION_DIR = Path.of("target", "application");
+    private static final String JAR = "kafka-0.0.1-SNAPSHOT.jar";
+    private static final int ROUNDS = 3;
+    private static final Pattern STARTED = Pattern.compile("Started KafkaApplication in ([0-9.]+) seconds");
+
+    @Test
+    void fastStartupReachesTheFirstRecordSooner(EmbeddedKafkaBroker broker) throws Exception {
+        assumeTrue(Files.exists(APPLICATION_DIR.resolve("application.jsa")),
+                "Build the fast-startup artifacts first: ./mvnw package -Pfast-startup -DskipTests");
+        WireMockServer stockService = new WireMockServer(options().dynamicPort());
+        stockService.start();
+        stockService.stubFor(get(urlPathEqualTo("/api/stock")).willReturn(aResponse().withStatus(200).withBody("true")));
+
+        KafkaConfig kafkaConfig = new KafkaConfig();
+        KafkaTemplate<String, Object> template = kafkaConfig.kafkaTemplate(kafkaConfig.producerFactory(broker.getBrokersAsString(), Duration.ofSeconds(10)));
+        ScheduledExecutorService feeder = Executors.newSingleThreadScheduledExecutor();
+        feeder.scheduleAtFixedRate(() -> template.send("my.order.created.topic", "key",
+                TestEventData.buildOrderCreatedEvent(randomUUID(), "item")), 0, 20, TimeUnit.MILLISECONDS);
+
+        List<Run> defaultRuns = new ArrayList<>();
+        List<Run> fastRuns = new ArrayList<>();
+        try (KafkaConsumer<String, String> dispatched = dispatchedConsumer(broker)) {
+            for (int round = 0; round < ROUNDS; round++) {
+                defaultRuns.add(run("default", round, List.of(), broker, stockService, dispatched));
+                fastRuns.add(run("fast", round, List.of("-XX:SharedArchiveFile=application.jsa", "-Dspring.aot.enabled=true",
+                        "-Dspring.profiles.active=fast-startup"), broker, stockService, dispatched));
+            }
+        } finally {
+            feeder.shutdownNow();
+            template.destroy();
+            stockService.stop();
+        }
+
+        Run defaultMedian = median(defaultRuns);
+        Run fastMedian = median(fastRuns);
+        log.info("""
+
+                        Startup of the packaged service, median of {} runs
+                          mode      context started ms   first record ms
+                          default   {}   {}
+                          fast      {}   {}
+                        """,
+                ROUNDS,
+                column(defaultMedian.startedMs()), column(defaultMedian.firstRecordMs()),
+                column(fastMedian.startedMs()), column(fastMedian.firstRecordMs()));
+
+        assertThat(fastMedian.firstRecordMs()).isLessThan(defaultMedian.firstRecordMs());
+    }
+
+    private static Run run(String mode, int round, List<String> jvmOptions, EmbeddedKafkaBroker broker,
+                           WireMockServer stockService, KafkaConsumer<String, String> dispatched) throws IOException, InterruptedException {
+        dispatched.seekToEnd(dispatched.assignment());
+        dispatched.assignment().forEach(dispatched::position);
+
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.addAll(List.of("-jar", JAR,
+                "--spring.kafka.bootstrap-servers=" + broker.getBrokersAsString(),
+                "--spring.kafka.consumer.group-id=startup-" + randomUUID(),
+                "--dispatch.stockServiceEndpoint=http://localhost:" + stockService.port() + "/api/stock",
+                "--server.port=0"));
+        Path logFile = Path.of("target", "startup-benchmark", mode + "-" + round + ".log");
+        Files.createDirectories(logFile.getParent());
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .directory(APPLICATION_DIR.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(logFile.toFile())
+                .start();
+        long firstRecord = -1;
+        try {
+            long deadline = start + TimeUnit.SECONDS.toNanos(60);
+            while (firstRecord < 0 && System.nanoTime() < deadline && process.isAlive()) {
+                if (!dispatched.poll(Duration.ofMillis(10)).isEmpty()) {
+                    firstRecord = System.nanoTime();
+                }
+            }
+        } finally {
+            process.destroy();
+            process.waitFor(10, TimeUnit.SECONDS);
+        }
+        assertThat(firstRecord).as("first record of %s run, see %s", mode, logFile).isPositive();
+
+        Matcher started = STARTED.matcher(Files.readString(logFile));
+        long startedMs = started.find() ? (long) (Double.parseDouble(started.group(1)) * 1000) : -1;
+        return new Run(startedMs, TimeUnit.NANOSECONDS.toMillis(firstRecord - start));
+    }
+
+    private static KafkaConsumer<String, String> dispatchedConsumer(EmbeddedKafkaBroker broker) {
+        KafkaConsumer<String, String> consumer = new KafkaConsumer<>(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class,
+                ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class));
+        consumer.assign(List.of(new TopicPartition(DispatchService.ORDER_DISPATCHED_TOPIC, 0)));
+        return consumer;
+    }
+
+    private static Run median(List<Run> runs) {
+        return runs.stream().sorted((a, b) -> Long.compare(a.firstRecordMs(), b.firstRecordMs())).toList().get(runs.size() / 2);
+    }
+
+    private static String column(long value) {
+        return String.format("%18d", value);
+    }
+
+    private record Run(long startedMs, long firstRecordMs) {
+    }
+}
@@ -0,0 +1,80 @@
+package com.jesusfc.kafka.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+class SpscRingBufferTest {
+
+    @Test
+    void pollOnEmptyRing_ReturnsNull() {
+        SpscRingBuffer<long[]> ring = new SpscRingBuffer<>(4, () -> new long[1]);
+
+        assertThat(ring.poll()).isNull();
+        assertThat(ring.isEmpty()).isTrue();
+    }
+
+    @Test
+    void entriesArePreallocatedAndReused() throws InterruptedException {
+        SpscRingBuffer<long[]> ring = new SpscRingBuffer<>(2, () -> new long[1]);
+
+        long[] first = ring.claim(WaitStrategy.BUSY_SPIN);
+        ring.publish();
+        ring.claim(WaitStrategy.BUSY_SPIN);
+        ring.publish();
+        assertThat(ring.size()).isEqualTo(2);
+        ring.poll();
+        ring.release();
+
+        assertThat(ring.claim(WaitStrategy.BUSY_SPIN)).isSameAs(first);
+    }
+
+    @Test
+    void capacityMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new SpscRingBuffer<>(3, Object::new));
+    }
+
+    @Test
+    void producerAndConsumerThreads_SeeEveryValueInOrder() throws InterruptedException {
+        int count = 1_000_000;
+        SpscRingBuffer<long[]> ring = new SpscRingBuffer<>(64, () -> new long[1]);
+        AtomicLong outOfOrder = new AtomicLong();
+
+        Thread consumer = new Thread(() -> {
+            long expected = 0;
+            int idle = 0;
+            while (expected < count) {
+                long[] entry = ring.poll();
+                if (entry == null) {
+                    WaitStrategy.YIELDING.idle(idle++);
+                    continue;
+                }
+                idle = 0;
+                if (entry[0] != expected) {
+                    outOfOrder.incrementAndGet();
+                }
+                expected++;
+                ring.release();
+            }
+        });
+        consumer.start();
+
+        for (long i = 0; i < count; i++) {
+            ring.claim(WaitStrategy.YIELDING)[0] = i;
+            ring.publish();
+        }
+        consumer.join(30_000);
+
+        assertThat(consumer.isAlive()).isFalse();
+        assertThat(outOfOrder.get()).isZero();
+        assertThat(ring.isEmpty()).isTrue();
+    }
+}
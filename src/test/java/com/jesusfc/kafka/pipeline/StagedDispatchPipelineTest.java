@@ -0,0 +1,122 @@
+package com.jesusfc.kafka.pipeline;
+
+import com.jesusfc.kafka.exception.RetryableException;
+import com.jesusfc.kafka.logging.DispatchEventLog;
+import com.jesusfc.kafka.message.OrderCreated;
+import com.jesusfc.kafka.service.DispatchService;
+import com.jesusfc.kafka.util.TestEventData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+class StagedDispatchPipelineTest {
+
+    private DispatchService dispatchServiceMock;
+    private StagedDispatchPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        dispatchServiceMock = mock(DispatchService.class);
+        // Anillos pequeños para forzar que el listener espere (back-pressure).
+        pipeline = new StagedDispatchPipeline(dispatchServiceMock, DispatchEventLog.withDefaults(), 4, WaitStrategy.SLEEPING, 3, Duration.ofMillis(1), Duration.ofSeconds(5));
+        pipeline.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.stop();
+    }
+
+    @Test
+    void submit_OrdersCompleteInSubmissionOrder() throws Exception {
+        when(dispatchServiceMock.isAvailable(any(OrderCreated.class))).thenReturn(true);
+        Queue<Integer> completions = new ConcurrentLinkedQueue<>();
+
+        for (int i = 0; i < 100; i++) {
+            int offset = i;
+            pipeline.submit(0, "key-" + i, TestEventData.buildOrderCreatedEvent(randomUUID(), "item-" + i), () -> completions.add(offset));
+        }
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> completions.size() == 100);
+        assertThat(List.copyOf(completions)).isEqualTo(IntStream.range(0, 100).boxed().toList());
+        verify(dispatchServiceMock, times(100)).dispatchOrDefer(eq(0), any(), any(OrderCreated.class), eq(true));
+        assertThat(pipeline.completed()).isEqualTo(100);
+        assertThat(pipeline.inFlight()).isZero();
+    }
+
+    @Test
+    void submit_UnavailableItemIsDeferred() throws Exception {
+        OrderCreated order = TestEventData.buildOrderCreatedEvent(randomUUID(), "item");
+        when(dispatchServiceMock.isAvailable(order)).thenReturn(false);
+        Queue<String> completions = new ConcurrentLinkedQueue<>();
+
+        pipeline.submit(2, "key", order, () -> completions.add("acked"));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> completions.size() == 1);
+        verify(dispatchServiceMock).dispatchOrDefer(2, "key", order, false);
+    }
+
+    @Test
+    void submit_RetryableErrorIsRetriedWithinTheStage() throws Exception {
+        OrderCreated order = TestEventData.buildOrderCreatedEvent(randomUUID(), "item");
+        when(dispatchServiceMock.isAvailable(order))
+                .thenThrow(new RetryableException("stock service down"))
+                .thenReturn(true);
+        Queue<String> completions = new ConcurrentLinkedQueue<>();
+
+        pipeline.submit(0, "key", order, () -> completions.add("acked"));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> completions.size() == 1);
+        verify(dispatchServiceMock, times(2)).isAvailable(order);
+        verify(dispatchServiceMock).dispatchOrDefer(0, "key", order, true);
+    }
+
+    @Test
+    void submit_ExhaustedRetriesAreSkippedAndAcknowledged() throws Exception {
+        OrderCreated order = TestEventData.buildOrderCreatedEvent(randomUUID(), "item");
+        when(dispatchServiceMock.isAvailable(order)).thenThrow(new RetryableException("stock service down"));
+        Queue<String> completions = new ConcurrentLinkedQueue<>();
+
+        pipeline.submit(0, "key", order, () -> completions.add("acked"));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> completions.size() == 1);
+        verify(dispatchServiceMock, times(3)).isAvailable(order);
+        verify(dispatchServiceMock, never()).dispatchOrDefer(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void stop_DrainsInFlightOrders() throws Exception {
+        when(dispatchServiceMock.isAvailable(any(OrderCreated.class))).thenAnswer(invocation -> {
+            Thread.sleep(5);
+            return true;
+        });
+        Queue<String> completions = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < 10; i++) {
+            pipeline.submit(0, "key", TestEventData.buildOrderCreatedEvent(randomUUID(), "item"), () -> completions.add("acked"));
+        }
+
+        pipeline.stop();
+
+        assertThat(completions).hasSize(10);
+        assertThat(pipeline.isRunning()).isFalse();
+    }
+}
@@ -0,0 +1,108 @@
+package com.jesusfc.kafka.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+class ListenerContainerThrottleTest {
+
+    private static final String DISPATCHED = "my.order.dispatched.topic";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ContainerProperties containerProperties = new ContainerProperties("my.order.created.topic");
+    private final AtomicBoolean pauseRequested = new AtomicBoolean();
+    private MessageListenerContainer containerMock;
+    private OutputRateLimiter limiter;
+    private ListenerContainerThrottle throttle;
+
+    @BeforeEach
+    void setUp() {
+        containerMock = mock(MessageListenerContainer.class);
+        when(containerMock.getContainerProperties()).thenReturn(containerProperties);
+        when(containerMock.isPauseRequested()).thenAnswer(invocation -> pauseRequested.get());
+        doAnswer(invocation -> {
+            pauseRequested.set(true);
+            return null;
+        }).when(containerMock).pause();
+        doAnswer(invocation -> {
+            pauseRequested.set(false);
+            return null;
+        }).when(containerMock).resume();
+        MockEnvironment environment = new MockEnvironment();
+        environment.setProperty("dispatch.rate-limit.topics[" + DISPATCHED + "].rate-per-second", "10");
+        environment.setProperty("dispatch.rate-limit.topics[" + DISPATCHED + "].burst", "1");
+        limiter = new OutputRateLimiter(environment, meterRegistry, true, List.of(DISPATCHED), Duration.ofMillis(10));
+        // Solo existe orderConsumerClient: los demás listeners no están con esta configuración.
+        Map<String, MessageListenerContainer> containers = Map.of("orderConsumerClient", containerMock);
+        throttle = new ListenerContainerThrottle(limiter, containers::get, meterRegistry,
+                List.of("orderConsumerClient", "expressLaneConsumerClient"), Duration.ofMillis(10));
+        throttle.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        throttle.stop();
+    }
+
+    @Test
+    void start_ConfiguresTheContainersToPauseAfterTheCurrentRecord() {
+        assertThat(containerProperties.isPauseImmediate()).isTrue();
+        assertThat(containerProperties.getPollTimeoutWhilePaused()).isEqualTo(Duration.ofMillis(10));
+    }
+
+    @Test
+    void throttle_PausesOnceAndResumesWhenBackWithinTheRate() {
+        long start = System.nanoTime();
+        // Cinco de más a 100 ms: medio segundo de pausa.
+        for (int i = 0; i < 6; i++) {
+            limiter.acquire(DISPATCHED);
+        }
+
+        assertThat(throttle.isPaused()).isTrue();
+        verify(containerMock, times(1)).pause();
+        verify(containerMock, never()).resume();
+
+        await().atMost(2, TimeUnit.SECONDS).untilAsserted(() -> verify(containerMock).resume());
+        assertThat(throttle.isPaused()).isFalse();
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(400));
+        assertThat(meterRegistry.get("dispatch.ratelimit.paused").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void throttle_PausesAgainWhenTheContainerWasResumedWhileStillOverTheRate() {
+        for (int i = 0; i < 6; i++) {
+            limiter.acquire(DISPATCHED);
+        }
+        // Un resume() que aún no ha vuelto ya ha quitado la pausa del contenedor.
+        pauseRequested.set(false);
+
+        limiter.acquire(DISPATCHED);
+
+        verify(containerMock, times(2)).pause();
+        assertThat(pauseRequested).isTrue();
+    }
+}
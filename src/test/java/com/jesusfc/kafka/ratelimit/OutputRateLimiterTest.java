@@ -0,0 +1,136 @@
+package com.jesusfc.kafka.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+class OutputRateLimiterTest {
+
+    private static final String DISPATCHED = "my.order.dispatched.topic";
+    private static final String TRACKING = "dispatch.tracking";
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final MockEnvironment environment = new MockEnvironment();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void tokenBucket_AllowsTheBurstThenPacesAtTheRate() {
+        // 100/s: un permiso cada 10 ms, ráfagas de 5.
+        TokenBucket bucket = new TokenBucket(100, 5);
+        long now = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.reserve(now)).isZero();
+        }
+        assertThat(bucket.reserve(now)).isEqualTo(10 * MS);
+        assertThat(bucket.reserve(now)).isEqualTo(20 * MS);
+        // Pasado el exceso vuelve a haber un permiso por intervalo, sin acumular más de la ráfaga.
+        assertThat(bucket.delay(now + 20 * MS)).isEqualTo(10 * MS);
+        assertThat(bucket.reserve(now + 30 * MS)).isZero();
+        assertThat(bucket.delay(now + TimeUnit.SECONDS.toNanos(10))).isZero();
+    }
+
+    @Test
+    void tokenBucket_IsConsistentUnderConcurrentReservations() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1_000, 1);
+        long now = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    bucket.reserve(now);
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // 4000 permisos a 1 ms cada uno: ni uno perdido entre CAS concurrentes.
+        assertThat(bucket.delay(now)).isEqualTo(4_000 * MS);
+    }
+
+    @Test
+    void acquire_PastTheRateThrottlesTheConsumersWithoutBlocking() {
+        environment.setProperty("dispatch.rate-limit.topics[" + DISPATCHED + "].rate-per-second", "100");
+        environment.setProperty("dispatch.rate-limit.topics[" + DISPATCHED + "].burst", "10");
+        OutputRateLimiter limiter = limiter(Duration.ZERO);
+        AtomicInteger throttled = new AtomicInteger();
+        limiter.onThrottle(throttled::incrementAndGet);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 30; i++) {
+            limiter.acquire(DISPATCHED);
+        }
+
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(throttled.get()).isEqualTo(20);
+        // 20 por encima de la ráfaga a 10 ms cada uno.
+        assertThat(limiter.throttledNanos()).isBetween(100 * MS, 200 * MS);
+        assertThat(meterRegistry.get("dispatch.ratelimit.permits").tag("topic", DISPATCHED).functionCounter().count()).isEqualTo(30);
+        assertThat(meterRegistry.get("dispatch.ratelimit.throttled").tag("topic", DISPATCHED).functionCounter().count()).isCloseTo(0.2, within(0.01));
+    }
+
+    @Test
+    void acquire_TopicsWithoutARateAndExcessesBelowTheMinimumPauseDoNotThrottle() {
+        environment.setProperty("dispatch.rate-limit.topics[" + DISPATCHED + "].rate-per-second", "100");
+        environment.setProperty("dispatch.rate-limit.topics[" + DISPATCHED + "].burst", "1");
+        OutputRateLimiter limiter = limiter(Duration.ofMillis(50));
+        AtomicInteger throttled = new AtomicInteger();
+        limiter.onThrottle(throttled::incrementAndGet);
+
+        for (int i = 0; i < 1_000; i++) {
+            limiter.acquire(TRACKING);
+        }
+        // Cuatro de más a 10 ms: 40 ms de exceso, por debajo de min-pause.
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire(DISPATCHED);
+        }
+
+        assertThat(throttled.get()).isZero();
+        assertThat(meterRegistry.find("dispatch.ratelimit.permits").tag("topic", TRACKING).functionCounter()).isNull();
+        assertThat(OutputRateLimiter.disabled().isEnabled()).isFalse();
+    }
+
+    @Test
+    void acquire_OnAPacedThreadSleepsInsteadOfThrottlingTheConsumers() throws InterruptedException {
+        environment.setProperty("dispatch.rate-limit.topics[" + DISPATCHED + "].rate-per-second", "100");
+        environment.setProperty("dispatch.rate-limit.topics[" + DISPATCHED + "].burst", "1");
+        OutputRateLimiter limiter = limiter(Duration.ZERO);
+        AtomicInteger throttled = new AtomicInteger();
+        limiter.onThrottle(throttled::incrementAndGet);
+        long[] elapsed = new long[1];
+
+        Thread replay = Thread.ofPlatform().start(OutputRateLimiter.paced(() -> {
+            long start = System.nanoTime();
+            for (int i = 0; i < 20; i++) {
+                limiter.acquire(DISPATCHED);
+            }
+            elapsed[0] = System.nanoTime() - start;
+        }));
+        replay.join();
+
+        // 100/s sin ráfaga: 19 intervalos de 10 ms dormidos en el propio hilo, y los listeners sin tocar.
+        assertThat(elapsed[0]).isGreaterThanOrEqualTo(180 * MS);
+        assertThat(throttled.get()).isZero();
+        assertThat(limiter.throttledNanos()).isZero();
+        assertThat(meterRegistry.get("dispatch.ratelimit.permits").tag("topic", DISPATCHED).functionCounter().count()).isEqualTo(20);
+    }
+
+    private OutputRateLimiter limiter(Duration minPause) {
+        return new OutputRateLimiter(environment, meterRegistry, true, List.of(DISPATCHED, TRACKING), minPause);
+    }
+}
@@ -0,0 +1,138 @@
+package com.jesusfc.kafka.rebalance;
+
+import com.jesusfc.kafka.logging.DispatchEventLog;
+import com.jesusfc.kafka.message.OrderCreated;
+import com.jesusfc.kafka.pipeline.StagedDispatchPipeline;
+import com.jesusfc.kafka.pipeline.WaitStrategy;
+import com.jesusfc.kafka.service.DispatchService;
+import com.jesusfc.kafka.util.TestEventData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+class DrainingRebalanceListenerTest {
+
+    private static final String TOPIC = "order.created";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private StagedDispatchPipeline pipeline;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        DispatchService dispatchServiceMock = mock(DispatchService.class);
+        // Los pedidos de la partición 1 se quedan en vuelo hasta que el test los suelta.
+        when(dispatchServiceMock.isAvailable(any(OrderCreated.class))).thenAnswer(invocation -> {
+            OrderCreated order = invocation.getArgument(0);
+            if (order.getItem().startsWith("slow")) {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return true;
+        });
+        pipeline = new StagedDispatchPipeline(dispatchServiceMock, DispatchEventLog.withDefaults(), 16, WaitStrategy.SLEEPING, 1, Duration.ofMillis(1), Duration.ofSeconds(5));
+        pipeline.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        pipeline.stop();
+    }
+
+    @Test
+    void revoked_WaitsForInFlightOrdersOfRevokedPartitionsOnly() throws Exception {
+        Queue<String> acks = new ConcurrentLinkedQueue<>();
+        pipeline.submit(0, "key", TestEventData.buildOrderCreatedEvent(randomUUID(), "fast"), () -> acks.add("p0"));
+        pipeline.submit(1, "key", TestEventData.buildOrderCreatedEvent(randomUUID(), "slow"), () -> acks.add("p1"));
+        DrainingRebalanceListener listener = listener(Duration.ofSeconds(5));
+        Consumer<?, ?> consumer = mock(Consumer.class);
+
+        Thread releaser = new Thread(() -> {
+            sleep(200);
+            release.countDown();
+        });
+        releaser.start();
+        long start = System.nanoTime();
+        listener.onPartitionsRevokedBeforeCommit(consumer, List.of(new TopicPartition(TOPIC, 1)));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(150));
+        assertThat(acks).containsExactly("p0", "p1");
+        assertThat(meterRegistry.get("dispatch.rebalance.drain.timeouts").counter().count()).isZero();
+        assertThat(meterRegistry.get("dispatch.rebalance.revoked.partitions").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void revoked_StopsWaitingWhenTheBudgetRunsOut() throws Exception {
+        pipeline.submit(1, "key", TestEventData.buildOrderCreatedEvent(randomUUID(), "slow"), () -> { });
+        DrainingRebalanceListener listener = listener(Duration.ofMillis(50));
+
+        listener.onPartitionsRevokedBeforeCommit(mock(Consumer.class), List.of(new TopicPartition(TOPIC, 1)));
+
+        assertThat(pipeline.inFlight(1)).isEqualTo(1);
+        assertThat(meterRegistry.get("dispatch.rebalance.drain.timeouts").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void revoked_PartitionsOfOtherTopicsAreNotDrained() throws Exception {
+        pipeline.submit(1, "key", TestEventData.buildOrderCreatedEvent(randomUUID(), "slow"), () -> { });
+        DrainingRebalanceListener listener = listener(Duration.ofSeconds(5));
+
+        long start = System.nanoTime();
+        listener.onPartitionsRevokedBeforeCommit(mock(Consumer.class), List.of(new TopicPartition("my.order.deferred.topic", 1)));
+        listener.onPartitionsLost(mock(Consumer.class), List.of(new TopicPartition(TOPIC, 1)));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+        assertThat(meterRegistry.get("dispatch.rebalance.drain.time").timer().count()).isZero();
+        assertThat(meterRegistry.get("dispatch.rebalance.lost.partitions").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void staticMembership_InstanceIdIsPerListener() {
+        StaticMembershipCustomizer customizer = new StaticMembershipCustomizer("");
+
+        assertThat(customizer.groupInstanceId("orderConsumerClient"))
+                .isEqualTo(StaticMembershipCustomizer.hostInstanceId() + "-orderConsumerClient");
+        assertThat(new StaticMembershipCustomizer("dispatch-1").groupInstanceId("orderConsumerClient"))
+                .isEqualTo("dispatch-1-orderConsumerClient");
+        assertThat(new StaticMembershipCustomizer("dispatch-1").groupInstanceId("org.springframework.kafka.KafkaListenerEndpointContainer#0"))
+                .isEqualTo("dispatch-1-org.springframework.kafka.KafkaListenerEndpointContainer_0");
+    }
+
+    private DrainingRebalanceListener listener(Duration drainBudget) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("pipeline", pipeline);
+        ObjectProvider<StagedDispatchPipeline> provider = beanFactory.getBeanProvider(StagedDispatchPipeline.class);
+        return new DrainingRebalanceListener(provider, TOPIC, drainBudget, meterRegistry);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.jesusfc.kafka.rebalance;
+
+import com.jesusfc.kafka.config.KafkaConfig;
+import com.jesusfc.kafka.config.PipelineConfig;
+import com.jesusfc.kafka.logging.DispatchEventLog;
+import com.jesusfc.kafka.message.OrderCreated;
+import com.jesusfc.kafka.pipeline.StagedDispatchPipeline;
+import com.jesusfc.kafka.pipeline.WaitStrategy;
+import com.jesusfc.kafka.service.DispatchService;
+import com.jesusfc.kafka.util.TestEventData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.RangeAssignor;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.AcknowledgingMessageListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+/*
+Rebalanceo real contra un broker embebido: la instancia A consume sola con el pipeline por etapas y, a mitad, entra
+la instancia B en el mismo grupo. Se mide:
+  - re-procesados:   pedidos despachados más de una vez (el nuevo dueño empieza antes del último terminado).
+  - pausa máxima:    el mayor hueco entre dos pedidos despachados (por cualquiera de las dos) tras entrar B.
+  - traspaso:        desde que arranca B hasta que despacha su primer pedido.
+  - drenaje:         tiempo que A pasó esperando a los pedidos en vuelo de las particiones revocadas.
+El test por defecto comprueba la configuración del servicio (cooperative-sticky, pertenencia estática y drenaje).
+La comparación con el rebalanceo eager sin drenaje se ejecuta con el perfil "perf": ./mvnw test -Pperf
+ */
+@Slf4j
+@EmbeddedKafka(partitions = 6, topics = RebalanceDrainingKafkaTest.TOPIC)
+class RebalanceDrainingKafkaTest {
+
+    static final String TOPIC = "order.created.rebalance";
+    private static final int ORDERS = 6000;
+    private static final int PROCESSED_BEFORE_JOIN = 600;
+
+    @Test
+    void cooperativeRebalance_RevokedPartitionsAreDrainedAndNotReprocessed(EmbeddedKafkaBroker broker) throws Exception {
+        produceOrders(broker);
+
+        Result cooperative = rebalance(broker, true);
+
+        log.info("Cooperative rebalance with draining: {}", cooperative);
+        assertThat(cooperative.reprocessed()).isZero();
+        assertThat(cooperative.drainTimeouts()).isZero();
+    }
+
+    @Test
+    @Tag("perf")
+    void cooperativeRebalance_ComparedWithEagerWithoutDraining(EmbeddedKafkaBroker broker) throws Exception {
+        produceOrders(broker);
+
+        Result eager = rebalance(broker, false);
+        Result cooperative = rebalance(broker, true);
+
+        log.info("""
+
+                        Rebalance while consuming {} orders (second instance joins after {})
+                          mode                   reprocessed   max pause ms   handover ms   drain ms
+                          eager, no draining     {}   {}   {}   {}
+                          cooperative, draining  {}   {}   {}   {}
+                        """,
+                ORDERS, PROCESSED_BEFORE_JOIN,
+                column(eager.reprocessed()), column(eager.maxPauseMs()), column(eager.handoverMs()), column(eager.drainMs()),
+                column(cooperative.reprocessed()), column(cooperative.maxPauseMs()), column(cooperative.handoverMs()), column(cooperative.drainMs()));
+
+        assertThat(cooperative.reprocessed()).isLessThanOrEqualTo(eager.reprocessed());
+    }
+
+    private Result rebalance(EmbeddedKafkaBroker broker, boolean cooperative) throws Exception {
+        String group = "rebalance-" + randomUUID();
+        Map<UUID, AtomicInteger> dispatched = new ConcurrentHashMap<>();
+        AtomicLong lastDispatch = new AtomicLong();
+        AtomicLong maxGap = new AtomicLong();
+        AtomicLong joinedAt = new AtomicLong(Long.MAX_VALUE);
+        AtomicLong firstOfB = new AtomicLong();
+
+        Instance a = new Instance(broker, group, "host-a", cooperative, dispatched, lastDispatch, maxGap, joinedAt, null);
+        Instance b = new Instance(broker, group, "host-b", cooperative, dispatched, lastDispatch, maxGap, joinedAt, firstOfB);
+        try {
+            a.start();
+            await().atMost(Duration.ofSeconds(30)).until(() -> dispatched.size() >= PROCESSED_BEFORE_JOIN);
+            joinedAt.set(System.nanoTime());
+            b.start();
+            await().atMost(Duration.ofSeconds(60)).until(() -> dispatched.size() == ORDERS);
+            // Margen para que aparezcan re-entregas tardías.
+            Thread.sleep(500);
+        } finally {
+            b.stop();
+            a.stop();
+        }
+        int total = dispatched.values().stream().mapToInt(AtomicInteger::get).sum();
+        return new Result(total - dispatched.size(),
+                maxGap.get() / 1_000_000,
+                firstOfB.get() == 0 ? -1 : (firstOfB.get() - joinedAt.get()) / 1_000_000,
+                (long) a.meterRegistry.get("dispatch.rebalance.drain.time").timer().max(TimeUnit.MILLISECONDS),
+                (long) a.meterRegistry.get("dispatch.rebalance.drain.timeouts").counter().count());
+    }
+
+    private static void produceOrders(EmbeddedKafkaBroker broker) throws Exception {
+        KafkaConfig kafkaConfig = new KafkaConfig();
+        KafkaTemplate<String, Object> template = kafkaConfig.kafkaTemplate(kafkaConfig.producerFactory(broker.getBrokersAsString(), Duration.ofSeconds(10)));
+        for (int i = 0; i < ORDERS; i++) {
+            template.send(TOPIC, "key-" + i, TestEventData.buildOrderCreatedEvent(randomUUID(), "item-" + i));
+        }
+        template.flush();
+        template.destroy();
+    }
+
+    private static String column(long value) {
+        return String.format("%11d", value);
+    }
+
+    /*
+     * Una instancia del servicio: contenedor de la PipelineConfig con su propio pipeline, listener de rebalanceo y
+     * group.instance.id. En el modo eager se quita el drenaje (no hay pipeline que esperar) y se usa RangeAssignor.
+     */
+    private static final class Instance {
+
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        private final StagedDispatchPipeline pipeline;
+        private final ConcurrentMessageListenerContainer<String, Object> container;
+
+        Instance(EmbeddedKafkaBroker broker, String group, String instanceId, boolean cooperative,
+                 Map<UUID, AtomicInteger> dispatched, AtomicLong lastDispatch, AtomicLong maxGap,
+                 AtomicLong joinedAt, AtomicLong firstDispatch) throws Exception {
+            DispatchService dispatchServiceMock = mock(DispatchService.class);
+            when(dispatchServiceMock.isAvailable(any(OrderCreated.class))).thenAnswer(invocation -> {
+                Thread.sleep(1);
+                return true;
+            });
+            doAnswer(invocation -> {
+                OrderCreated order = invocation.getArgument(2);
+                dispatched.computeIfAbsent(order.getOrderId(), id -> new AtomicInteger()).incrementAndGet();
+                long now = System.nanoTime();
+                long previous = lastDispatch.getAndSet(now);
+                if (previous > joinedAt.get()) {
+                    maxGap.accumulateAndGet(now - previous, Math::max);
+                }
+                if (firstDispatch != null) {
+                    firstDispatch.compareAndSet(0, now);
+                }
+                return null;
+            }).when(dispatchServiceMock).dispatchOrDefer(any(), anyString(), any(OrderCreated.class), anyBoolean());
+
+            pipeline = new StagedDispatchPipeline(dispatchServiceMock, DispatchEventLog.withDefaults(), 64, WaitStrategy.SLEEPING,
+                    1, Duration.ofMillis(1), Duration.ofSeconds(5));
+
+            StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+            if (cooperative) {
+                beanFactory.addBean("pipeline", pipeline);
+            }
+            ObjectProvider<StagedDispatchPipeline> provider = beanFactory.getBeanProvider(StagedDispatchPipeline.class);
+            DrainingRebalanceListener rebalanceListener = new DrainingRebalanceListener(provider, TOPIC, Duration.ofSeconds(10), meterRegistry);
+
+            ConsumerFactory<String, Object> consumerFactory = new KafkaConfig().consumerFactory(broker.getBrokersAsString(), Duration.ofSeconds(10), Duration.ofSeconds(1));
+            container = new PipelineConfig()
+                    .pipelineKafkaListenerContainerFactory(consumerFactory, rebalanceListener, new StaticMembershipCustomizer(instanceId))
+                    .createContainer(TOPIC);
+            container.getContainerProperties().setGroupId(group);
+            container.getContainerProperties().getKafkaConsumerProperties().setProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+            // Polls cortos para que el consumidor vuelva pronto al grupo cuando se pide el rebalanceo.
+            container.getContainerProperties().getKafkaConsumerProperties().setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, "100");
+            if (!cooperative) {
+                container.getContainerProperties().getKafkaConsumerProperties()
+                        .setProperty(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, RangeAssignor.class.getName());
+            }
+            assertThat(container.getContainerProperties().getKafkaConsumerProperties().getProperty(ConsumerConfig.GROUP_INSTANCE_ID_CONFIG))
+                    .startsWith(instanceId + "-");
+            container.setupMessageListener((AcknowledgingMessageListener<String, Object>) (record, acknowledgment) -> {
+                try {
+                    pipeline.submit(record.partition(), record.key(), (OrderCreated) record.value(), acknowledgment::acknowledge);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        void start() {
+            pipeline.start();
+            container.start();
+        }
+
+        void stop() {
+            container.stop();
+            pipeline.stop();
+        }
+    }
+
+    private record Result(long reprocessed, long maxPauseMs, long handoverMs, long drainMs, long drainTimeouts) {
+    }
+}
@@ -0,0 +1,176 @@
+package com.jesusfc.kafka.replay;
+
+import com.jesusfc.kafka.message.OrderCreated;
+import com.jesusfc.kafka.message.OrderDispatched;
+import com.jesusfc.kafka.service.DispatchService;
+import com.jesusfc.kafka.service.DispatchedOrderRegistry;
+import com.jesusfc.kafka.util.TestEventData;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+class ReplayServiceTest {
+
+    private static final String TOPIC = "my.order.created.topic";
+
+    private DispatchService dispatchServiceMock;
+    private DispatchedOrderRegistry registry;
+    private TimedMockConsumer orderConsumer;
+    private TimedMockConsumer dispatchedConsumer;
+    private ReplayService replayService;
+
+    private final List<OrderCreated> orders = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        dispatchServiceMock = mock(DispatchService.class);
+        registry = new DispatchedOrderRegistry(1000, Duration.ofDays(1));
+        orderConsumer = new TimedMockConsumer(TOPIC, 2);
+        dispatchedConsumer = new TimedMockConsumer(DispatchService.ORDER_DISPATCHED_TOPIC, 1);
+        replayService = new ReplayService(dispatchServiceMock, registry, () -> orderConsumer, () -> dispatchedConsumer,
+                TOPIC, 10_000, Duration.ofSeconds(10));
+
+        // Partición 0: offsets 0..4, partición 1: offsets 0..2
+        for (int i = 0; i < 8; i++) {
+            orders.add(TestEventData.buildOrderCreatedEvent(randomUUID(), "item-" + i));
+        }
+        orderConsumer.records(0, orders.subList(0, 5));
+        orderConsumer.records(1, orders.subList(5, 8));
+    }
+
+    @Test
+    void start_FromOffsetsReplaysUpToEndSnapshotAndSkipsDispatchedOrders() throws Exception {
+        registry.markDispatched(orders.get(2).getOrderId());
+
+        replayService.start(ReplayRequest.builder().fromOffsets(Map.of(0, 1L, 1, 0L)).build());
+
+        ReplayProgress progress = awaitFinished();
+        assertThat(progress.getState()).isEqualTo(ReplayProgress.State.COMPLETED);
+        assertThat(progress.getTotal()).isEqualTo(7);
+        assertThat(progress.getProcessed()).isEqualTo(7);
+        assertThat(progress.getSkipped()).isEqualTo(1);
+        assertThat(progress.getReplayed()).isEqualTo(6);
+        verify(dispatchServiceMock, never()).process(anyInt(), anyString(), eq(orders.get(0)));
+        verify(dispatchServiceMock, never()).process(anyInt(), anyString(), eq(orders.get(2)));
+        verify(dispatchServiceMock, times(6)).process(anyInt(), anyString(), any(OrderCreated.class));
+    }
+
+    @Test
+    void start_FromTimestampPrimesRegistryFromDispatchedTopic() throws Exception {
+        orderConsumer.offsetsForTimestamp(Map.of(0, 3L, 1, 1L));
+        dispatchedConsumer.offsetsForTimestamp(Map.of(0, 0L));
+        dispatchedConsumer.records(0, List.of(OrderDispatched.builder().orderId(orders.get(6).getOrderId()).build()));
+
+        replayService.start(ReplayRequest.builder().fromTimestamp(1_000L).build());
+
+        ReplayProgress progress = awaitFinished();
+        assertThat(progress.getTotal()).isEqualTo(4);
+        assertThat(progress.getSkipped()).isEqualTo(1);
+        verify(dispatchServiceMock, times(1)).process(0, "key-3", orders.get(3));
+        verify(dispatchServiceMock, times(1)).process(0, "key-4", orders.get(4));
+        verify(dispatchServiceMock, times(1)).process(1, "key-7", orders.get(7));
+        verify(dispatchServiceMock, times(3)).process(anyInt(), anyString(), any(OrderCreated.class));
+    }
+
+    @Test
+    void start_CountsFailuresAndKeepsGoing() throws Exception {
+        doThrow(new RuntimeException("stock service down")).when(dispatchServiceMock).process(0, "key-0", orders.get(0));
+
+        replayService.start(ReplayRequest.builder().fromOffsets(Map.of(0, 0L)).build());
+
+        ReplayProgress progress = awaitFinished();
+        assertThat(progress.getFailed()).isEqualTo(1);
+        assertThat(progress.getReplayed()).isEqualTo(4);
+    }
+
+    @Test
+    void start_RejectsAmbiguousRequests() {
+        assertThrows(IllegalArgumentException.class, () -> replayService.start(new ReplayRequest()));
+        assertThrows(IllegalArgumentException.class, () -> replayService.start(
+                ReplayRequest.builder().fromTimestamp(1L).fromOffsets(Map.of(0, 1L)).build()));
+    }
+
+    private ReplayProgress awaitFinished() {
+        await().atMost(5, TimeUnit.SECONDS)
+                .until(() -> replayService.progress().orElseThrow().getState() != ReplayProgress.State.RUNNING);
+        return replayService.progress().orElseThrow();
+    }
+
+    /*
+     * MockConsumer no implementa offsetsForTimes y solo admite registros de particiones asignadas, así que
+     * los añadimos en el primer poll.
+     */
+    private static class TimedMockConsumer extends MockConsumer<String, Object> {
+
+        private final String topic;
+        private final Map<TopicPartition, OffsetAndTimestamp> offsetsForTimes = new HashMap<>();
+        private final Map<TopicPartition, Long> endOffsets = new HashMap<>();
+
+        TimedMockConsumer(String topic, int partitions) {
+            super(OffsetResetStrategy.EARLIEST);
+            this.topic = topic;
+            List<PartitionInfo> infos = new ArrayList<>();
+            for (int p = 0; p < partitions; p++) {
+                infos.add(new PartitionInfo(topic, p, null, null, null));
+                endOffsets.put(new TopicPartition(topic, p), 0L);
+            }
+            updatePartitions(topic, infos);
+            updateEndOffsets(endOffsets);
+        }
+
+        void records(int partition, List<?> values) {
+            TopicPartition tp = new TopicPartition(topic, partition);
+            List<ConsumerRecord<String, Object>> records = new ArrayList<>();
+            for (Object value : values) {
+                long offset = records.size();
+                String key = value instanceof OrderCreated order ? "key-" + orderIndex(order) : "key";
+                records.add(new ConsumerRecord<>(topic, partition, offset, key, value));
+            }
+            endOffsets.put(tp, (long) records.size());
+            updateEndOffsets(endOffsets);
+            schedulePollTask(() -> records.forEach(this::addRecord));
+        }
+
+        void offsetsForTimestamp(Map<Integer, Long> offsets) {
+            offsets.forEach((partition, offset) -> offsetsForTimes.put(new TopicPartition(topic, partition), new OffsetAndTimestamp(offset, 1_000L)));
+        }
+
+        @Override
+        public synchronized Map<TopicPartition, OffsetAndTimestamp> offsetsForTimes(Map<TopicPartition, Long> timestampsToSearch) {
+            Map<TopicPartition, OffsetAndTimestamp> result = new HashMap<>();
+            timestampsToSearch.keySet().forEach(tp -> result.put(tp, offsetsForTimes.get(tp)));
+            return result;
+        }
+
+        private String orderIndex(OrderCreated order) {
+            return order.getItem().substring("item-".length());
+        }
+    }
+}
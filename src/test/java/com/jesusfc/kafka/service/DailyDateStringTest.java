@@ -0,0 +1,70 @@
+package com.jesusfc.kafka.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+class DailyDateStringTest {
+
+    @Test
+    void today_IsReusedWithinTheDayAndRollsOverAtMidnight() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-10-19T23:59:58Z"));
+        DailyDateString dailyDate = new DailyDateString(clock);
+
+        String today = dailyDate.today();
+        assertThat(today).isEqualTo("2026-10-19");
+        clock.advance(Duration.ofSeconds(1));
+        assertThat(dailyDate.today()).isSameAs(today);
+
+        clock.advance(Duration.ofSeconds(1));
+        assertThat(dailyDate.today()).isEqualTo("2026-10-20");
+    }
+
+    @Test
+    void today_FollowsTheClockBackwards() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-10-20T00:00:00Z"));
+        DailyDateString dailyDate = new DailyDateString(clock);
+
+        clock.advance(Duration.ofMillis(-1));
+
+        assertThat(dailyDate.today()).isEqualTo("2026-10-19");
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.jesusfc.kafka.service;
+
+import com.jesusfc.kafka.message.DispatchPreparing;
+import com.jesusfc.kafka.outbox.OutboxJournal;
+import com.jesusfc.kafka.outbox.OutboxRecord;
+import org.apache.kafka.common.errors.NotEnoughReplicasException;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+class DispatchEventSenderTest {
+
+    private static final String TOPIC = "dispatch.tracking";
+    private static final String TEST_KEY = "test-key";
+
+    @TempDir
+    Path directory;
+
+    private KafkaTemplate<String, Object> kafkaTemplateMock;
+    private OutboxJournal journal;
+    private DispatchEventSender sender;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws IOException {
+        kafkaTemplateMock = mock(KafkaTemplate.class);
+        journal = new OutboxJournal(directory, 64 * 1024, 1024 * 1024, OutboxJournal.FsyncPolicy.NEVER);
+        sender = new DispatchEventSender(kafkaTemplateMock, journal, Duration.ofMillis(50), 0L);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        journal.close();
+    }
+
+    @Test
+    void send_AcknowledgedSendsDoNotTouchTheJournal() throws Exception {
+        when(kafkaTemplateMock.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        sender.send(TOPIC, TEST_KEY, event());
+
+        assertThat(journal.isEmpty()).isTrue();
+    }
+
+    @Test
+    void send_SlowBrokerSpillsToJournalAndLaterSendsQueueBehindIt() throws Exception {
+        when(kafkaTemplateMock.send(anyString(), anyString(), any())).thenReturn(new CompletableFuture<>());
+
+        sender.send(TOPIC, TEST_KEY, event());
+        sender.send(TOPIC, 2, TEST_KEY, event());
+
+        // El segundo envío no llega a intentarse: va detrás del primero en el journal para mantener el orden.
+        verify(kafkaTemplateMock, times(1)).send(anyString(), anyString(), any());
+        verifyNoMoreInteractions(kafkaTemplateMock);
+        assertThat(journal.pendingRecords()).isEqualTo(2);
+        OutboxRecord first = journal.peek();
+        assertThat(first.topic()).isEqualTo(TOPIC);
+        assertThat(first.valueType()).isEqualTo(DispatchPreparing.class.getName());
+    }
+
+    @Test
+    void send_RetriableFailureSpillsToJournal() throws Exception {
+        when(kafkaTemplateMock.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.failedFuture(new NotEnoughReplicasException("isr")));
+
+        sender.send(TOPIC, TEST_KEY, event());
+
+        assertThat(journal.pendingRecords()).isEqualTo(1);
+    }
+
+    @Test
+    void send_NonRetriableFailureIsRethrown() {
+        when(kafkaTemplateMock.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.failedFuture(new RecordTooLargeException("too large")));
+
+        assertThrows(ExecutionException.class, () -> sender.send(TOPIC, TEST_KEY, event()));
+        assertThat(journal.isEmpty()).isTrue();
+    }
+
+    private static DispatchPreparing event() {
+        return DispatchPreparing.builder().orderId(randomUUID()).build();
+    }
+}
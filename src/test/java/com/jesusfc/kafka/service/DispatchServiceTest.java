@@ -2,15 +2,22 @@ package com.jesusfc.kafka.service;
 
 
 import com.jesusfc.kafka.client.StockServiceClient;
+import com.jesusfc.kafka.logging.DispatchEventLog;
+import com.jesusfc.kafka.message.DeferredOrder;
 import com.jesusfc.kafka.message.DispatchCompleted;
 import com.jesusfc.kafka.message.DispatchPreparing;
 import com.jesusfc.kafka.message.OrderCreated;
 import com.jesusfc.kafka.message.OrderDispatched;
+import com.jesusfc.kafka.message.OrderLine;
 import com.jesusfc.kafka.util.TestEventData;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.kafka.core.KafkaTemplate;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 import static java.util.UUID.randomUUID;
@@ -18,6 +25,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -31,6 +39,7 @@ class DispatchServiceTest {
     private DispatchService dispatchService;
     private KafkaTemplate kafkaTemplateMock;
     private StockServiceClient stockServiceClientMock;
+    private DispatchedOrderRegistry dispatchedOrderRegistry;
 
     private final static String TOPIC = "my.order.dispatched.topic";
     private final static String TEST_KEY = "test-key";
@@ -40,7 +49,8 @@ class DispatchServiceTest {
     void setUp() {
         kafkaTemplateMock = mock(KafkaTemplate.class);
         stockServiceClientMock = mock(StockServiceClient.class);
-        dispatchService = new DispatchService(kafkaTemplateMock, stockServiceClientMock);
+        dispatchedOrderRegistry = new DispatchedOrderRegistry(100, Duration.ofDays(1));
+        dispatchService = new DispatchService(new DispatchEventSender(kafkaTemplateMock), stockServiceClientMock, dispatchedOrderRegistry, DispatchEventLog.withDefaults());
     }
 
     @Test
@@ -88,12 +98,17 @@ class DispatchServiceTest {
 
     @Test
     public void testProcess_StockUnavailable() throws Exception {
+        when(kafkaTemplateMock.send(anyString(), anyString(), any(DeferredOrder.class))).thenReturn(CompletableFuture.completedFuture(null));
         when(stockServiceClientMock.checkAvailability(anyString())).thenReturn("false");
 
         String key = randomUUID().toString();
         OrderCreated testEvent = TestEventData.buildOrderCreatedEvent(randomUUID(), randomUUID().toString());
         dispatchService.process(TEST_PARTITION, key, testEvent);
-        verifyNoInteractions(kafkaTemplateMock);
+
+        // El pedido no se descarta: se aparca en el topic de diferidos y no se envía ningún evento de dispatch.
+        verify(kafkaTemplateMock, times(1)).send(eq(DispatchService.DEFERRED_ORDER_TOPIC), eq(key), argThat((DeferredOrder deferred) ->
+                deferred.getOrder().equals(testEvent) && deferred.getAttempt() == 1 && TEST_PARTITION.equals(deferred.getPartition())));
+        verifyNoMoreInteractions(kafkaTemplateMock);
         verify(stockServiceClientMock, times(1)).checkAvailability(testEvent.getItem());
     }
 
@@ -164,4 +179,79 @@ class DispatchServiceTest {
         verifyNoInteractions(kafkaTemplateMock);
         verify(stockServiceClientMock, times(1)).checkAvailability(testEvent.getItem());
     }
-}
\ No newline at end of file
+
+    @Test
+    void process_MultiLineOrder_OneStockCallAndOneSetOfEventsPerOrder() throws Exception {
+        stubSends();
+        OrderCreated order = multiLineOrder(null, "red", "blue", "green");
+        when(stockServiceClientMock.checkAvailability(anyCollection())).thenReturn(Map.of("red", true, "blue", true, "green", true));
+
+        dispatchService.process(TEST_PARTITION, TEST_KEY, order);
+
+        verify(stockServiceClientMock, times(1)).checkAvailability(List.of("red", "blue", "green"));
+        verify(stockServiceClientMock, never()).checkAvailability(anyString());
+        verify(kafkaTemplateMock, times(1)).send(eq("dispatch.tracking"), eq(TEST_KEY), any(DispatchPreparing.class));
+        verify(kafkaTemplateMock, times(1)).send(eq("dispatch.tracking"), eq(TEST_KEY), any(DispatchCompleted.class));
+        assertThat(dispatchedLines()).extracting(OrderLine::getItem).containsExactly("red", "blue", "green");
+    }
+
+    @Test
+    void process_MultiLineOrder_AllOrNothingDefersTheWholeOrder() throws Exception {
+        stubSends();
+        OrderCreated order = multiLineOrder(null, "red", "blue");
+        when(stockServiceClientMock.checkAvailability(anyCollection())).thenReturn(Map.of("red", true, "blue", false));
+
+        dispatchService.process(TEST_PARTITION, TEST_KEY, order);
+
+        verify(kafkaTemplateMock, never()).send(anyString(), anyInt(), anyString(), any(OrderDispatched.class));
+        assertThat(deferred().getOrder()).isSameAs(order);
+    }
+
+    @Test
+    void process_MultiLineOrder_PartialDispatchShipsAvailableLinesAndDefersTheRest() throws Exception {
+        stubSends();
+        OrderCreated order = multiLineOrder(true, "red", "blue", "green");
+        when(stockServiceClientMock.checkAvailability(anyCollection())).thenReturn(Map.of("red", true, "blue", false, "green", true));
+
+        dispatchService.process(TEST_PARTITION, TEST_KEY, order);
+
+        assertThat(dispatchedLines()).extracting(OrderLine::getItem).containsExactly("red", "green");
+        DeferredOrder deferred = deferred();
+        assertThat(deferred.getOrder().getOrderId()).isEqualTo(order.getOrderId());
+        assertThat(deferred.getOrder().getLines()).extracting(OrderLine::getItem).containsExactly("blue");
+        assertThat(deferred.getPartition()).isEqualTo(TEST_PARTITION);
+        // Queda una línea pendiente: el pedido no cuenta como despachado hasta que salga.
+        assertThat(dispatchedOrderRegistry.isDispatched(order.getOrderId())).isFalse();
+
+        dispatchService.dispatchAvailable(TEST_PARTITION, TEST_KEY, deferred.getOrder(), Map.of("blue", true));
+        assertThat(dispatchedOrderRegistry.isDispatched(order.getOrderId())).isTrue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubSends() {
+        when(kafkaTemplateMock.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(kafkaTemplateMock.send(anyString(), anyInt(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    private List<OrderLine> dispatchedLines() {
+        ArgumentCaptor<OrderDispatched> captor = ArgumentCaptor.forClass(OrderDispatched.class);
+        verify(kafkaTemplateMock, times(1)).send(eq(TOPIC), eq(TEST_PARTITION), eq(TEST_KEY), captor.capture());
+        assertThat(captor.getValue().getItem()).isNull();
+        return captor.getValue().getLines();
+    }
+
+    @SuppressWarnings("unchecked")
+    private DeferredOrder deferred() {
+        ArgumentCaptor<DeferredOrder> captor = ArgumentCaptor.forClass(DeferredOrder.class);
+        verify(kafkaTemplateMock, times(1)).send(eq(DispatchService.DEFERRED_ORDER_TOPIC), eq(TEST_KEY), captor.capture());
+        return captor.getValue();
+    }
+
+    private static OrderCreated multiLineOrder(Boolean partialDispatch, String... items) {
+        return OrderCreated.builder()
+                .orderId(randomUUID())
+                .lines(java.util.Arrays.stream(items).map(item -> OrderLine.builder().item(item).build()).toList())
+                .partialDispatch(partialDispatch)
+                .build();
+    }
+}
@@ -0,0 +1,163 @@
+package com.jesusfc.kafka.snapshot;
+
+import com.jesusfc.kafka.client.AvailabilityCache;
+import com.jesusfc.kafka.client.AvailabilityCache.CachedAvailability;
+import com.jesusfc.kafka.service.DispatchedOrderRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Author Jesús Fdez. Caraballo
+ * jesus.fdez.caraballo@gmail.com
+ * Created on oct - 2026
+ */
+class WarmRestartSnapshotterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restart_CacheAndRegistryAreWarm() {
+        Path file = directory.resolve("state.snap");
+        AvailabilityCache cache = new AvailabilityCache(Duration.ofMinutes(5), 100);
+        DispatchedOrderRegistry registry = new DispatchedOrderRegistry(100, Duration.ofDays(1));
+        UUID orderId = UUID.randomUUID();
+        cache.put("item-1", "true");
+        cache.put("ítem-ñ", "false");
+        registry.markDispatched(orderId);
+        snapshotter(cache, registry, file, new SimpleMeterRegistry()).stop();
+
+        AvailabilityCache restartedCache = new AvailabilityCache(Duration.ofMinutes(5), 100);
+        DispatchedOrderRegistry restartedRegistry = new DispatchedOrderRegistry(100, Duration.ofDays(1));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        snapshotter(restartedCache, restartedRegistry, file, meterRegistry).load();
+
+        assertThat(restartedCache.get("item-1")).isEqualTo("true");
+        assertThat(restartedCache.get("ítem-ñ")).isEqualTo("false");
+        assertThat(restartedRegistry.isDispatched(orderId)).isTrue();
+        assertThat(meterRegistry.get("dispatch.snapshot.warm.time").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("dispatch.snapshot.restored.entries").counter().count()).isEqualTo(3.0);
+    }
+
+    @Test
+    void load_ExpiredEntriesAreDropped() throws IOException {
+        Path file = directory.resolve("state.snap");
+        long now = System.currentTimeMillis();
+        UUID fresh = UUID.randomUUID();
+        UUID stale = UUID.randomUUID();
+        StateSnapshotFile.write(file,
+                List.of(new CachedAvailability("fresh", "true", now + 60_000), new CachedAvailability("stale", "true", now - 1)),
+                Map.of(fresh, now, stale, now - Duration.ofDays(2).toMillis()), now);
+
+        AvailabilityCache cache = new AvailabilityCache(Duration.ofMinutes(5), 100);
+        DispatchedOrderRegistry registry = new DispatchedOrderRegistry(100, Duration.ofDays(1));
+        StateSnapshotFile.LoadResult result = StateSnapshotFile.load(file, cache::restore, registry::restore, Long.MAX_VALUE);
+
+        assertThat(result.availabilityLoaded()).isEqualTo(1);
+        assertThat(result.dispatchedLoaded()).isEqualTo(1);
+        assertThat(result.expired()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(registry.isDispatched(fresh)).isTrue();
+        assertThat(registry.isDispatched(stale)).isFalse();
+    }
+
+    @Test
+    void write_EntriesLongerThanTheFormatAreLeftOut() throws IOException {
+        Path file = directory.resolve("state.snap");
+        long now = System.currentTimeMillis();
+        String longest = "x".repeat(StateSnapshotFile.MAX_STRING_BYTES);
+        StateSnapshotFile.write(file, List.of(
+                        new CachedAvailability("item-1", "true", now + 60_000),
+                        new CachedAvailability("x".repeat(StateSnapshotFile.MAX_STRING_BYTES + 1), "true", now + 60_000),
+                        new CachedAvailability("item-2", "y".repeat(40_000), now + 60_000),
+                        new CachedAvailability(longest, "false", now + 60_000)),
+                Map.of(UUID.randomUUID(), now), now);
+
+        AvailabilityCache cache = new AvailabilityCache(Duration.ofMinutes(5), 100);
+        StateSnapshotFile.LoadResult result = StateSnapshotFile.load(file, cache::restore, (id, at) -> true, Long.MAX_VALUE);
+
+        assertThat(result.loaded()).isTrue();
+        assertThat(result.availabilityLoaded()).isEqualTo(3);
+        assertThat(result.dispatchedLoaded()).isEqualTo(1);
+        assertThat(cache.get("item-2")).hasSize(40_000);
+        assertThat(cache.get(longest)).isEqualTo("false");
+    }
+
+    @Test
+    void load_BudgetExhausted_StopsEarly() throws IOException {
+        Path file = directory.resolve("state.snap");
+        StateSnapshotFile.write(file, List.of(), Map.of(UUID.randomUUID(), System.currentTimeMillis()), System.currentTimeMillis());
+
+        DispatchedOrderRegistry registry = new DispatchedOrderRegistry(100, Duration.ofDays(1));
+        StateSnapshotFile.LoadResult result = StateSnapshotFile.load(file, entry -> true, registry::restore, System.nanoTime() - 1);
+
+        assertThat(result.loaded()).isTrue();
+        assertThat(result.budgetExceeded()).isTrue();
+        assertThat(registry.size()).isZero();
+    }
+
+    @Test
+    void load_CorruptOrOtherVersion_StartsCold() throws IOException {
+        Path file = directory.resolve("state.snap");
+        StateSnapshotFile.write(file, List.of(), Map.of(UUID.randomUUID(), System.currentTimeMillis()), System.currentTimeMillis());
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(StateSnapshotFile.HEADER_BYTES + 3);
+            raf.write(0x7F);
+        }
+        assertThat(StateSnapshotFile.load(file, entry -> true, (id, at) -> true, Long.MAX_VALUE).loaded()).isFalse();
+
+        StateSnapshotFile.write(file, List.of(), Map.of(), System.currentTimeMillis());
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(4);
+            raf.writeShort(StateSnapshotFile.VERSION + 1);
+        }
+        assertThat(StateSnapshotFile.load(file, entry -> true, (id, at) -> true, Long.MAX_VALUE).loaded()).isFalse();
+
+        Files.delete(file);
+        assertThat(StateSnapshotFile.load(file, entry -> true, (id, at) -> true, Long.MAX_VALUE).loaded()).isFalse();
+    }
+
+    @Test
+    void stop_WaitsForThePeriodicWriteBeforeTheFinalOne() throws Exception {
+        Path file = directory.resolve("state.snap");
+        AvailabilityCache cache = new AvailabilityCache(Duration.ofMinutes(5), 10_000);
+        DispatchedOrderRegistry registry = new DispatchedOrderRegistry(10_000, Duration.ofDays(1));
+        for (int i = 0; i < 5_000; i++) {
+            cache.put("item-" + i, "true");
+            registry.markDispatched(UUID.randomUUID());
+        }
+        // Escrituras periódicas sin pausa: stop() llega siempre con una en curso.
+        WarmRestartSnapshotter snapshotter = snapshotter(cache, registry, file, new SimpleMeterRegistry(), Duration.ofMillis(1));
+        snapshotter.start();
+        Thread.sleep(50);
+        snapshotter.stop();
+
+        StateSnapshotFile.LoadResult result = StateSnapshotFile.load(file, entry -> true, (id, at) -> true, Long.MAX_VALUE);
+        assertThat(result.loaded()).isTrue();
+        assertThat(result.availabilityLoaded()).isEqualTo(5_000);
+        assertThat(result.dispatchedLoaded()).isEqualTo(5_000);
+        assertThat(directory.resolve("state.snap.tmp")).doesNotExist();
+    }
+
+    private WarmRestartSnapshotter snapshotter(AvailabilityCache cache, DispatchedOrderRegistry registry, Path file,
+                                               SimpleMeterRegistry meterRegistry) {
+        return snapshotter(cache, registry, file, meterRegistry, Duration.ofSeconds(30));
+    }
+
+    private WarmRestartSnapshotter snapshotter(AvailabilityCache cache, DispatchedOrderRegistry registry, Path file,
+                                               SimpleMeterRegistry meterRegistry, Duration interval) {
+        return new WarmRestartSnapshotter(cache, registry, meterRegistry, file, interval, Duration.ofSeconds(2));
+    }
+}